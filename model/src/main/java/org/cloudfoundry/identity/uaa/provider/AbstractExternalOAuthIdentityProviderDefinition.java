@@ -19,6 +19,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.lang.reflect.ParameterizedType;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -39,6 +40,12 @@ public abstract class AbstractExternalOAuthIdentityProviderDefinition<T extends
     private String responseType = "code";
     private String userPropagationParameter;
 
+    @Override
+    protected void copyCollections() {
+        super.copyCollections();
+        scopes = scopes == null ? null : new ArrayList<>(scopes);
+    }
+
     public URL getAuthUrl() {
         return authUrl;
     }
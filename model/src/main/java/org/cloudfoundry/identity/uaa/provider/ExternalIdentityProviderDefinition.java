@@ -49,6 +49,13 @@ public class ExternalIdentityProviderDefinition extends AbstractIdentityProvider
         this.externalGroupsWhitelist = new LinkedList<>(externalGroupsWhitelist!=null ? externalGroupsWhitelist : emptyList());
     }
 
+    @Override
+    protected void copyCollections() {
+        super.copyCollections();
+        externalGroupsWhitelist = externalGroupsWhitelist == null ? null : new LinkedList<>(externalGroupsWhitelist);
+        attributeMappings = attributeMappings == null ? null : new HashMap<>(attributeMappings);
+    }
+
     @JsonIgnore
     public void addWhiteListedGroup(String group) {
         this.externalGroupsWhitelist.add(group);
@@ -17,6 +17,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import org.cloudfoundry.identity.uaa.login.Prompt;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -77,6 +78,12 @@ implements Cloneable {
         return super.clone();
     }
 
+    @Override
+    protected void copyCollections() {
+        super.copyCollections();
+        prompts = prompts == null ? null : new ArrayList<>(prompts);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
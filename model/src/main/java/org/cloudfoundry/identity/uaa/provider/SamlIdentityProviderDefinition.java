@@ -59,6 +59,12 @@ public class SamlIdentityProviderDefinition extends ExternalIdentityProviderDefi
 
     public SamlIdentityProviderDefinition() {}
 
+    @Override
+    protected void copyCollections() {
+        super.copyCollections();
+        authnContext = authnContext == null ? null : new ArrayList<>(authnContext);
+    }
+
     public SamlIdentityProviderDefinition clone() {
         List<String> emailDomain = getEmailDomain() != null ? new ArrayList<>(getEmailDomain()) : null;
         List<String> externalGroupsWhitelist = getExternalGroupsWhitelist() != null ? new ArrayList<>(getExternalGroupsWhitelist()) : null;
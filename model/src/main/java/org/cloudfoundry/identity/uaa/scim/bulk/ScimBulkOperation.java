@@ -0,0 +1,73 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A single operation of a SCIM bulk request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScimBulkOperation {
+
+    private String method;
+
+    private String bulkId;
+
+    private String version;
+
+    private String path;
+
+    private JsonNode data;
+
+    public ScimBulkOperation() {
+    }
+
+    public ScimBulkOperation(String method, String bulkId, String path, JsonNode data) {
+        this.method = method;
+        this.bulkId = bulkId;
+        this.path = path;
+        this.data = data;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getBulkId() {
+        return bulkId;
+    }
+
+    public void setBulkId(String bulkId) {
+        this.bulkId = bulkId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public JsonNode getData() {
+        return data;
+    }
+
+    public void setData(JsonNode data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,115 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of a single bulk operation. Successful operations carry the
+ * location and version of the resource, failed ones a SCIM error response.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScimBulkOperationResult {
+
+    public static final String ERROR_SCHEMA = "urn:ietf:params:scim:api:messages:2.0:Error";
+
+    private String method;
+
+    private String bulkId;
+
+    private String version;
+
+    private String location;
+
+    private String status;
+
+    private Map<String, Object> response;
+
+    public ScimBulkOperationResult() {
+    }
+
+    public static ScimBulkOperationResult success(ScimBulkOperation operation, int status, String location, Integer version) {
+        ScimBulkOperationResult result = new ScimBulkOperationResult();
+        result.setMethod(operation.getMethod());
+        result.setBulkId(operation.getBulkId());
+        result.setStatus(String.valueOf(status));
+        result.setLocation(location);
+        if (version != null) {
+            result.setVersion("W/\"" + version + "\"");
+        }
+        return result;
+    }
+
+    public static ScimBulkOperationResult error(ScimBulkOperation operation, int status, String scimType, String detail) {
+        ScimBulkOperationResult result = new ScimBulkOperationResult();
+        result.setMethod(operation.getMethod());
+        result.setBulkId(operation.getBulkId());
+        result.setStatus(String.valueOf(status));
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("schemas", new String[]{ERROR_SCHEMA});
+        if (scimType != null) {
+            error.put("scimType", scimType);
+        }
+        error.put("detail", detail);
+        error.put("status", String.valueOf(status));
+        result.setResponse(error);
+        return result;
+    }
+
+    @JsonIgnore
+    public boolean isError() {
+        return status != null && Integer.parseInt(status) >= 400;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getBulkId() {
+        return bulkId;
+    }
+
+    public void setBulkId(String bulkId) {
+        this.bulkId = bulkId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Map<String, Object> getResponse() {
+        return response;
+    }
+
+    public void setResponse(Map<String, Object> response) {
+        this.response = response;
+    }
+}
@@ -0,0 +1,49 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request body of the SCIM bulk endpoint as described in RFC 7644, section 3.7.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScimBulkRequest {
+
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkRequest";
+
+    private String[] schemas = new String[]{SCHEMA};
+
+    private Integer failOnErrors;
+
+    @JsonProperty("Operations")
+    private List<ScimBulkOperation> operations = new ArrayList<>();
+
+    public String[] getSchemas() {
+        return schemas;
+    }
+
+    public void setSchemas(String[] schemas) {
+        this.schemas = schemas;
+    }
+
+    public Integer getFailOnErrors() {
+        return failOnErrors;
+    }
+
+    public void setFailOnErrors(Integer failOnErrors) {
+        this.failOnErrors = failOnErrors;
+    }
+
+    public List<ScimBulkOperation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<ScimBulkOperation> operations) {
+        this.operations = operations;
+    }
+}
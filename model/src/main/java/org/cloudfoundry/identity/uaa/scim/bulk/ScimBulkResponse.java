@@ -0,0 +1,40 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response body of the SCIM bulk endpoint, holding one result per operation
+ * that was processed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScimBulkResponse {
+
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkResponse";
+
+    private String[] schemas = new String[]{SCHEMA};
+
+    @JsonProperty("Operations")
+    private List<ScimBulkOperationResult> operations = new ArrayList<>();
+
+    public String[] getSchemas() {
+        return schemas;
+    }
+
+    public void setSchemas(String[] schemas) {
+        this.schemas = schemas;
+    }
+
+    public List<ScimBulkOperationResult> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<ScimBulkOperationResult> operations) {
+        this.operations = operations;
+    }
+}
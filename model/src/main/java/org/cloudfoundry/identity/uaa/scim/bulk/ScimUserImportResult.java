@@ -0,0 +1,103 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a user import run. {@code checkpoint} is the number of input
+ * records that have been committed for the import id, including records from
+ * earlier runs; a rerun with the same id resumes after it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScimUserImportResult {
+
+    private String importId;
+    private long resumedFrom;
+    private long processed;
+    private long imported;
+    private long failed;
+    private long checkpoint;
+    private long elapsedMillis;
+    private List<String> errors = new ArrayList<>();
+
+    public ScimUserImportResult() {
+    }
+
+    public ScimUserImportResult(String importId, long resumedFrom) {
+        this.importId = importId;
+        this.resumedFrom = resumedFrom;
+        this.checkpoint = resumedFrom;
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public void setImportId(String importId) {
+        this.importId = importId;
+    }
+
+    public long getResumedFrom() {
+        return resumedFrom;
+    }
+
+    public void setResumedFrom(long resumedFrom) {
+        this.resumedFrom = resumedFrom;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(long checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRecordsPerSecond() {
+        return elapsedMillis == 0 ? processed : processed * 1000 / elapsedMillis;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
@@ -21,10 +21,13 @@ import org.junit.Test;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 
 
@@ -56,4 +59,23 @@ public class OIDCIdentityProviderDefinitionTests {
         def = JsonUtils.readValue(json, OIDCIdentityProviderDefinition.class);
         assertEquals(prompts, def.getPrompts());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void copy_has_its_own_lists() throws MalformedURLException {
+        OIDCIdentityProviderDefinition def = JsonUtils.readValue(defaultJson, OIDCIdentityProviderDefinition.class);
+        def.setDiscoveryUrl(new URL(url));
+        def.setEmailDomain(new ArrayList<>(Collections.singletonList("example.com")));
+        def.setScopes(new ArrayList<>(Collections.singletonList("openid")));
+
+        OIDCIdentityProviderDefinition copy = (OIDCIdentityProviderDefinition) def.copy();
+        copy.setAuthUrl(new URL("https://accounts.google.com/authorize"));
+        copy.getEmailDomain().add("other.com");
+        copy.getScopes().add("profile");
+
+        assertNotSame(def, copy);
+        assertEquals(url, copy.getDiscoveryUrl().toString());
+        assertNull(def.getAuthUrl());
+        assertEquals(Collections.singletonList("example.com"), def.getEmailDomain());
+        assertEquals(Collections.singletonList("openid"), def.getScopes());
+    }
+}
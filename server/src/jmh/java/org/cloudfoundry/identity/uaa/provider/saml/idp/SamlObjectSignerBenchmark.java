@@ -0,0 +1,104 @@
+/*
+ * *****************************************************************************
+ *      Cloud Foundry
+ *      Copyright (c) [2009-2016] Pivotal Software, Inc. All Rights Reserved.
+ *      This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *      You may not use this product except in compliance with the License.
+ *
+ *      This product includes a number of subcomponents with
+ *      separate copyright notices and license terms. Your use of these
+ *      subcomponents is subject to the terms and conditions of the
+ *      subcomponent's license, as noted in the LICENSE file.
+ * *****************************************************************************
+ */
+package org.cloudfoundry.identity.uaa.provider.saml.idp;
+
+import org.joda.time.DateTime;
+import org.opensaml.Configuration;
+import org.opensaml.DefaultBootstrap;
+import org.opensaml.common.SAMLObjectBuilder;
+import org.opensaml.saml2.core.Assertion;
+import org.opensaml.saml2.core.Issuer;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.credential.Credential;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures {@link SamlObjectSigner#sign} on a single thread, so each score
+ * is the number of assertions signed per second on one core. The cached
+ * benchmark signs with the same credential every time, as a zone's key
+ * manager hands out. The uncached one signs with a new credential for the
+ * same key every time, as key managers did before they kept their
+ * credentials, so the signing parameters are worked out for every assertion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SamlObjectSignerBenchmark {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private SamlObjectSigner signer;
+    private KeyPair keyPair;
+    private Credential credential;
+    private SAMLObjectBuilder<Assertion> assertionBuilder;
+    private SAMLObjectBuilder<Issuer> issuerBuilder;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        DefaultBootstrap.bootstrap();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        credential = SecurityHelper.getSimpleCredential(keyPair.getPublic(), keyPair.getPrivate());
+        signer = new SamlObjectSigner();
+        assertionBuilder = (SAMLObjectBuilder<Assertion>) Configuration.getBuilderFactory()
+                .getBuilder(Assertion.DEFAULT_ELEMENT_NAME);
+        issuerBuilder = (SAMLObjectBuilder<Issuer>) Configuration.getBuilderFactory()
+                .getBuilder(Issuer.DEFAULT_ELEMENT_NAME);
+    }
+
+    @Benchmark
+    public Assertion signWithCachedCredential() throws Exception {
+        Assertion assertion = newAssertion();
+        signer.sign(assertion, credential);
+        return assertion;
+    }
+
+    @Benchmark
+    public Assertion signWithUncachedCredential() throws Exception {
+        Assertion assertion = newAssertion();
+        signer.sign(assertion, SecurityHelper.getSimpleCredential(keyPair.getPublic(), keyPair.getPrivate()));
+        return assertion;
+    }
+
+    private Assertion newAssertion() {
+        Issuer issuer = issuerBuilder.buildObject();
+        issuer.setValue("http://localhost:8080/uaa");
+        Assertion assertion = assertionBuilder.buildObject();
+        assertion.setID("_" + ids.incrementAndGet());
+        assertion.setIssueInstant(new DateTime());
+        assertion.setIssuer(issuer);
+        return assertion;
+    }
+}
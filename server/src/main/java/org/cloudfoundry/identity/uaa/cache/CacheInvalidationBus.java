@@ -0,0 +1,259 @@
+package org.cloudfoundry.identity.uaa.cache;
+
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells every node that an entity changed, so node local caches can evict it.
+ * Writers append a row to the {@code cache_invalidation_log} table and each
+ * node tails the table and hands new rows to the listeners registered for
+ * the entity type.
+ *
+ * <p>
+ * Ids are handed out when a row is inserted but become visible when the
+ * transaction commits, so a lower id may show up after a higher one. Ids
+ * skipped while tailing are therefore queried again until they show up or
+ * {@code GAP_TIMEOUT_MILLIS} passes, as rolled back inserts never fill them.
+ * </p>
+ */
+@Component("cacheInvalidationBus")
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=CacheInvalidation",
+        description = "UAA Cluster Cache Invalidation Metrics"
+)
+public class CacheInvalidationBus {
+
+    public enum EntityType {
+        ZONE,
+        CLIENT,
+        IDENTITY_PROVIDER,
+        SAML_SERVICE_PROVIDER
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    static final String INSERT_SQL = "insert into cache_invalidation_log (entity_type, identity_zone_id, entity_id, entity_version, created) values (?,?,?,?,?)";
+
+    static final String TAIL_SQL = "select id, entity_type, identity_zone_id, entity_id, created from cache_invalidation_log where id > ?";
+
+    static final String MAX_ID_SQL = "select max(id) from cache_invalidation_log";
+
+    static final String COMPACT_SQL = "delete from cache_invalidation_log where created < ?";
+
+    private static final long GAP_TIMEOUT_MILLIS = 60_000;
+
+    private static final int MAX_TRACKED_GAPS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LimitSqlAdapter limitSqlAdapter;
+    private final TimeService timeService;
+    private final int batchSize;
+    private final long retentionMillis;
+
+    private final Map<EntityType, List<CacheInvalidationListener>> listeners = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private boolean started;
+    private boolean positioned;
+    private long lastId;
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong publishFailures = new AtomicLong();
+    private final AtomicLong appliedEvents = new AtomicLong();
+    private final AtomicLong pollFailures = new AtomicLong();
+    private volatile long lagMillis;
+
+    @Autowired
+    public CacheInvalidationBus(
+            final JdbcTemplate jdbcTemplate,
+            final LimitSqlAdapter limitSqlAdapter,
+            final TimeService timeService,
+            final @Value("${cache.invalidation.batchSize:1000}") int batchSize,
+            final @Value("${cache.invalidation.retentionSeconds:3600}") int retentionSeconds) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"cache.invalidation.batchSize\" value (got %d). Should be positive number.", batchSize));
+        }
+        if (retentionSeconds <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"cache.invalidation.retentionSeconds\" value (got %d). Should be positive number.", retentionSeconds));
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.limitSqlAdapter = limitSqlAdapter;
+        this.timeService = timeService;
+        this.batchSize = batchSize;
+        this.retentionMillis = retentionSeconds * 1000L;
+    }
+
+    public void register(EntityType type, CacheInvalidationListener listener) {
+        listeners.computeIfAbsent(type, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Records a change for the other nodes. The writer is expected to evict
+     * its own caches directly. A failure to record is logged and not thrown,
+     * since the change itself has already been written.
+     *
+     * @param id      the id of the changed entity, or null for every entity
+     *                of this type in the zone
+     * @param version the version written, if the entity has one
+     */
+    public void publish(EntityType type, String zoneId, String id, Integer version) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, type.name(), zoneId, id, version, new Timestamp(timeService.getCurrentTimeMillis()));
+            publishedEvents.incrementAndGet();
+        } catch (DataAccessException e) {
+            publishFailures.incrementAndGet();
+            logger.warn("Unable to publish cache invalidation for " + type + " " + id + " in zone " + zoneId, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.invalidation.pollInterval:1000}")
+    public synchronized void poll() {
+        try {
+            long now = timeService.getCurrentTimeMillis();
+            if (!started) {
+                // nothing is cached yet, so older changes do not matter
+                Long maxId = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+                started = true;
+                if (maxId != null) {
+                    lastId = maxId;
+                    positioned = true;
+                }
+                return;
+            }
+
+            List<Object> args = new ArrayList<>();
+            args.add(lastId);
+            StringBuilder sql = new StringBuilder(TAIL_SQL);
+            if (!gaps.isEmpty()) {
+                sql.append(" or id in (").append(String.join(",", Collections.nCopies(gaps.size(), "?"))).append(")");
+                args.addAll(gaps.keySet());
+            }
+            sql.append(" order by id");
+
+            List<LogEntry> entries = jdbcTemplate.query(
+                    limitSqlAdapter.getLimitSql(sql.toString(), 0, batchSize),
+                    (rs, rowNum) -> new LogEntry(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getTimestamp(5)),
+                    args.toArray());
+
+            for (LogEntry entry : entries) {
+                if (gaps.remove(entry.id) != null) {
+                    apply(entry, now);
+                    continue;
+                }
+                if (positioned && entry.id <= lastId) {
+                    continue;
+                }
+                // ids below the first one seen on an empty log are unknown, not missing
+                if (positioned && entry.id - lastId - 1 <= MAX_TRACKED_GAPS) {
+                    for (long missing = lastId + 1; missing < entry.id; missing++) {
+                        gaps.put(missing, now);
+                    }
+                }
+                apply(entry, now);
+                lastId = entry.id;
+                positioned = true;
+            }
+            gaps.values().removeIf(noticed -> now - noticed > GAP_TIMEOUT_MILLIS);
+            while (gaps.size() > MAX_TRACKED_GAPS) {
+                gaps.remove(gaps.keySet().iterator().next());
+            }
+        } catch (DataAccessException e) {
+            pollFailures.incrementAndGet();
+            logger.warn("Unable to read the cache invalidation log", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.invalidation.compactInterval:600000}")
+    public void compact() {
+        try {
+            int deleted = jdbcTemplate.update(COMPACT_SQL, new Timestamp(timeService.getCurrentTimeMillis() - retentionMillis));
+            logger.debug(String.format("Compacted %d cache invalidation log entries", deleted));
+        } catch (DataAccessException e) {
+            logger.warn("Unable to compact the cache invalidation log", e);
+        }
+    }
+
+    private void apply(LogEntry entry, long now) {
+        EntityType type;
+        try {
+            type = EntityType.valueOf(entry.type);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Ignoring cache invalidation for unknown entity type " + entry.type);
+            return;
+        }
+        for (CacheInvalidationListener listener : listeners.getOrDefault(type, Collections.emptyList())) {
+            try {
+                listener.invalidate(entry.zoneId, entry.entityId);
+            } catch (RuntimeException e) {
+                logger.warn("Cache invalidation listener failed for " + type + " " + entry.entityId, e);
+            }
+        }
+        appliedEvents.incrementAndGet();
+        if (entry.created != null) {
+            lagMillis = Math.max(0, now - entry.created.getTime());
+        }
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Cache Invalidations Published (Since Startup)")
+    public long getPublishedEvents() {
+        return publishedEvents.get();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Cache Invalidation Publish Failures (Since Startup)")
+    public long getPublishFailures() {
+        return publishFailures.get();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Cache Invalidations Applied (Since Startup)")
+    public long getAppliedEvents() {
+        return appliedEvents.get();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Cache Invalidation Poll Failures (Since Startup)")
+    public long getPollFailures() {
+        return pollFailures.get();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Cache Invalidation Lag (ms)")
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    private static final class LogEntry {
+        private final long id;
+        private final String type;
+        private final String zoneId;
+        private final String entityId;
+        private final Timestamp created;
+
+        private LogEntry(long id, String type, String zoneId, String entityId, Timestamp created) {
+            this.id = id;
+            this.type = type;
+            this.zoneId = zoneId;
+            this.entityId = entityId;
+            this.created = created;
+        }
+    }
+}
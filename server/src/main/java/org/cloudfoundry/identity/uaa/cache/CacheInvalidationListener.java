@@ -0,0 +1,16 @@
+package org.cloudfoundry.identity.uaa.cache;
+
+/**
+ * Evicts node local cache entries when another node reports a change through
+ * the {@link CacheInvalidationBus}.
+ */
+@FunctionalInterface
+public interface CacheInvalidationListener {
+
+    /**
+     * @param zoneId the identity zone of the changed entity
+     * @param id     the id of the changed entity, or null when every entity
+     *               of this type in the zone may have changed
+     */
+    void invalidate(String zoneId, String id);
+}
@@ -191,6 +191,7 @@ public class ClientAdminBootstrap implements
 
             if (map.containsKey("use-bcrypt-prefix") && "true".equals(map.get("use-bcrypt-prefix"))) {
                 jdbcTemplate.update("update oauth_client_details set client_secret=concat(?, client_secret) where client_id = ?", "{bcrypt}", clientId);
+                clientRegistrationService.clientChanged(clientId, IdentityZone.getUaaZoneId());
             }
 
             for (String s : Arrays.asList(GRANT_TYPE_AUTHORIZATION_CODE, GRANT_TYPE_IMPLICIT)) {
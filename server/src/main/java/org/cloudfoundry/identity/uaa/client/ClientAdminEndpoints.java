@@ -27,7 +27,6 @@ import org.cloudfoundry.identity.uaa.resources.SearchResults;
 import org.cloudfoundry.identity.uaa.resources.SearchResultsFactory;
 import org.cloudfoundry.identity.uaa.resources.SimpleAttributeNameMapper;
 import org.cloudfoundry.identity.uaa.security.beans.SecurityContextAccessor;
-import org.cloudfoundry.identity.uaa.util.UaaPagingUtils;
 import org.cloudfoundry.identity.uaa.util.UaaStringUtils;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.InvalidClientSecretException;
@@ -74,11 +73,13 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -439,12 +440,20 @@ public class ClientAdminEndpoints implements ApplicationEventPublisherAware {
             count = clientMaxCount;
         }
 
+        String[] attributes = StringUtils.hasLength(attributesCommaSeparated) ? attributesCommaSeparated.split(",") : null;
+        Set<String> requestedAttributes = attributes == null ? null : new HashSet<>(Arrays.asList(attributes));
+
         List<ClientDetails> result = new ArrayList<ClientDetails>();
-        List<ClientDetails> clients;
+        int total;
         try {
-            clients = clientDetailsService.query(filter, sortBy, "ascending".equalsIgnoreCase(sortOrder), IdentityZoneHolder.get().getId());
-            if (count > clients.size()) {
-                count = clients.size();
+            String zoneId = IdentityZoneHolder.get().getId();
+            total = clientDetailsService.count(filter, zoneId);
+            List<ClientDetails> clients = clientDetailsService.query(filter, sortBy, "ascending".equalsIgnoreCase(sortOrder), zoneId, startIndex, count, requestedAttributes);
+            for (ClientDetails client : clients) {
+                result.add(removeSecret(client));
+            }
+            if (count > total) {
+                count = total;
             }
         } catch (IllegalArgumentException e) {
             String msg = "Invalid filter expression: [" + filter + "]";
@@ -453,18 +462,14 @@ public class ClientAdminEndpoints implements ApplicationEventPublisherAware {
             }
             throw new UaaException(msg, HttpStatus.BAD_REQUEST.value());
         }
-        for (ClientDetails client : UaaPagingUtils.subList(clients, startIndex, count)) {
-            result.add(removeSecret(client));
-        }
 
-        if (!StringUtils.hasLength(attributesCommaSeparated)) {
+        if (attributes == null) {
             return new SearchResults<>(Collections.singletonList(SCIM_CLIENTS_SCHEMA_URI), result, startIndex, count,
-                clients.size());
+                total);
         }
 
-        String[] attributes = attributesCommaSeparated.split(",");
         try {
-            return SearchResultsFactory.buildSearchResultFrom(result, startIndex, count, clients.size(), attributes,
+            return SearchResultsFactory.buildSearchResultFrom(result, startIndex, count, total, attributes,
                             attributeNameMapper, Collections.singletonList(SCIM_CLIENTS_SCHEMA_URI));
         } catch (SpelParseException e) {
             throw new UaaException("Invalid attributes: [" + attributesCommaSeparated + "]",
@@ -22,6 +22,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Component("clientDetailsService")
 public class JdbcQueryableClientDetailsService
@@ -39,6 +40,16 @@ public class JdbcQueryableClientDetailsService
     public static final String CLIENT_DETAILS_TABLE = "oauth_client_details";
     private static final String BASE_FIND_STATEMENT = "select " + CLIENT_FIELDS
             + " from " + CLIENT_DETAILS_TABLE;
+    private static final String PROJECTED_FIND_STATEMENT = BASE_FIND_STATEMENT
+            .replace("additional_information,", "null as additional_information,");
+
+    /**
+     * Client attributes read from their own column. Any other attribute may
+     * live in the additional information JSON.
+     */
+    private static final Set<String> COLUMN_ATTRIBUTES = Set.of("client_id", "resource_ids", "scope",
+            "authorized_grant_types", "redirect_uri", "authorities", "access_token_validity",
+            "refresh_token_validity", "autoapprove");
 
     public JdbcQueryableClientDetailsService(
             final @Qualifier("jdbcClientDetailsService") MultitenantJdbcClientDetailsService delegate,
@@ -53,6 +64,24 @@ public class JdbcQueryableClientDetailsService
         return BASE_FIND_STATEMENT;
     }
 
+    @Override
+    protected String getBaseSqlQuery(Set<String> attributes) {
+        return readsAdditionalInformation(attributes) ? BASE_FIND_STATEMENT : PROJECTED_FIND_STATEMENT;
+    }
+
+    private static boolean readsAdditionalInformation(Set<String> attributes) {
+        if (attributes == null) {
+            return true;
+        }
+        for (String attribute : attributes) {
+            String name = attribute.trim().toLowerCase().split("[.\\[]", 2)[0];
+            if (!COLUMN_ATTRIBUTES.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected String getTableName() {
         return CLIENT_DETAILS_TABLE;
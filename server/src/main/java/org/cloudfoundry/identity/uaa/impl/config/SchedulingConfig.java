@@ -0,0 +1,32 @@
+package org.cloudfoundry.identity.uaa.impl.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Runs {@code @Scheduled} background jobs, such as tailing the cache
+ * invalidation log, whichever session store is configured. The jobs share a
+ * small pool rather than Spring's single default thread, so a slow job, like
+ * a SAML metadata refresh, does not hold up the one-second invalidation poll.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(final @Value("${scheduling.poolSize:4}") int poolSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid \"scheduling.poolSize\" value (got %d). Should be positive number.", poolSize)
+            );
+        }
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("uaa-scheduler-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -151,7 +151,7 @@ public class LoginInfoEndpoint {
             final @Qualifier("uaaUrl") String baseUrl,
             final @Qualifier("mfaChecker") MfaChecker mfaChecker,
             final @Qualifier("externalOAuthProviderConfigurator") ExternalOAuthProviderConfigurator externalOAuthProviderConfigurator,
-            final @Qualifier("identityProviderProvisioning") IdentityProviderProvisioning providerProvisioning,
+            final @Qualifier("cachingIdentityProviderProvisioning") IdentityProviderProvisioning providerProvisioning,
             final @Qualifier("samlEntityID") String entityID,
             final @Qualifier("globalLinks") Links globalLinks,
             final @Qualifier("jdbcClientDetailsService") MultitenantClientServices clientDetailsService,
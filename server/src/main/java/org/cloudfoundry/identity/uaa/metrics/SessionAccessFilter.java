@@ -0,0 +1,163 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the HTTP session accesses of each URL group, and keeps requests that
+ * authenticate with a bearer token to an API URL group away from the session
+ * store altogether. Such requests see no session: {@code getSession(false)}
+ * returns null and creating one fails, so a filter or endpoint that still
+ * reaches for the session cannot cause a lookup or a write. The URL groups
+ * are those of {@link UaaMetricsFilter}.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=SessionAccess",
+        description = "UAA HTTP Session Access Metrics"
+)
+public class SessionAccessFilter extends OncePerRequestFilter {
+    static final Set<String> STATELESS_CATEGORIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("API", "Oauth/OIDC")));
+
+    private static Logger logger = LoggerFactory.getLogger(SessionAccessFilter.class);
+
+    private final UaaMetricsFilter metricsFilter;
+    private final boolean stateless;
+    private final ConcurrentMap<String, LongAdder> accesses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> refused = new ConcurrentHashMap<>();
+    private final LongAdder statelessRequests = new LongAdder();
+
+    public SessionAccessFilter(
+            final UaaMetricsFilter metricsFilter,
+            final @Value("${servlet.stateless-bearer-requests:true}") boolean stateless
+    ) {
+        this.metricsFilter = metricsFilter;
+        this.stateless = stateless;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            final @NonNull HttpServletRequest request,
+            final @NonNull HttpServletResponse response,
+            final @NonNull FilterChain filterChain) throws ServletException, IOException {
+        SessionAccessRequest wrapper = new SessionAccessRequest(request);
+        if (stateless && isBearer(request) && STATELESS_CATEGORIES.contains(wrapper.getUrlGroup().getCategory())) {
+            statelessRequests.increment();
+            wrapper.stateless = true;
+        }
+        filterChain.doFilter(wrapper, response);
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Session Accesses per URI Group")
+    public Map<String, Long> getSessionAccesses() {
+        return snapshot(accesses);
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Refused Session Accesses of Stateless Requests per URI Group")
+    public Map<String, Long> getRefusedSessionAccesses() {
+        return snapshot(refused);
+    }
+
+    @ManagedMetric(category = "performance", metricType = MetricType.COUNTER, displayName = "Stateless Bearer Requests")
+    public long getStatelessRequestCount() {
+        return statelessRequests.sum();
+    }
+
+    private static boolean isBearer(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7);
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> data = new TreeMap<>();
+        counters.forEach((group, count) -> data.put(group, count.sum()));
+        return data;
+    }
+
+    private class SessionAccessRequest extends HttpServletRequestWrapper {
+        private UrlGroup urlGroup;
+        private boolean stateless;
+
+        SessionAccessRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        UrlGroup getUrlGroup() {
+            if (urlGroup == null) {
+                urlGroup = metricsFilter.getUriGroup((HttpServletRequest) getRequest());
+            }
+            return urlGroup;
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (access()) {
+                if (create) {
+                    throw new IllegalStateException("Requests authenticated with a bearer token cannot create a session");
+                }
+                return null;
+            }
+            return super.getSession(create);
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public String changeSessionId() {
+            if (access()) {
+                throw new IllegalStateException("Requests authenticated with a bearer token have no session");
+            }
+            return super.changeSessionId();
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            return access() ? null : super.getRequestedSessionId();
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            return !access() && super.isRequestedSessionIdValid();
+        }
+
+        /**
+         * Counts an access to the session.
+         * @return true if the request must not touch the session.
+         */
+        private boolean access() {
+            String group = getUrlGroup().getGroup();
+            accesses.computeIfAbsent(group, g -> new LongAdder()).increment();
+            if (stateless) {
+                refused.computeIfAbsent(group, g -> new LongAdder()).increment();
+                logger.debug(String.format("Refused session access of stateless request to %s", getRequestURI()));
+            }
+            return stateless;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.cloudfoundry.identity.uaa.oauth.beans;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.cloudfoundry.identity.uaa.util.UaaUrlUtils;
@@ -16,6 +18,11 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -37,37 +44,125 @@ public class LegacyRedirectResolver extends org.cloudfoundry.identity.uaa.oauth.
             "configured uri %s. Please consider configuring your requested redirect uri to exactly match the " +
             "redirect_uri for this client.";
 
+    private static final int MAX_CACHED_REDIRECT_URIS = 10_000;
+
+    private static final int MAX_CACHED_CLIENT_MATCHERS = 1_000;
+
+    private static final Pattern INDEXABLE_HOST = Pattern.compile("[a-z0-9.-]+");
+
     private final SpecCompliantRedirectMatcher specCompliantRedirectMatcher = new SpecCompliantRedirectMatcher();
 
+    // keyed by the registered value, so an updated client simply maps to new entries
+    private final Cache<String, CompiledRedirectUri> compiledRedirectUris = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_REDIRECT_URIS)
+            .build();
+
+    private final Cache<Set<String>, ClientRedirectUriMatcher> clientMatchers = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_CLIENT_MATCHERS)
+            .build();
+
     @Override
     protected boolean redirectMatches(String requestedRedirect, String clientRedirect) {
         try {
             String normalizedRequestedRedirect = normalizeUri(requestedRedirect);
-            String normalizedClientRedirect = normalizeWildcardUri(clientRedirect);
-
             URI requestedRedirectURI = URI.create(normalizedRequestedRedirect);
-            ClientRedirectUriPattern clientRedirectUri = new ClientRedirectUriPattern(normalizedClientRedirect);
+            return matches(compile(clientRedirect), normalizedRequestedRedirect, requestedRedirectURI);
+        } catch (IllegalArgumentException e) {
+            logger.error(
+                    String.format("Could not validate whether requestedRedirect (%s) matches clientRedirectUri (%s)",
+                            requestedRedirect,
+                            clientRedirect),
+                    e);
+            return false;
+        }
+    }
 
-            if (!clientRedirectUri.isValidRedirect()) {
-                logger.error(String.format("Invalid redirect uri: %s", normalizedClientRedirect));
-                return false;
-            }
+    /**
+     * Checks the requested redirect against the client's compiled matcher
+     * instead of parsing every registered redirect URI again.
+     */
+    @Override
+    protected String obtainMatchingRedirect(Set<String> redirectUris, String requestedRedirect) {
+        if (requestedRedirect != null && !matchingRedirectUris(redirectUris, requestedRedirect, true).isEmpty()) {
+            return requestedRedirect;
+        }
+        return super.obtainMatchingRedirect(redirectUris, requestedRedirect);
+    }
 
-            if (clientRedirectUri.isWildcard(normalizedClientRedirect) &&
-                    clientRedirectUri.isSafeRedirect(requestedRedirectURI) &&
-                    clientRedirectUri.match(requestedRedirectURI)) {
-                return true;
-            }
+    private boolean matches(CompiledRedirectUri clientRedirectUri, String normalizedRequestedRedirect, URI requestedRedirectURI) {
+        if (clientRedirectUri.normalizationFailure != null) {
+            throw new IllegalArgumentException(clientRedirectUri.normalizationFailure);
+        }
+        ClientRedirectUriPattern pattern = clientRedirectUri.pattern;
+        if (!pattern.isValidRedirect()) {
+            logger.error(String.format("Invalid redirect uri: %s", clientRedirectUri.normalized));
+            return false;
+        }
 
-            return super.redirectMatches(normalizedRequestedRedirect, normalizedClientRedirect);
+        if (clientRedirectUri.wildcard &&
+                pattern.isSafeRedirect(requestedRedirectURI) &&
+                pattern.match(requestedRedirectURI)) {
+            return true;
+        }
+
+        return super.redirectMatches(normalizedRequestedRedirect, clientRedirectUri.normalized);
+    }
+
+    private List<String> matchingRedirectUris(Set<String> redirectUris, String requestedRedirect, boolean firstOnly) {
+        ClientRedirectUriMatcher matcher = clientMatchers.getIfPresent(redirectUris);
+        if (matcher == null) {
+            matcher = new ClientRedirectUriMatcher(redirectUris);
+            clientMatchers.put(new HashSet<>(redirectUris), matcher);
+        }
+
+        String normalizedRequestedRedirect;
+        URI requestedRedirectURI;
+        try {
+            normalizedRequestedRedirect = normalizeUri(requestedRedirect);
+            requestedRedirectURI = URI.create(normalizedRequestedRedirect);
         } catch (IllegalArgumentException e) {
             logger.error(
                     String.format("Could not validate whether requestedRedirect (%s) matches clientRedirectUri (%s)",
                             requestedRedirect,
-                            clientRedirect),
+                            redirectUris),
                     e);
-            return false;
+            return Collections.emptyList();
+        }
+
+        if (firstOnly) {
+            String exactMatch = matcher.exact.get(normalizedRequestedRedirect);
+            if (exactMatch != null) {
+                return Collections.singletonList(exactMatch);
+            }
+        }
+
+        List<String> matching = new ArrayList<>();
+        for (CompiledRedirectUri candidate : matcher.candidates(normalizedRequestedRedirect)) {
+            try {
+                if (matches(candidate, normalizedRequestedRedirect, requestedRedirectURI)) {
+                    matching.add(candidate.registered);
+                    if (firstOnly) {
+                        break;
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                logger.error(
+                        String.format("Could not validate whether requestedRedirect (%s) matches clientRedirectUri (%s)",
+                                requestedRedirect,
+                                candidate.registered),
+                        e);
+            }
         }
+        return matching;
+    }
+
+    private CompiledRedirectUri compile(String clientRedirect) {
+        CompiledRedirectUri compiled = compiledRedirectUris.getIfPresent(clientRedirect);
+        if (compiled == null) {
+            compiled = new CompiledRedirectUri(clientRedirect);
+            compiledRedirectUris.put(clientRedirect, compiled);
+        }
+        return compiled;
     }
 
     @Override
@@ -99,11 +194,12 @@ public class LegacyRedirectResolver extends org.cloudfoundry.identity.uaa.oauth.
     private void logConfiguredRedirectUrisWhichOnlyMatchFuzzily(String clientId, Set<String> registeredRedirectUris, String requestedRedirect) {
         // For each registered redirect uri considered to be a match by this class, log a warning
         // when the standard Spring library class disagrees (i.e. when it acts more strictly).
-        registeredRedirectUris.stream()
+        if (requestedRedirect == null) {
+            return;
+        }
+        matchingRedirectUris(registeredRedirectUris, requestedRedirect, false).stream()
                 .filter(registeredRedirectUri ->
-                        requestedRedirect != null &&
-                                this.redirectMatches(requestedRedirect, registeredRedirectUri) &&
-                                !specCompliantRedirectMatcher.redirectMatches(requestedRedirect, registeredRedirectUri)
+                        !specCompliantRedirectMatcher.redirectMatches(requestedRedirect, registeredRedirectUri)
                 )
                 .forEach(registeredRedirectUri ->
                         logger.warn(String.format(MSG_TEMPLATE, clientId,
@@ -182,6 +278,106 @@ public class LegacyRedirectResolver extends org.cloudfoundry.identity.uaa.oauth.
         }
     }
 
+    /**
+     * A registered redirect URI with everything that does not depend on the
+     * requested redirect worked out once.
+     */
+    private static final class CompiledRedirectUri {
+        private final String registered;
+        private final String normalized;
+        private final IllegalArgumentException normalizationFailure;
+        private final ClientRedirectUriPattern pattern;
+        private final boolean wildcard;
+        // null when a subdomain of any host could match
+        private final String indexHost;
+
+        private CompiledRedirectUri(String registered) {
+            this.registered = registered;
+            String normalizedRedirect = null;
+            IllegalArgumentException failure = null;
+            try {
+                normalizedRedirect = normalizeWildcardUri(registered);
+            } catch (IllegalArgumentException e) {
+                failure = e;
+            }
+            this.normalized = normalizedRedirect;
+            this.normalizationFailure = failure;
+            this.pattern = normalizedRedirect == null ? null : new ClientRedirectUriPattern(normalizedRedirect);
+            this.wildcard = pattern != null && pattern.isWildcard(normalizedRedirect);
+            this.indexHost = pattern != null && pattern.isValidRedirect() && !pattern.hasWildcardPort ?
+                    indexableHost(pattern.redirectMatcher.group(ClientRedirectUriPattern.URI_EXTRACTOR_AUTHORITY_GROUP)) :
+                    null;
+        }
+    }
+
+    /**
+     * All of a client's registered redirect URIs. Exact values are kept in a
+     * hash map and the rest are indexed by host, so only the registered URIs
+     * whose host is the requested host or one of its parent domains are
+     * checked, along with the ones whose host cannot be indexed.
+     */
+    private final class ClientRedirectUriMatcher {
+        private final Map<String, String> exact = new HashMap<>();
+        private final Map<String, List<CompiledRedirectUri>> byHost = new HashMap<>();
+        private final List<CompiledRedirectUri> unindexed = new ArrayList<>();
+        private final List<CompiledRedirectUri> all = new ArrayList<>();
+
+        private ClientRedirectUriMatcher(Set<String> redirectUris) {
+            for (String redirectUri : redirectUris) {
+                CompiledRedirectUri compiled = compile(redirectUri);
+                all.add(compiled);
+                if (compiled.normalized != null && compiled.pattern.isValidRedirect()) {
+                    exact.putIfAbsent(compiled.normalized, redirectUri);
+                }
+                if (compiled.indexHost == null) {
+                    unindexed.add(compiled);
+                } else {
+                    byHost.computeIfAbsent(compiled.indexHost, h -> new ArrayList<>()).add(compiled);
+                }
+            }
+        }
+
+        private Iterable<CompiledRedirectUri> candidates(String normalizedRequestedRedirect) {
+            Matcher requested = ClientRedirectUriPattern.URI_EXTRACTOR.matcher(normalizedRequestedRedirect);
+            String host = requested.matches() ?
+                    indexableHost(requested.group(ClientRedirectUriPattern.URI_EXTRACTOR_AUTHORITY_GROUP)) :
+                    null;
+            if (host == null) {
+                return all;
+            }
+
+            Set<CompiledRedirectUri> candidates = new LinkedHashSet<>();
+            for (String suffix = host; ; suffix = suffix.substring(suffix.indexOf('.') + 1)) {
+                candidates.addAll(byHost.getOrDefault(suffix, Collections.emptyList()));
+                if (suffix.indexOf('.') < 0) {
+                    break;
+                }
+            }
+            candidates.addAll(unindexed);
+            return candidates;
+        }
+    }
+
+    /**
+     * @return the lower case host without trailing dots, or null when the
+     * authority is anything but a plain host name with an optional user
+     * info and port
+     */
+    private static String indexableHost(String authority) {
+        if (authority == null || authority.indexOf('@') != authority.lastIndexOf('@')) {
+            return null;
+        }
+        String host = authority.substring(authority.indexOf('@') + 1);
+        if (host.contains(":")) {
+            host = host.substring(0, host.indexOf(':'));
+        }
+        host = host.toLowerCase();
+        while (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        return INDEXABLE_HOST.matcher(host).matches() ? host : null;
+    }
+
     private static class ClientRedirectUriPattern {
         // The URI spec provides a regex for matching URI parts
         // https://tools.ietf.org/html/rfc3986#appendix-B
@@ -173,7 +173,7 @@ public class DefaultRedirectResolver implements RedirectResolver {
      * @return the matching URI
      * @throws RedirectMismatchException if no match was found
      */
-    private String obtainMatchingRedirect(Set<String> redirectUris, String requestedRedirect) {
+    protected String obtainMatchingRedirect(Set<String> redirectUris, String requestedRedirect) {
         Assert.notEmpty(redirectUris, "Redirect URIs cannot be empty");
 
         if (redirectUris.size() == 1 && requestedRedirect == null) {
@@ -0,0 +1,216 @@
+package org.cloudfoundry.identity.uaa.provider;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus.EntityType.IDENTITY_PROVIDER;
+
+/**
+ * Serves the identity providers of a zone from a snapshot that is loaded,
+ * with every definition parsed, the first time the zone is asked for. The
+ * login page, IdP discovery and the password grant read the providers of a
+ * zone several times per request.
+ *
+ * <p>
+ * Snapshots are dropped when {@link JdbcIdentityProviderProvisioning} writes
+ * a provider of the zone, when another node does so through the
+ * {@link CacheInvalidationBus}, when the zone is changed or deleted, and
+ * after {@code identityProviders.cache.expirationSeconds}. Every caller gets
+ * its own {@link IdentityProvider} with a {@link AbstractIdentityProviderDefinition#copy()}
+ * of the parsed definition, since callers such as OIDC discovery change them.
+ * </p>
+ */
+@Component("cachingIdentityProviderProvisioning")
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=IdentityProviderCache",
+        description = "UAA Identity Provider Cache Metrics"
+)
+public class CachingIdentityProviderProvisioning implements IdentityProviderProvisioning, ApplicationListener<AbstractUaaEvent> {
+
+    private final JdbcIdentityProviderProvisioning delegate;
+
+    private final Cache<String, ZoneSnapshot> snapshots;
+
+    // bumped on every eviction, so a load racing with a change is not cached
+    private final AtomicLong cacheVersion = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public CachingIdentityProviderProvisioning(
+            final @Qualifier("identityProviderProvisioning") JdbcIdentityProviderProvisioning delegate,
+            final @Value("${identityProviders.cache.maxZones:1000}") int cacheMaxZones,
+            final @Value("${identityProviders.cache.expirationSeconds:60}") int cacheExpirationSeconds) {
+        if (cacheMaxZones < 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"identityProviders.cache.maxZones\" value (got %d). Should not be negative.", cacheMaxZones));
+        }
+        if (cacheExpirationSeconds <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"identityProviders.cache.expirationSeconds\" value (got %d). Should be positive number.", cacheExpirationSeconds));
+        }
+        this.delegate = delegate;
+        this.snapshots = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxZones)
+                .expireAfterWrite(cacheExpirationSeconds, TimeUnit.SECONDS)
+                .build();
+        delegate.addChangeListener((zoneId, id) -> evictZone(zoneId));
+    }
+
+    @Autowired(required = false)
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        cacheInvalidationBus.register(IDENTITY_PROVIDER, (zoneId, id) -> evictZone(zoneId));
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof IdentityZoneModifiedEvent) {
+            evictZone(((IdentityZone) event.getSource()).getId());
+        } else if (event instanceof EntityDeletedEvent && ((EntityDeletedEvent<?>) event).getDeleted() instanceof IdentityZone) {
+            evictZone(((IdentityZone) ((EntityDeletedEvent<?>) event).getDeleted()).getId());
+        }
+    }
+
+    @Override
+    public IdentityProvider create(IdentityProvider identityProvider, String zoneId) {
+        return delegate.create(identityProvider, zoneId);
+    }
+
+    @Override
+    public IdentityProvider update(IdentityProvider identityProvider, String zoneId) {
+        return delegate.update(identityProvider, zoneId);
+    }
+
+    @Override
+    public IdentityProvider retrieve(String id, String zoneId) {
+        return delegate.retrieve(id, zoneId);
+    }
+
+    @Override
+    public List<IdentityProvider> retrieveActive(String zoneId) {
+        return retrieveAll(true, zoneId);
+    }
+
+    @Override
+    public List<IdentityProvider> retrieveAll(boolean activeOnly, String zoneId) {
+        return snapshot(zoneId).providers.stream()
+                .filter(p -> !activeOnly || p.isActive())
+                .map(CachingIdentityProviderProvisioning::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public IdentityProvider retrieveByOrigin(String origin, String zoneId) {
+        IdentityProvider provider = snapshot(zoneId).byOrigin.get(origin);
+        if (provider == null || !provider.isActive()) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        return copyOf(provider);
+    }
+
+    @Override
+    public IdentityProvider retrieveByOriginIgnoreActiveFlag(String origin, String zoneId) {
+        IdentityProvider provider = snapshot(zoneId).byOrigin.get(origin);
+        if (provider == null) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        return copyOf(provider);
+    }
+
+    private ZoneSnapshot snapshot(String zoneId) {
+        ZoneSnapshot snapshot = snapshots.getIfPresent(zoneId);
+        if (snapshot != null) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+        misses.incrementAndGet();
+        long version = cacheVersion.get();
+        snapshot = new ZoneSnapshot(delegate.retrieveAll(false, zoneId));
+        if (cacheVersion.get() == version) {
+            snapshots.put(zoneId, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops every snapshot, for when providers were written around
+     * {@link JdbcIdentityProviderProvisioning}.
+     */
+    public void evictAll() {
+        evictZone(null);
+    }
+
+    private void evictZone(String zoneId) {
+        cacheVersion.incrementAndGet();
+        if (zoneId == null) {
+            snapshots.invalidateAll();
+        } else {
+            snapshots.invalidate(zoneId);
+        }
+    }
+
+    private static IdentityProvider copyOf(IdentityProvider provider) {
+        IdentityProvider copy = new IdentityProvider();
+        copy.setId(provider.getId());
+        copy.setVersion(provider.getVersion());
+        copy.setCreated(provider.getCreated());
+        copy.setLastModified(provider.getLastModified());
+        copy.setName(provider.getName());
+        copy.setOriginKey(provider.getOriginKey());
+        copy.setIdentityZoneId(provider.getIdentityZoneId());
+        if (provider.getConfig() != null) {
+            copy.setConfig(provider.getConfig().copy());
+        }
+        copy.setType(provider.getType());
+        copy.setActive(provider.isActive());
+        return copy;
+    }
+
+    @ManagedMetric(displayName = "Identity Provider Cache Size (Zones)")
+    public long getCacheSize() {
+        return snapshots.size();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Identity Provider Cache Hits (Since Startup)")
+    public long getCacheHits() {
+        return hits.get();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Identity Provider Cache Misses (Since Startup)")
+    public long getCacheMisses() {
+        return misses.get();
+    }
+
+    private static final class ZoneSnapshot {
+        private final List<IdentityProvider> providers;
+        private final Map<String, IdentityProvider> byOrigin;
+
+        private ZoneSnapshot(List<IdentityProvider> providers) {
+            this.providers = Collections.unmodifiableList(providers);
+            Map<String, IdentityProvider> byOrigin = new HashMap<>();
+            providers.forEach(p -> byOrigin.put(p.getOriginKey(), p));
+            this.byOrigin = byOrigin;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package org.cloudfoundry.identity.uaa.provider;
 
 import org.cloudfoundry.identity.uaa.audit.event.SystemDeletable;
+import org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus;
+import org.cloudfoundry.identity.uaa.cache.CacheInvalidationListener;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.ObjectUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -20,6 +23,9 @@ import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus.EntityType.IDENTITY_PROVIDER;
 
 @Component("identityProviderProvisioning")
 public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisioning, SystemDeletable {
@@ -52,10 +58,27 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
 
     private final RowMapper<IdentityProvider> mapper = new IdentityProviderRowMapper();
 
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private final List<CacheInvalidationListener> changeListeners = new CopyOnWriteArrayList<>();
+
     public JdbcIdentityProviderProvisioning(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @Autowired(required = false)
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * Registers a listener that is told about every provider written through
+     * this instance, before the change is published to the other nodes.
+     */
+    public void addChangeListener(CacheInvalidationListener listener) {
+        changeListeners.add(listener);
+    }
+
     @Override
     public IdentityProvider retrieve(String id, String zoneId) {
         return jdbcTemplate.queryForObject(IDENTITY_PROVIDER_BY_ID_QUERY, mapper, id, zoneId);
@@ -106,6 +129,7 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
         } catch (DuplicateKeyException e) {
             throw new IdpAlreadyExistsException(e.getMostSpecificCause().getMessage());
         }
+        providerChanged(zoneId, id, identityProvider.getVersion());
         return retrieve(id, zoneId);
     }
 
@@ -123,6 +147,7 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
             ps.setString(pos++, identityProvider.getId().trim());
             ps.setString(pos, zoneId);
         });
+        providerChanged(zoneId, identityProvider.getId(), identityProvider.getVersion() + 1);
         return retrieve(identityProvider.getId(), zoneId);
     }
 
@@ -144,12 +169,23 @@ public class JdbcIdentityProviderProvisioning implements IdentityProviderProvisi
 
     @Override
     public int deleteByIdentityZone(String zoneId) {
-        return jdbcTemplate.update(DELETE_IDENTITY_PROVIDER_BY_ZONE_SQL, zoneId);
+        int deleted = jdbcTemplate.update(DELETE_IDENTITY_PROVIDER_BY_ZONE_SQL, zoneId);
+        providerChanged(zoneId, null, null);
+        return deleted;
     }
 
     @Override
     public int deleteByOrigin(String origin, String zoneId) {
-        return jdbcTemplate.update(DELETE_IDENTITY_PROVIDER_BY_ORIGIN_SQL, zoneId, origin);
+        int deleted = jdbcTemplate.update(DELETE_IDENTITY_PROVIDER_BY_ORIGIN_SQL, zoneId, origin);
+        providerChanged(zoneId, null, null);
+        return deleted;
+    }
+
+    private void providerChanged(String zoneId, String id, Integer version) {
+        changeListeners.forEach(listener -> listener.invalidate(zoneId, id));
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.publish(IDENTITY_PROVIDER, zoneId, id, version);
+        }
     }
 
     @Override
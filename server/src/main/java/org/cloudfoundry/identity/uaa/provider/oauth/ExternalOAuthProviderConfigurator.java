@@ -37,7 +37,7 @@ public class ExternalOAuthProviderConfigurator implements IdentityProviderProvis
     private final UaaRandomStringUtil uaaRandomStringUtil;
 
     public ExternalOAuthProviderConfigurator(
-            final @Qualifier("identityProviderProvisioning") IdentityProviderProvisioning providerProvisioning,
+            final @Qualifier("cachingIdentityProviderProvisioning") IdentityProviderProvisioning providerProvisioning,
             final OidcMetadataFetcher oidcMetadataFetcher,
             final UaaRandomStringUtil uaaRandomStringUtil) {
         this.providerProvisioning = providerProvisioning;
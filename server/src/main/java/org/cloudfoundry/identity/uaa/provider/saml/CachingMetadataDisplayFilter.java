@@ -0,0 +1,142 @@
+/*
+ * *****************************************************************************
+ *      Cloud Foundry
+ *      Copyright (c) [2009-2016] Pivotal Software, Inc. All Rights Reserved.
+ *      This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *      You may not use this product except in compliance with the License.
+ *
+ *      This product includes a number of subcomponents with
+ *      separate copyright notices and license terms. Your use of these
+ *      subcomponents is subject to the terms and conditions of the
+ *      subcomponent's license, as noted in the LICENSE file.
+ * *****************************************************************************
+ */
+
+package org.cloudfoundry.identity.uaa.provider.saml;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.opensaml.saml2.metadata.provider.MetadataProviderException;
+import org.springframework.security.saml.metadata.MetadataDisplayFilter;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the metadata of the current zone from a document that is generated,
+ * signed and serialized once per zone. The document depends only on the
+ * filter's configuration and on the zone, including its SAML keys and entity
+ * settings, so it is kept until the zone, or the default zone whose keys are
+ * used when the zone has none, is saved again. Every response carries a
+ * strong ETag, and conditional requests for an unchanged document are
+ * answered with 304 Not Modified.
+ */
+public abstract class CachingMetadataDisplayFilter extends MetadataDisplayFilter {
+
+    static final String CACHE_CONTROL = "public, no-cache";
+
+    private final Cache<String, MetadataDocument> documents = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    @Override
+    protected void processMetadataDisplay(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+        IdentityZone zone = IdentityZoneHolder.get();
+        String key = documentKey(zone);
+        MetadataDocument document = documents.getIfPresent(key);
+        if (document == null) {
+            document = new MetadataDocument(generateDocument(request, response));
+            documents.put(key, document);
+        }
+
+        response.setHeader("ETag", document.etag);
+        response.setHeader("Cache-Control", CACHE_CONTROL);
+        if (matches(request.getHeader("If-None-Match"), document.etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType("application/samlmetadata+xml");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", String.format("attachment; filename=\"%s\"", getFileName(zone)));
+        response.getWriter().print(document.xml);
+    }
+
+    /**
+     * The name of the file the metadata of the given zone is downloaded as.
+     */
+    protected abstract String getFileName(IdentityZone zone);
+
+    /**
+     * Generates the metadata of the current zone the same way
+     * {@link MetadataDisplayFilter} would write it to the response.
+     */
+    protected String generateDocument(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+        String entityId;
+        try {
+            entityId = contextProvider.getLocalEntity(request, response).getLocalEntityId();
+        } catch (MetadataProviderException e) {
+            throw new ServletException("Error initializing metadata", e);
+        }
+        StringWriter xml = new StringWriter();
+        displayMetadata(entityId, new PrintWriter(xml));
+        return xml.toString();
+    }
+
+    private static String documentKey(IdentityZone zone) {
+        return fingerprint(zone) + "|" + fingerprint(IdentityZoneHolder.getUaaZone());
+    }
+
+    private static String fingerprint(IdentityZone zone) {
+        Date lastModified = zone.getLastModified();
+        return zone.getId() + ":" + zone.getVersion() + ":" + (lastModified == null ? "" : lastModified.getTime());
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (!StringUtils.hasText(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class MetadataDocument {
+        private final String xml;
+        private final String etag;
+
+        private MetadataDocument(String xml) {
+            this.xml = xml;
+            this.etag = "\"" + digest(xml) + "\"";
+        }
+
+        private static String digest(String xml) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest(xml.getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
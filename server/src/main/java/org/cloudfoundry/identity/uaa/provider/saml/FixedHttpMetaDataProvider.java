@@ -1,34 +1,218 @@
 package org.cloudfoundry.identity.uaa.provider.saml;
 
 import org.cloudfoundry.identity.uaa.cache.UrlContentCache;
+import org.cloudfoundry.identity.uaa.util.TimeService;
 import org.opensaml.saml2.metadata.provider.MetadataProviderException;
+import org.opensaml.xml.parse.BasicParserPool;
+import org.opensaml.xml.parse.XMLParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
+import org.w3c.dom.Element;
 
+import java.io.ByteArrayInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
 
-public class FixedHttpMetaDataProvider {
+/**
+ * Fetches SAML metadata from the URLs providers are configured with. A URL is
+ * fetched through the {@link UrlContentCache} the first time it is asked for;
+ * from then on {@link #refresh()} re-fetches it in the background, at most
+ * {@code saml.metadata.refreshParallelism} URLs at a time, and logins are
+ * served the last document that was fetched and parsed successfully. A failed
+ * refresh keeps that document, so an unreachable or broken metadata endpoint
+ * does not turn into login errors. URLs no provider has asked for in
+ * {@code saml.metadata.maxIdleSeconds} are no longer refreshed.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=SamlMetadataRefresh",
+        description = "UAA Remote SAML Metadata Metrics"
+)
+public class FixedHttpMetaDataProvider implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(FixedHttpMetaDataProvider.class);
+
+    private static final String METADATA_NS = "urn:oasis:names:tc:SAML:2.0:metadata";
 
     private final RestTemplate trustingRestTemplate;
     private final RestTemplate nonTrustingRestTemplate;
     private final UrlContentCache cache;
+    private final TimeService timeService;
+    private final long refreshIntervalMillis;
+    private final long maxIdleMillis;
+    private final Executor refreshExecutor;
+
+    private final BasicParserPool parserPool = new BasicParserPool();
+
+    private final Map<Location, RemoteMetadata> tracked = new ConcurrentHashMap<>();
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
 
+    @Autowired
     public FixedHttpMetaDataProvider(
             final RestTemplate trustingRestTemplate,
             final RestTemplate nonTrustingRestTemplate,
-            final UrlContentCache cache) {
+            final UrlContentCache cache,
+            final TimeService timeService,
+            final @Value("${saml.metadata.refreshInterval:600000}") long refreshIntervalMillis,
+            final @Value("${saml.metadata.refreshParallelism:4}") int refreshParallelism,
+            final @Value("${saml.metadata.maxIdleSeconds:86400}") int maxIdleSeconds) {
+        this(trustingRestTemplate, nonTrustingRestTemplate, cache, timeService, refreshIntervalMillis,
+                newRefreshExecutor(refreshParallelism), maxIdleSeconds);
+    }
+
+    FixedHttpMetaDataProvider(
+            final RestTemplate trustingRestTemplate,
+            final RestTemplate nonTrustingRestTemplate,
+            final UrlContentCache cache,
+            final TimeService timeService,
+            final long refreshIntervalMillis,
+            final Executor refreshExecutor,
+            final int maxIdleSeconds) {
+        if (refreshIntervalMillis <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"saml.metadata.refreshInterval\" value (got %d). Should be positive number.", refreshIntervalMillis));
+        }
+        if (maxIdleSeconds <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"saml.metadata.maxIdleSeconds\" value (got %d). Should be positive number.", maxIdleSeconds));
+        }
         this.trustingRestTemplate = trustingRestTemplate;
         this.nonTrustingRestTemplate = nonTrustingRestTemplate;
         this.cache = cache;
+        this.timeService = timeService;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.maxIdleMillis = maxIdleSeconds * 1000L;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    private static ExecutorService newRefreshExecutor(int refreshParallelism) {
+        if (refreshParallelism <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"saml.metadata.refreshParallelism\" value (got %d). Should be positive number.", refreshParallelism));
+        }
+        return Executors.newFixedThreadPool(refreshParallelism, FixedHttpMetaDataProvider::newRefreshThread);
+    }
+
+    @Override
+    public void destroy() {
+        if (refreshExecutor instanceof ExecutorService) {
+            ((ExecutorService) refreshExecutor).shutdownNow();
+        }
     }
 
     public byte[] fetchMetadata(String metadataURL, boolean isSkipSSLValidation) throws MetadataProviderException {
         validateMetadataURL(metadataURL);
 
-        if (isSkipSSLValidation) {
-            return cache.getUrlContent(metadataURL, trustingRestTemplate);
+        RemoteMetadata metadata = tracked.computeIfAbsent(new Location(metadataURL, isSkipSSLValidation), RemoteMetadata::new);
+        long now = timeService.getCurrentTimeMillis();
+        metadata.lastRequested = now;
+        byte[] content = metadata.content;
+        if (content != null) {
+            return content;
+        }
+
+        metadata.lastAttempt = now;
+        try {
+            content = cache.getUrlContent(metadataURL, template(isSkipSSLValidation));
+        } catch (RestClientException e) {
+            metadata.failures.incrementAndGet();
+            throw e;
+        }
+        if (isValid(metadata.location, content)) {
+            metadata.fetched(content, now, timeService.getCurrentTimeMillis());
+        }
+        return content;
+    }
+
+    /**
+     * Hands every tracked URL whose document is older than
+     * {@code saml.metadata.refreshInterval} to the refresh pool and returns
+     * straight away, so a slow metadata endpoint does not hold up the
+     * scheduler. A URL whose previous refresh is still running is skipped.
+     */
+    @Scheduled(fixedDelayString = "${saml.metadata.refreshInterval:600000}")
+    public void refresh() {
+        long now = timeService.getCurrentTimeMillis();
+        tracked.values().removeIf(metadata -> now - metadata.lastRequested > maxIdleMillis);
+
+        tracked.values().stream()
+                .filter(metadata -> now - metadata.lastAttempt >= refreshIntervalMillis)
+                .filter(metadata -> metadata.refreshing.compareAndSet(false, true))
+                .forEach(this::submit);
+    }
+
+    private void submit(RemoteMetadata metadata) {
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh(metadata);
+                } finally {
+                    metadata.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            metadata.refreshing.set(false);
+            logger.debug("Refresh of " + metadata.location + " rejected, the refresh pool is shut down");
+        }
+    }
+
+    private void refresh(RemoteMetadata metadata) {
+        Location location = metadata.location;
+        long started = timeService.getCurrentTimeMillis();
+        metadata.lastAttempt = started;
+        try {
+            byte[] content = template(location.skipSslValidation).getForObject(new URI(location.url), byte[].class);
+            if (isValid(location, content)) {
+                metadata.fetched(content, started, timeService.getCurrentTimeMillis());
+                refreshes.incrementAndGet();
+                return;
+            }
+        } catch (RestClientException | URISyntaxException e) {
+            logger.warn("Unable to refresh metadata for " + location.url + ", keeping the last fetched document", e);
+        }
+        metadata.failures.incrementAndGet();
+        refreshFailures.incrementAndGet();
+    }
+
+    private boolean isValid(Location location, byte[] content) {
+        if (content == null || content.length == 0) {
+            logger.warn("Empty metadata fetched from " + location.url);
+            return false;
         }
-        return cache.getUrlContent(metadataURL, nonTrustingRestTemplate);
+        try {
+            Element root = parserPool.parse(new ByteArrayInputStream(content)).getDocumentElement();
+            if (METADATA_NS.equals(root.getNamespaceURI())
+                    && ("EntityDescriptor".equals(root.getLocalName()) || "EntitiesDescriptor".equals(root.getLocalName()))) {
+                return true;
+            }
+            logger.warn("Document fetched from " + location.url + " is not SAML metadata");
+        } catch (XMLParserException e) {
+            logger.warn("Unable to parse metadata fetched from " + location.url, e);
+        }
+        return false;
+    }
+
+    private RestTemplate template(boolean isSkipSSLValidation) {
+        return isSkipSSLValidation ? trustingRestTemplate : nonTrustingRestTemplate;
     }
 
     private void validateMetadataURL(String metadataURL) throws MetadataProviderException {
@@ -39,4 +223,100 @@ public class FixedHttpMetaDataProvider {
         }
     }
 
+    @ManagedMetric(displayName = "Remote Metadata Documents")
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    @ManagedMetric(displayName = "Remote Metadata Age (Seconds)")
+    public Map<String, Long> getMetadataAgeSeconds() {
+        long now = timeService.getCurrentTimeMillis();
+        return metrics(metadata -> metadata.fetched < 0 ? -1 : (now - metadata.fetched) / 1000);
+    }
+
+    @ManagedMetric(displayName = "Remote Metadata Fetch Latency (Millis)")
+    public Map<String, Long> getFetchLatencyMillis() {
+        return metrics(metadata -> metadata.fetchMillis);
+    }
+
+    @ManagedMetric(displayName = "Remote Metadata Fetch Failures")
+    public Map<String, Long> getFetchFailures() {
+        return metrics(metadata -> metadata.failures.get());
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Remote Metadata Refreshes (Since Startup)")
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Remote Metadata Refresh Failures (Since Startup)")
+    public long getRefreshFailureCount() {
+        return refreshFailures.get();
+    }
+
+    private Map<String, Long> metrics(ToLongFunction<RemoteMetadata> metric) {
+        Map<String, Long> result = new TreeMap<>();
+        tracked.values().forEach(metadata -> result.put(metadata.location.toString(), metric.applyAsLong(metadata)));
+        return result;
+    }
+
+    private static Thread newRefreshThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "saml-metadata-refresh");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Location {
+        private final String url;
+        private final boolean skipSslValidation;
+
+        private Location(String url, boolean skipSslValidation) {
+            this.url = url;
+            this.skipSslValidation = skipSslValidation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Location)) {
+                return false;
+            }
+            Location that = (Location) o;
+            return skipSslValidation == that.skipSslValidation && url.equals(that.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, skipSslValidation);
+        }
+
+        @Override
+        public String toString() {
+            return skipSslValidation ? url + " (skipSslValidation)" : url;
+        }
+    }
+
+    private static final class RemoteMetadata {
+        private final Location location;
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile byte[] content;
+        private volatile long fetched = -1;
+        private volatile long fetchMillis = -1;
+        private volatile long lastAttempt;
+        private volatile long lastRequested;
+
+        private RemoteMetadata(Location location) {
+            this.location = location;
+        }
+
+        private void fetched(byte[] content, long started, long finished) {
+            this.content = content;
+            this.fetched = finished;
+            this.fetchMillis = finished - started;
+            this.failures.set(0);
+        }
+    }
 }
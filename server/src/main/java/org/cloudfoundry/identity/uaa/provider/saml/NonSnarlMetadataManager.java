@@ -15,6 +15,9 @@
 
 package org.cloudfoundry.identity.uaa.provider.saml;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.cloudfoundry.identity.uaa.provider.SamlIdentityProviderDefinition;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
@@ -76,7 +79,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 
 public class NonSnarlMetadataManager extends MetadataManager implements ExtendedMetadataProvider, InitializingBean, DisposableBean {
@@ -92,6 +97,14 @@ public class NonSnarlMetadataManager extends MetadataManager implements Extended
     private final SamlIdentityProviderConfigurator configurator;
     private ZoneAwareMetadataGenerator generator;
 
+    // matches the expiration of the fetched metadata in ExpiringUrlCache
+    private static final long URL_METADATA_EXPIRATION_MILLIS = 10 * 60 * 1000L;
+
+    private final Cache<DelegateKey, InitializedDelegate> delegates = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
     public NonSnarlMetadataManager(SamlIdentityProviderConfigurator configurator) throws MetadataProviderException {
         super(Collections.EMPTY_LIST);
         this.configurator = configurator;
@@ -143,14 +156,10 @@ public class NonSnarlMetadataManager extends MetadataManager implements Extended
         } catch (MetadataProviderException e) {
             throw new IllegalStateException(e);
         }
-        for (SamlIdentityProviderDefinition definition : configurator.getIdentityProviderDefinitions()) {
-            log.info("Adding SAML IDP zone[" + zone.getId() + "] alias[" + definition.getIdpEntityAlias() + "]");
+        for (IdentityProvider provider : configurator.getIdentityProvidersForZone(zone)) {
+            SamlIdentityProviderDefinition definition = (SamlIdentityProviderDefinition) provider.getConfig();
             try {
-                ExtendedMetadataDelegate delegate = configurator.getExtendedMetadataDelegate(definition);
-                initializeProvider(delegate);
-                initializeProviderData(delegate);
-                initializeProviderFilters(delegate);
-                result.add(delegate);
+                result.add(getInitializedDelegate(zone, provider, definition));
             } catch (RestClientException | MetadataProviderException e) {
                 log.error("Invalid SAML IDP zone[" + zone.getId() + "] alias[" + definition.getIdpEntityAlias() + "]", e);
             }
@@ -158,6 +167,29 @@ public class NonSnarlMetadataManager extends MetadataManager implements Extended
         return result;
     }
 
+    /**
+     * Initializing a delegate parses the metadata and verifies its signature,
+     * so initialized delegates are kept until the provider or the zone, whose
+     * keys verify the metadata, changes. Delegates for metadata fetched from
+     * a URL are rebuilt once the fetched document may have expired.
+     */
+    ExtendedMetadataDelegate getInitializedDelegate(IdentityZone zone, IdentityProvider provider, SamlIdentityProviderDefinition definition) throws MetadataProviderException {
+        DelegateKey key = new DelegateKey(zone.getId(), zone.getVersion(), provider.getId(), provider.getVersion());
+        long now = System.currentTimeMillis();
+        InitializedDelegate cached = delegates.getIfPresent(key);
+        if (cached != null && now < cached.expires) {
+            return cached.delegate;
+        }
+        log.info("Adding SAML IDP zone[" + zone.getId() + "] alias[" + definition.getIdpEntityAlias() + "]");
+        ExtendedMetadataDelegate delegate = configurator.getExtendedMetadataDelegate(definition);
+        initializeProvider(delegate);
+        initializeProviderData(delegate);
+        initializeProviderFilters(delegate);
+        long expires = definition.getType() == SamlIdentityProviderDefinition.MetadataLocation.URL ? now + URL_METADATA_EXPIRATION_MILLIS : Long.MAX_VALUE;
+        delegates.put(key, new InitializedDelegate(delegate, expires));
+        return delegate;
+    }
+
     @Override
     protected void initializeProvider(ExtendedMetadataDelegate provider) throws MetadataProviderException {
         // Initialize provider and perform signature verification
@@ -932,4 +964,48 @@ public class NonSnarlMetadataManager extends MetadataManager implements Extended
         }
 
     }
-}
\ No newline at end of file
+
+    private static final class DelegateKey {
+        private final String zoneId;
+        private final int zoneVersion;
+        private final String providerId;
+        private final int providerVersion;
+
+        private DelegateKey(String zoneId, int zoneVersion, String providerId, int providerVersion) {
+            this.zoneId = zoneId;
+            this.zoneVersion = zoneVersion;
+            this.providerId = providerId;
+            this.providerVersion = providerVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DelegateKey)) {
+                return false;
+            }
+            DelegateKey other = (DelegateKey) o;
+            return zoneVersion == other.zoneVersion &&
+                    providerVersion == other.providerVersion &&
+                    Objects.equals(zoneId, other.zoneId) &&
+                    Objects.equals(providerId, other.providerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(zoneId, zoneVersion, providerId, providerVersion);
+        }
+    }
+
+    private static final class InitializedDelegate {
+        private final ExtendedMetadataDelegate delegate;
+        private final long expires;
+
+        private InitializedDelegate(ExtendedMetadataDelegate delegate, long expires) {
+            this.delegate = delegate;
+            this.expires = expires;
+        }
+    }
+}
@@ -32,7 +32,7 @@ public class SamlIdentityProviderConfigurator {
 
     public SamlIdentityProviderConfigurator(
             final BasicParserPool parserPool,
-            final @Qualifier("identityProviderProvisioning") IdentityProviderProvisioning providerProvisioning,
+            final @Qualifier("cachingIdentityProviderProvisioning") IdentityProviderProvisioning providerProvisioning,
             final FixedHttpMetaDataProvider fixedHttpMetaDataProvider) {
         this.parserPool = parserPool;
         this.providerProvisioning = providerProvisioning;
@@ -45,9 +45,21 @@ public class SamlIdentityProviderConfigurator {
 
     public List<SamlIdentityProviderDefinition> getIdentityProviderDefinitionsForZone(IdentityZone zone) {
         List<SamlIdentityProviderDefinition> result = new LinkedList<>();
+        for (IdentityProvider provider : getIdentityProvidersForZone(zone)) {
+            result.add((SamlIdentityProviderDefinition) provider.getConfig());
+        }
+        return result;
+    }
+
+    /**
+     * @return the active SAML identity providers of the zone, with their ids
+     * and versions
+     */
+    public List<IdentityProvider> getIdentityProvidersForZone(IdentityZone zone) {
+        List<IdentityProvider> result = new LinkedList<>();
         for (IdentityProvider provider : providerProvisioning.retrieveActive(zone.getId())) {
             if (OriginKeys.SAML.equals(provider.getType())) {
-                result.add((SamlIdentityProviderDefinition) provider.getConfig());
+                result.add(provider);
             }
         }
         return result;
@@ -12,20 +12,30 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.provider.saml;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.cloudfoundry.identity.uaa.saml.SamlKey;
 import org.cloudfoundry.identity.uaa.util.KeyWithCert;
 import org.cloudfoundry.identity.uaa.zone.SamlConfig;
+import org.opensaml.xml.security.credential.Credential;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.saml.key.JKSKeyManager;
 import org.springframework.security.saml.key.KeyManager;
 
+import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Optional.ofNullable;
 
@@ -33,6 +43,16 @@ public final class SamlKeyManagerFactory {
 
     protected final static Logger logger = LoggerFactory.getLogger(SamlKeyManagerFactory.class);
 
+    /*
+     * Key managers are keyed by a digest of the keys they hold, so zones that
+     * have not changed their keys reuse the keystore built for them, and
+     * passphrases are not kept as map keys.
+     */
+    private final Cache<String, KeyManager> keyManagers = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
     public SamlKeyManagerFactory() {
     }
 
@@ -47,6 +67,44 @@ public final class SamlKeyManagerFactory {
             return null;
         }
 
+        String fingerprint = fingerprint(keys, activeKeyId);
+        KeyManager keyManager = keyManagers.getIfPresent(fingerprint);
+        if (keyManager == null) {
+            keyManager = createKeyManager(keys, activeKeyId);
+            keyManagers.put(fingerprint, keyManager);
+        }
+        return keyManager;
+    }
+
+    private static String fingerprint(Map<String, SamlKey> keys, String activeKeyId) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, activeKeyId);
+            for (Map.Entry<String, SamlKey> entry : new TreeMap<>(keys).entrySet()) {
+                update(digest, entry.getKey());
+                update(digest, entry.getValue().getKey());
+                update(digest, entry.getValue().getPassphrase());
+                update(digest, entry.getValue().getCertificate());
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            digest.update((byte) 1);
+            digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(bytes);
+        }
+    }
+
+    private KeyManager createKeyManager(Map<String, SamlKey> keys, String activeKeyId) {
         try {
             KeyStore keystore = KeyStore.getInstance("JKS");
             keystore.load(null);
@@ -69,7 +127,7 @@ public final class SamlKeyManagerFactory {
                 }
             }
 
-            JKSKeyManager keyManager = new JKSKeyManager(keystore, aliasPasswordMap, activeKeyId);
+            JKSKeyManager keyManager = new CredentialCachingKeyManager(keystore, aliasPasswordMap, activeKeyId);
 
             logger.info("Loaded service provider certificate " + keyManager.getDefaultCredentialName());
 
@@ -81,4 +139,25 @@ public final class SamlKeyManagerFactory {
                     t);
         }
     }
+
+    /*
+     * Resolving a credential reads and decodes the private key from the
+     * keystore. The keystore never changes once built, so each credential
+     * is resolved once and shared, also letting signers cache per credential.
+     */
+    private static final class CredentialCachingKeyManager extends JKSKeyManager {
+        private final Map<String, Credential> credentials = new ConcurrentHashMap<>();
+
+        private CredentialCachingKeyManager(KeyStore keyStore, Map<String, String> passwords, String defaultKey) {
+            super(keyStore, passwords, defaultKey);
+        }
+
+        @Override
+        public Credential getCredential(String keyName) {
+            if (keyName == null) {
+                return super.getCredential(null);
+            }
+            return credentials.computeIfAbsent(keyName, super::getCredential);
+        }
+    }
 }
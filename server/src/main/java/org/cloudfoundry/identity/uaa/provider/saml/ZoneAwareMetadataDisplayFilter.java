@@ -14,19 +14,15 @@
 
 package org.cloudfoundry.identity.uaa.provider.saml;
 
-import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.opensaml.saml2.metadata.EntityDescriptor;
 import org.opensaml.xml.io.MarshallingException;
-import org.springframework.security.saml.metadata.MetadataDisplayFilter;
 import org.springframework.security.saml.metadata.MetadataGenerator;
 
 import javax.servlet.ServletException;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
 import java.io.PrintWriter;
 
-public class ZoneAwareMetadataDisplayFilter extends MetadataDisplayFilter {
+public class ZoneAwareMetadataDisplayFilter extends CachingMetadataDisplayFilter {
 
     protected final MetadataGenerator generator;
 
@@ -39,10 +35,8 @@ public class ZoneAwareMetadataDisplayFilter extends MetadataDisplayFilter {
     }
 
     @Override
-    protected void processMetadataDisplay(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
-        super.processMetadataDisplay(request, response);
-        response.setHeader("Content-Disposition", String.format("attachment; filename=\"saml-%ssp.xml\"",
-                !IdentityZoneHolder.isUaa() ? IdentityZoneHolder.get().getSubdomain() + "-" : ""));
+    protected String getFileName(IdentityZone zone) {
+        return String.format("saml-%ssp.xml", !zone.isUaa() ? zone.getSubdomain() + "-" : "");
     }
 
     @Override
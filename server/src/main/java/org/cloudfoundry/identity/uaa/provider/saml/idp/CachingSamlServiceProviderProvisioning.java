@@ -0,0 +1,170 @@
+/*******************************************************************************
+ *     Cloud Foundry
+ *     Copyright (c) [2009-2016] Pivotal Software, Inc. All Rights Reserved.
+ *
+ *     This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *     You may not use this product except in compliance with the License.
+ *
+ *     This product includes a number of subcomponents with
+ *     separate copyright notices and license terms. Your use of these
+ *     subcomponents is subject to the terms and conditions of the
+ *     subcomponent's license, as noted in the LICENSE file.
+ *******************************************************************************/
+package org.cloudfoundry.identity.uaa.provider.saml.idp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus.EntityType.SAML_SERVICE_PROVIDER;
+
+/**
+ * Serves the SAML service providers of a zone from a registry that is loaded
+ * the first time the zone is asked for and indexed by entity id. The IdP
+ * side looks service providers up on every AuthnRequest and only ever reads
+ * them.
+ *
+ * <p>
+ * Registries are dropped when {@link JdbcSamlServiceProviderProvisioning}
+ * writes a service provider of the zone, when another node does so through
+ * the {@link CacheInvalidationBus}, and after {@code serviceProviders.cache.expirationSeconds}.
+ * Every caller gets its own {@link SamlServiceProvider}; the definitions are
+ * shared between callers and must not be changed.
+ * </p>
+ */
+public class CachingSamlServiceProviderProvisioning implements SamlServiceProviderProvisioning {
+
+    private final JdbcSamlServiceProviderProvisioning delegate;
+
+    private final Cache<String, ZoneRegistry> registries;
+
+    // bumped on every eviction, so a load racing with a change is not cached
+    private final AtomicLong cacheVersion = new AtomicLong();
+
+    public CachingSamlServiceProviderProvisioning(JdbcSamlServiceProviderProvisioning delegate,
+                                                  int cacheMaxZones,
+                                                  int cacheExpirationSeconds) {
+        if (cacheMaxZones < 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"serviceProviders.cache.maxZones\" value (got %d). Should not be negative.", cacheMaxZones));
+        }
+        if (cacheExpirationSeconds <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"serviceProviders.cache.expirationSeconds\" value (got %d). Should be positive number.", cacheExpirationSeconds));
+        }
+        this.delegate = delegate;
+        this.registries = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxZones)
+                .expireAfterWrite(cacheExpirationSeconds, TimeUnit.SECONDS)
+                .build();
+        delegate.addChangeListener((zoneId, id) -> evictZone(zoneId));
+    }
+
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        cacheInvalidationBus.register(SAML_SERVICE_PROVIDER, (zoneId, id) -> evictZone(zoneId));
+    }
+
+    @Override
+    public SamlServiceProvider create(SamlServiceProvider serviceProvider, String zoneId) {
+        return delegate.create(serviceProvider, zoneId);
+    }
+
+    @Override
+    public void delete(String id, String zoneId) {
+        delegate.delete(id, zoneId);
+    }
+
+    @Override
+    public SamlServiceProvider update(SamlServiceProvider serviceProvider, String zoneId) {
+        return delegate.update(serviceProvider, zoneId);
+    }
+
+    @Override
+    public SamlServiceProvider retrieve(String id, String zoneId) {
+        return delegate.retrieve(id, zoneId);
+    }
+
+    @Override
+    public List<SamlServiceProvider> retrieveActive(String zoneId) {
+        return retrieveAll(true, zoneId);
+    }
+
+    @Override
+    public List<SamlServiceProvider> retrieveAll(boolean activeOnly, String zoneId) {
+        return registry(zoneId).serviceProviders.stream()
+                .filter(sp -> !activeOnly || sp.isActive())
+                .map(CachingSamlServiceProviderProvisioning::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public SamlServiceProvider retrieveByEntityId(String entityId, String zoneId) {
+        SamlServiceProvider serviceProvider = registry(zoneId).byEntityId.get(entityId);
+        if (serviceProvider == null) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        return copyOf(serviceProvider);
+    }
+
+    private ZoneRegistry registry(String zoneId) {
+        ZoneRegistry registry = registries.getIfPresent(zoneId);
+        if (registry != null) {
+            return registry;
+        }
+        long version = cacheVersion.get();
+        registry = new ZoneRegistry(delegate.retrieveAll(false, zoneId));
+        if (cacheVersion.get() == version) {
+            registries.put(zoneId, registry);
+        }
+        return registry;
+    }
+
+    /**
+     * Drops every registry, for when service providers were written around
+     * {@link JdbcSamlServiceProviderProvisioning}.
+     */
+    public void evictAll() {
+        evictZone(null);
+    }
+
+    private void evictZone(String zoneId) {
+        cacheVersion.incrementAndGet();
+        if (zoneId == null) {
+            registries.invalidateAll();
+        } else {
+            registries.invalidate(zoneId);
+        }
+    }
+
+    private static SamlServiceProvider copyOf(SamlServiceProvider serviceProvider) {
+        return new SamlServiceProvider()
+                .setId(serviceProvider.getId())
+                .setVersion(serviceProvider.getVersion())
+                .setCreated(serviceProvider.getCreated())
+                .setLastModified(serviceProvider.getLastModified())
+                .setName(serviceProvider.getName())
+                .setEntityId(serviceProvider.getEntityId())
+                .setConfig(serviceProvider.getConfig())
+                .setActive(serviceProvider.isActive())
+                .setIdentityZoneId(serviceProvider.getIdentityZoneId());
+    }
+
+    private static final class ZoneRegistry {
+        private final List<SamlServiceProvider> serviceProviders;
+        private final Map<String, SamlServiceProvider> byEntityId;
+
+        private ZoneRegistry(List<SamlServiceProvider> serviceProviders) {
+            this.serviceProviders = Collections.unmodifiableList(serviceProviders);
+            Map<String, SamlServiceProvider> byEntityId = new HashMap<>();
+            serviceProviders.forEach(sp -> byEntityId.put(sp.getEntityId(), sp));
+            this.byEntityId = byEntityId;
+        }
+    }
+}
@@ -14,20 +14,13 @@
 
 package org.cloudfoundry.identity.uaa.provider.saml.idp;
 
-import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
-import org.springframework.security.saml.metadata.MetadataDisplayFilter;
+import org.cloudfoundry.identity.uaa.provider.saml.CachingMetadataDisplayFilter;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
-
-public class IdpMetadataDisplayFilter extends MetadataDisplayFilter {
+public class IdpMetadataDisplayFilter extends CachingMetadataDisplayFilter {
 
     @Override
-    protected void processMetadataDisplay(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
-        super.processMetadataDisplay(request, response);
-        response.setHeader("Content-Disposition", String.format("attachment; filename=\"saml-%sidp.xml\"",
-            !IdentityZoneHolder.isUaa() ? IdentityZoneHolder.get().getSubdomain() + "-" : ""));
+    protected String getFileName(IdentityZone zone) {
+        return String.format("saml-%sidp.xml", !zone.isUaa() ? zone.getSubdomain() + "-" : "");
     }
 }
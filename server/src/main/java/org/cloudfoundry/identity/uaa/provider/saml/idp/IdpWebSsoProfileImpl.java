@@ -17,7 +17,6 @@ import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimUserProvisioning;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.joda.time.DateTime;
-import org.opensaml.Configuration;
 import org.opensaml.common.SAMLException;
 import org.opensaml.common.SAMLObjectBuilder;
 import org.opensaml.common.SAMLVersion;
@@ -47,16 +46,10 @@ import org.opensaml.saml2.metadata.SPSSODescriptor;
 import org.opensaml.saml2.metadata.provider.MetadataProviderException;
 import org.opensaml.ws.message.encoder.MessageEncodingException;
 import org.opensaml.xml.XMLObjectBuilder;
-import org.opensaml.xml.io.Marshaller;
 import org.opensaml.xml.io.MarshallingException;
 import org.opensaml.xml.schema.XSString;
 import org.opensaml.xml.security.SecurityException;
-import org.opensaml.xml.security.SecurityHelper;
-import org.opensaml.xml.security.credential.Credential;
-import org.opensaml.xml.signature.Signature;
 import org.opensaml.xml.signature.SignatureException;
-import org.opensaml.xml.signature.Signer;
-import org.opensaml.xml.signature.impl.SignatureBuilder;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.saml.context.SAMLMessageContext;
@@ -75,8 +68,9 @@ import static java.util.Optional.ofNullable;
 
 public class IdpWebSsoProfileImpl extends WebSSOProfileImpl implements IdpWebSsoProfile {
 
-    private JdbcSamlServiceProviderProvisioning samlServiceProviderProvisioning;
+    private SamlServiceProviderProvisioning samlServiceProviderProvisioning;
     private JdbcScimUserProvisioning scimUserProvisioning;
+    private final SamlObjectSigner signer = new SamlObjectSigner();
 
     @Override
     public void sendResponse(Authentication authentication, SAMLMessageContext context, IdpWebSSOProfileOptions options)
@@ -129,7 +123,7 @@ public class IdpWebSsoProfileImpl extends WebSSOProfileImpl implements IdpWebSso
         Assertion assertion = buildAssertion(authentication, authnRequest, options, context.getPeerEntityId(),
                 context.getLocalEntityId());
         if (options.isAssertionsSigned() || spDescriptor.getWantAssertionsSigned()) {
-            signAssertion(assertion, context.getLocalSigningCredential());
+            signer.sign(assertion, context.getLocalSigningCredential());
         }
         Response samlResponse = createResponse(context, assertionConsumerService, assertion, authnRequest);
         context.setOutboundMessage(samlResponse);
@@ -407,23 +401,7 @@ public class IdpWebSsoProfileImpl extends WebSSOProfileImpl implements IdpWebSso
         response.setStatus(status);
     }
 
-    private void signAssertion(Assertion assertion, Credential credential)
-            throws SecurityException, MarshallingException, SignatureException {
-        SignatureBuilder signatureBuilder = (SignatureBuilder) builderFactory
-                .getBuilder(Signature.DEFAULT_ELEMENT_NAME);
-        Signature signature = signatureBuilder.buildObject();
-        signature.setSigningCredential(credential);
-
-        SecurityHelper.prepareSignatureParams(signature, credential, null, null);
-        assertion.setSignature(signature);
-
-        Marshaller marshaller = Configuration.getMarshallerFactory().getMarshaller(assertion);
-        marshaller.marshall(assertion);
-
-        Signer.signObject(signature);
-    }
-
-    public void setSamlServiceProviderProvisioning(JdbcSamlServiceProviderProvisioning samlServiceProviderProvisioning) {
+    public void setSamlServiceProviderProvisioning(SamlServiceProviderProvisioning samlServiceProviderProvisioning) {
         this.samlServiceProviderProvisioning = samlServiceProviderProvisioning;
     }
 
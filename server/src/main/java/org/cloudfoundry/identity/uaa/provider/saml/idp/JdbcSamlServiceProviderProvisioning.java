@@ -14,6 +14,8 @@ package org.cloudfoundry.identity.uaa.provider.saml.idp;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus;
+import org.cloudfoundry.identity.uaa.cache.CacheInvalidationListener;
 import org.cloudfoundry.identity.uaa.provider.JdbcIdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -29,6 +31,9 @@ import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus.EntityType.SAML_SERVICE_PROVIDER;
 
 /**
  * Rest-template-based data access for SAML Service Provider CRUD operations.
@@ -70,11 +75,27 @@ public class JdbcSamlServiceProviderProvisioning implements SamlServiceProviderP
 
     private final RowMapper<SamlServiceProvider> mapper = new SamlServiceProviderRowMapper();
 
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private final List<CacheInvalidationListener> changeListeners = new CopyOnWriteArrayList<>();
+
     public JdbcSamlServiceProviderProvisioning(JdbcTemplate jdbcTemplate) {
         Assert.notNull(jdbcTemplate);
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * Registers a listener that is told about every service provider written
+     * through this instance, before the change is published to the other nodes.
+     */
+    public void addChangeListener(CacheInvalidationListener listener) {
+        changeListeners.add(listener);
+    }
+
     @Override
     public SamlServiceProvider retrieve(String id, String zoneId) {
         return jdbcTemplate.queryForObject(SERVICE_PROVIDER_BY_ID_QUERY, mapper, id, zoneId);
@@ -83,16 +104,21 @@ public class JdbcSamlServiceProviderProvisioning implements SamlServiceProviderP
     @Override
     public void delete(String id, String zoneId) {
         jdbcTemplate.update(DELETE_SERVICE_PROVIDER_SQL, id, zoneId);
+        serviceProviderChanged(zoneId, id, null);
     }
 
     @Override
     public int deleteByEntityId(String entityId, String zoneId) {
-        return jdbcTemplate.update(DELETE_SERVICE_PROVIDER_BY_ENTITY_ID_SQL, entityId, zoneId);
+        int deleted = jdbcTemplate.update(DELETE_SERVICE_PROVIDER_BY_ENTITY_ID_SQL, entityId, zoneId);
+        serviceProviderChanged(zoneId, null, null);
+        return deleted;
     }
 
     @Override
     public int deleteByIdentityZone(String zoneId) {
-        return jdbcTemplate.update(DELETE_SERVICE_PROVIDER_BY_ZONE_SQL, zoneId);
+        int deleted = jdbcTemplate.update(DELETE_SERVICE_PROVIDER_BY_ZONE_SQL, zoneId);
+        serviceProviderChanged(zoneId, null, null);
+        return deleted;
     }
 
     @Override
@@ -135,6 +161,7 @@ public class JdbcSamlServiceProviderProvisioning implements SamlServiceProviderP
         } catch (DuplicateKeyException e) {
             throw new SamlSpAlreadyExistsException(e.getMostSpecificCause().getMessage());
         }
+        serviceProviderChanged(zoneId, id, serviceProvider.getVersion());
         return retrieve(id, zoneId);
     }
 
@@ -151,9 +178,17 @@ public class JdbcSamlServiceProviderProvisioning implements SamlServiceProviderP
             ps.setString(pos++, serviceProvider.getId().trim());
             ps.setString(pos++, zoneId);
         });
+        serviceProviderChanged(zoneId, serviceProvider.getId(), serviceProvider.getVersion() + 1);
         return retrieve(serviceProvider.getId(), zoneId);
     }
 
+    private void serviceProviderChanged(String zoneId, String id, Integer version) {
+        changeListeners.forEach(listener -> listener.invalidate(zoneId, id));
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.publish(SAML_SERVICE_PROVIDER, zoneId, id, version);
+        }
+    }
+
     protected void validate(SamlServiceProvider provider) {
         if (provider == null) {
             throw new NullPointerException("SAML Service Provider can not be null.");
@@ -14,6 +14,8 @@
  */
 package org.cloudfoundry.identity.uaa.provider.saml.idp;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
@@ -45,8 +47,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 
 public class NonSnarlIdpMetadataManager extends IdpMetadataManager implements ExtendedMetadataProvider, InitializingBean, DisposableBean, BeanNameAware {
@@ -54,6 +58,13 @@ public class NonSnarlIdpMetadataManager extends IdpMetadataManager implements Ex
 
     private SamlServiceProviderConfigurator configurator;
 
+    // matches the expiration of the fetched metadata in ExpiringUrlCache
+    private static final long URL_METADATA_EXPIRATION_MILLIS = 10 * 60 * 1000L;
+
+    private final Cache<DelegateKey, InitializedDelegate> delegates = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
 
     private IdpMetadataGenerator generator;
     private Map<String, String> zoneHostedIdpNames;
@@ -109,22 +120,40 @@ public class NonSnarlIdpMetadataManager extends IdpMetadataManager implements Ex
         } catch (MetadataProviderException e) {
             throw new IllegalStateException(e);
         }
-        for (SamlServiceProviderHolder holder : configurator.getSamlServiceProviders()) {
-            log.info("Adding SAML SP zone[" + zone.getId() + "] alias[" + holder.getSamlServiceProvider().getEntityId() + "]");
+        for (SamlServiceProvider provider : configurator.getServiceProvidersForZone(zone)) {
             try {
-                ExtendedMetadataDelegate delegate = holder.getExtendedMetadataDelegate();
-                initializeProvider(delegate);
-                initializeProviderData(delegate);
-                initializeProviderFilters(delegate);
-                result.add(delegate);
+                result.add(getInitializedDelegate(zone, provider));
             } catch (MetadataProviderException e) {
-                log.error("Invalid SAML IDP zone[" + zone.getId() + "] alias[" + holder.getSamlServiceProvider().getEntityId() + "]", e);
+                log.error("Invalid SAML IDP zone[" + zone.getId() + "] alias[" + provider.getEntityId() + "]", e);
             }
         }
         return result;
 
     }
 
+    /**
+     * Initialized delegates are kept until the service provider or the zone
+     * changes, so metadata is not parsed again for every request. Delegates
+     * for metadata fetched from a URL are rebuilt once the fetched document
+     * may have expired.
+     */
+    private ExtendedMetadataDelegate getInitializedDelegate(IdentityZone zone, SamlServiceProvider provider) throws MetadataProviderException {
+        DelegateKey key = new DelegateKey(zone.getId(), zone.getVersion(), provider.getId(), provider.getVersion());
+        long now = System.currentTimeMillis();
+        InitializedDelegate cached = delegates.getIfPresent(key);
+        if (cached != null && now < cached.expires) {
+            return cached.delegate;
+        }
+        log.info("Adding SAML SP zone[" + zone.getId() + "] alias[" + provider.getEntityId() + "]");
+        ExtendedMetadataDelegate delegate = configurator.getExtendedMetadataDelegate(provider);
+        initializeProvider(delegate);
+        initializeProviderData(delegate);
+        initializeProviderFilters(delegate);
+        long expires = provider.getConfig().getType() == SamlServiceProviderDefinition.MetadataLocation.URL ? now + URL_METADATA_EXPIRATION_MILLIS : Long.MAX_VALUE;
+        delegates.put(key, new InitializedDelegate(delegate, expires));
+        return delegate;
+    }
+
     public ExtendedMetadataDelegate getLocalIdp() throws MetadataProviderException {
         EntityDescriptor descriptor = generator.generateMetadata();
         ExtendedMetadata extendedMetadata = generator.generateExtendedMetadata();
@@ -449,4 +478,48 @@ public class NonSnarlIdpMetadataManager extends IdpMetadataManager implements Ex
     public void setGenerator(IdpMetadataGenerator generator) {
         this.generator = generator;
     }
+
+    private static final class DelegateKey {
+        private final String zoneId;
+        private final int zoneVersion;
+        private final String providerId;
+        private final int providerVersion;
+
+        private DelegateKey(String zoneId, int zoneVersion, String providerId, int providerVersion) {
+            this.zoneId = zoneId;
+            this.zoneVersion = zoneVersion;
+            this.providerId = providerId;
+            this.providerVersion = providerVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DelegateKey)) {
+                return false;
+            }
+            DelegateKey other = (DelegateKey) o;
+            return zoneVersion == other.zoneVersion &&
+                    providerVersion == other.providerVersion &&
+                    Objects.equals(zoneId, other.zoneId) &&
+                    Objects.equals(providerId, other.providerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(zoneId, zoneVersion, providerId, providerVersion);
+        }
+    }
+
+    private static final class InitializedDelegate {
+        private final ExtendedMetadataDelegate delegate;
+        private final long expires;
+
+        private InitializedDelegate(ExtendedMetadataDelegate delegate, long expires) {
+            this.delegate = delegate;
+            this.expires = expires;
+        }
+    }
 }
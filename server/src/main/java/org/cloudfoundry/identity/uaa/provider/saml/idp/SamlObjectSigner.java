@@ -0,0 +1,103 @@
+/*
+ * *****************************************************************************
+ *      Cloud Foundry
+ *      Copyright (c) [2009-2016] Pivotal Software, Inc. All Rights Reserved.
+ *      This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ *      You may not use this product except in compliance with the License.
+ *
+ *      This product includes a number of subcomponents with
+ *      separate copyright notices and license terms. Your use of these
+ *      subcomponents is subject to the terms and conditions of the
+ *      subcomponent's license, as noted in the LICENSE file.
+ * *****************************************************************************
+ */
+package org.cloudfoundry.identity.uaa.provider.saml.idp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.opensaml.Configuration;
+import org.opensaml.common.SignableSAMLObject;
+import org.opensaml.xml.io.MarshallingException;
+import org.opensaml.xml.security.SecurityConfiguration;
+import org.opensaml.xml.security.SecurityException;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.security.keyinfo.KeyInfoGenerator;
+import org.opensaml.xml.signature.Signature;
+import org.opensaml.xml.signature.SignatureException;
+import org.opensaml.xml.signature.Signer;
+import org.opensaml.xml.signature.impl.SignatureBuilder;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Signs SAML objects the way {@link SecurityHelper#prepareSignatureParams}
+ * and {@link Signer#signObject} would, but works out the signature and
+ * canonicalization algorithms and the {@link KeyInfoGenerator} only once per
+ * credential instead of once per signature. Credentials come from the zone's
+ * key manager, which keeps them for as long as the zone's keys do not
+ * change, so they are held weakly and compared by identity.
+ */
+public class SamlObjectSigner {
+
+    private final Cache<Credential, SigningParameters> parameters = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(1000)
+            .build();
+
+    /**
+     * Adds an enveloped signature to the object, marshalling it once so the
+     * signed DOM is reused when the enclosing message is encoded.
+     */
+    public void sign(SignableSAMLObject object, Credential credential)
+            throws SecurityException, MarshallingException, SignatureException {
+        SigningParameters signingParameters = getSigningParameters(credential);
+
+        SignatureBuilder signatureBuilder = (SignatureBuilder) Configuration.getBuilderFactory()
+                .getBuilder(Signature.DEFAULT_ELEMENT_NAME);
+        Signature signature = signatureBuilder.buildObject();
+        signature.setSigningCredential(credential);
+        signature.setSignatureAlgorithm(signingParameters.signatureAlgorithm);
+        signature.setCanonicalizationAlgorithm(signingParameters.canonicalizationAlgorithm);
+        if (signingParameters.hmacOutputLength != null) {
+            signature.setHMACOutputLength(signingParameters.hmacOutputLength);
+        }
+        if (signingParameters.keyInfoGenerator != null) {
+            signature.setKeyInfo(signingParameters.keyInfoGenerator.generate(credential));
+        }
+        object.setSignature(signature);
+
+        Configuration.getMarshallerFactory().getMarshaller(object).marshall(object);
+
+        Signer.signObject(signature);
+    }
+
+    private SigningParameters getSigningParameters(Credential credential) throws SecurityException {
+        try {
+            return parameters.get(credential, () -> new SigningParameters(credential));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SecurityException) {
+                throw (SecurityException) e.getCause();
+            }
+            throw new SecurityException(e.getCause());
+        }
+    }
+
+    private static final class SigningParameters {
+        private final String signatureAlgorithm;
+        private final String canonicalizationAlgorithm;
+        private final Integer hmacOutputLength;
+        private final KeyInfoGenerator keyInfoGenerator;
+
+        private SigningParameters(Credential credential) throws SecurityException {
+            SecurityConfiguration config = Configuration.getGlobalSecurityConfiguration();
+            signatureAlgorithm = config.getSignatureAlgorithmURI(credential);
+            if (signatureAlgorithm == null) {
+                throw new SecurityException("Could not determine signature algorithm URI from credential");
+            }
+            canonicalizationAlgorithm = config.getSignatureCanonicalizationAlgorithm();
+            hmacOutputLength = SecurityHelper.isHMAC(signatureAlgorithm) ? config.getSignatureHMACOutputLength() : null;
+            keyInfoGenerator = SecurityHelper.getKeyInfoGenerator(credential, config, null);
+        }
+    }
+}
@@ -56,6 +56,13 @@ public class SamlServiceProviderConfigurator {
         return getSamlServiceProvidersForZone(IdentityZoneHolder.get());
     }
 
+    /**
+     * The active service providers of the zone, without their metadata.
+     */
+    public List<SamlServiceProvider> getServiceProvidersForZone(IdentityZone zone) {
+        return providerProvisioning.retrieveActive(zone.getId());
+    }
+
     public List<SamlServiceProviderHolder> getSamlServiceProvidersForZone(IdentityZone zone) {
         List<SamlServiceProviderHolder> result = new LinkedList<>();
         for (SamlServiceProvider provider : providerProvisioning.retrieveActive(zone.getId())) {
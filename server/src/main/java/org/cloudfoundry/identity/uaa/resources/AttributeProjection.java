@@ -0,0 +1,92 @@
+package org.cloudfoundry.identity.uaa.resources;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled list of requested SCIM attributes. Plain dotted paths become
+ * direct map lookups on the resource's JSON tree; anything else falls back to
+ * a precompiled {@link JsonPath}. Compiled projections are shared between
+ * requests asking for the same attributes.
+ */
+final class AttributeProjection {
+
+    private static final int MAX_CACHED_PROJECTIONS = 1000;
+
+    private static final Pattern SIMPLE_PATH = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*");
+
+    private static final Cache<List<String>, AttributeProjection> projections = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_PROJECTIONS)
+            .build();
+
+    private final String[] attributes;
+    private final List<Function<Object, Object>> accessors;
+
+    private AttributeProjection(List<String> attributesAndPaths) {
+        int size = attributesAndPaths.size() / 2;
+        this.attributes = new String[size];
+        this.accessors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            attributes[i] = attributesAndPaths.get(2 * i);
+            accessors.add(compile(attributesAndPaths.get(2 * i + 1)));
+        }
+    }
+
+    static AttributeProjection of(String[] attributes, AttributeNameMapper mapper) {
+        List<String> key = new ArrayList<>(attributes.length * 2);
+        for (String attribute : attributes) {
+            key.add(attribute);
+            key.add(mapper.mapToInternal(attribute));
+        }
+        AttributeProjection projection = projections.getIfPresent(key);
+        if (projection == null) {
+            // compiled outside the cache so invalid paths surface as JsonPathException
+            projection = new AttributeProjection(key);
+            projections.put(key, projection);
+        }
+        return projection;
+    }
+
+    Map<String, Object> project(Object resource) {
+        Object document = JsonUtils.convertValue(resource, Map.class);
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < attributes.length; i++) {
+            result.put(attributes[i], accessors.get(i).apply(document));
+        }
+        return result;
+    }
+
+    private static Function<Object, Object> compile(String path) {
+        if (SIMPLE_PATH.matcher(path).matches()) {
+            String[] segments = path.split("\\.");
+            return document -> {
+                Object current = document;
+                for (String segment : segments) {
+                    if (!(current instanceof Map)) {
+                        return null;
+                    }
+                    current = ((Map<?, ?>) current).get(segment);
+                }
+                return current;
+            };
+        }
+        JsonPath jsonPath = JsonPath.compile("$." + path);
+        return document -> {
+            try {
+                return jsonPath.read(document);
+            } catch (PathNotFoundException e) {
+                return null;
+            }
+        };
+    }
+}
@@ -12,7 +12,11 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.resources;
 
+import org.cloudfoundry.identity.uaa.util.UaaPagingUtils;
+
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface Queryable<T> {
 
@@ -20,4 +24,34 @@ public interface Queryable<T> {
 
     List<T> query(String filter, String sortBy, boolean ascending, String zoneId);
 
+    /**
+     * Hands every matching resource to the consumer one at a time instead of
+     * materializing the result. Implementations backed by a database should
+     * read from a forward only cursor so memory use does not grow with the
+     * size of the result.
+     */
+    default void stream(String filter, String sortBy, boolean ascending, String zoneId, Consumer<T> consumer) {
+        query(filter, sortBy, ascending, zoneId).forEach(consumer);
+    }
+
+    /**
+     * The number of resources matching the filter.
+     */
+    default int count(String filter, String zoneId) {
+        return query(filter, zoneId).size();
+    }
+
+    /**
+     * Returns a single page of matching resources. Database backed
+     * implementations apply the offset and limit in the query itself.
+     *
+     * @param startIndex 1 based index of the first resource to return
+     * @param count the maximum number of resources to return
+     * @param attributes if not null, the only resource attributes the caller
+     *                   reads, so implementations may skip loading the others
+     */
+    default List<T> query(String filter, String sortBy, boolean ascending, String zoneId, int startIndex, int count, Set<String> attributes) {
+        return UaaPagingUtils.subList(query(filter, sortBy, ascending, zoneId), startIndex, count);
+    }
+
 }
@@ -12,17 +12,11 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.resources;
 
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.PathNotFoundException;
-import org.cloudfoundry.identity.uaa.util.JsonUtils;
-import org.cloudfoundry.identity.uaa.util.MapCollector;
 import org.springframework.util.Assert;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -93,25 +87,11 @@ public class SearchResultsFactory {
         Assert.state(input.size() <= count,
                         "Cannot build search results from parent list. Use subList before you call this method.");
 
-        Map<String, JsonPath> jsonPaths = Arrays.stream(attributes)
-            .collect(new MapCollector<>(attribute -> attribute, attribute -> {
-                String jsonPath = "$." + mapper.mapToInternal(attribute);
-                return JsonPath.compile(jsonPath);
-            }));
+        AttributeProjection projection = AttributeProjection.of(attributes, mapper);
 
         Collection<Map<String, Object>> results = new ArrayList<>();
         for (T object : input) {
-            Map<String, Object> map = new LinkedHashMap<>();
-            String serializedObject = JsonUtils.writeValueAsString(object);
-            for (Map.Entry<String, JsonPath> attribute : jsonPaths.entrySet()) {
-                try {
-                    Object value = attribute.getValue().read(serializedObject);
-                    map.put(attribute.getKey(), value);
-                } catch (PathNotFoundException e) {
-                    map.put(attribute.getKey(), null);
-                }
-            }
-            results.add(map);
+            results.add(projection.project(object));
         }
 
         return new SearchResults<>(schemas, results, startIndex, count, total);
@@ -5,18 +5,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.google.common.primitives.Ints.tryParse;
 
 public abstract class AbstractQueryable<T> implements Queryable<T> {
 
+    private final JdbcTemplate jdbcTemplate;
+
     private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     private JdbcPagingListFactory pagingListFactory;
@@ -29,9 +37,16 @@ public abstract class AbstractQueryable<T> implements Queryable<T> {
 
     private int pageSize = 200;
 
+    private int streamFetchSize = 500;
+
+    private NamedParameterJdbcTemplate streamingJdbcTemplate;
+
+    private TransactionTemplate streamingTransactionTemplate;
+
     protected AbstractQueryable(final JdbcTemplate jdbcTemplate,
                                 final JdbcPagingListFactory pagingListFactory,
                                 final RowMapper<T> rowMapper) {
+        this.jdbcTemplate = jdbcTemplate;
         this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
         this.pagingListFactory = pagingListFactory;
         this.rowMapper = rowMapper;
@@ -58,6 +73,20 @@ public abstract class AbstractQueryable<T> implements Queryable<T> {
         return pageSize;
     }
 
+    /**
+     * The number of rows the driver fetches per round trip when results are
+     * streamed through {@link #stream(String, String, boolean, String, Consumer)}.
+     *
+     * @param streamFetchSize the JDBC fetch size for streaming queries (default 500)
+     */
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
     @Override
     public List<T> query(String filter, String zoneId) {
         return query(filter, null, true, zoneId);
@@ -85,16 +114,117 @@ public abstract class AbstractQueryable<T> implements Queryable<T> {
         }
     }
 
-    private String getQuerySQL(SearchQueryConverter.ProcessedFilter where) {
+    @Override
+    public int count(String filter, String zoneId) {
+        SearchQueryConverter.ProcessedFilter where = queryConverter.convert(filter, null, true, zoneId);
+        try {
+            return pagingListFactory.count(getQuerySQL(where), where.getParams());
+        } catch (DataAccessException e) {
+            logger.debug("Filter '" + filter + "' generated invalid SQL", e);
+            throw new IllegalArgumentException("Invalid filter: " + filter);
+        }
+    }
+
+    @Override
+    public List<T> query(String filter, String sortBy, boolean ascending, String zoneId, int startIndex, int count, Set<String> attributes) {
+        validateOrderBy(queryConverter.map(sortBy));
+
+        SearchQueryConverter.ProcessedFilter where = queryConverter.convert(filter, sortBy, ascending, zoneId);
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        try {
+            String completeSql = getQuerySQL(where, attributes);
+            logger.debug("page sql: " + completeSql + ", params: " + where.getParams());
+            return pagingListFactory.queryPage(completeSql, where.getParams(), getRowMapper(attributes), Math.max(startIndex - 1, 0), count);
+        } catch (DataAccessException e) {
+            logger.debug("Filter '" + filter + "' generated invalid SQL", e);
+            throw new IllegalArgumentException("Invalid filter: " + filter);
+        }
+    }
+
+    @Override
+    public void stream(String filter, String sortBy, boolean ascending, String zoneId, Consumer<T> consumer) {
+        validateOrderBy(queryConverter.map(sortBy));
+
+        SearchQueryConverter.ProcessedFilter where = queryConverter.convert(filter, sortBy, ascending, zoneId);
+        String completeSql = getQuerySQL(where);
+        logger.debug("streaming sql: " + completeSql + ", params: " + where.getParams());
+        int[] rowNum = {0};
+        stream(filter, completeSql, where.getParams(), rs -> consumer.accept(rowMapper.mapRow(rs, rowNum[0]++)));
+    }
+
+    /**
+     * Runs the query on a forward only, read only cursor and hands each row to
+     * the callback as soon as the driver delivers it. The statement runs inside
+     * a read only transaction because some drivers (PostgreSQL) only honour the
+     * fetch size when auto commit is disabled.
+     */
+    protected void stream(String filter, String sql, Map<String, ?> params, RowCallbackHandler handler) {
+        try {
+            getStreamingTransactionTemplate().execute(status -> {
+                getStreamingJdbcTemplate().query(sql, params, handler);
+                return null;
+            });
+        } catch (DataAccessException e) {
+            logger.debug("Filter '" + filter + "' generated invalid SQL", e);
+            throw new IllegalArgumentException("Invalid filter: " + filter);
+        }
+    }
+
+    protected SearchQueryConverter getQueryConverter() {
+        return queryConverter;
+    }
+
+    private synchronized NamedParameterJdbcTemplate getStreamingJdbcTemplate() {
+        if (streamingJdbcTemplate == null) {
+            JdbcTemplate template = new JdbcTemplate();
+            template.setDataSource(jdbcTemplate.getDataSource());
+            template.setFetchSize(streamFetchSize);
+            streamingJdbcTemplate = new NamedParameterJdbcTemplate(template);
+        }
+        return streamingJdbcTemplate;
+    }
+
+    private synchronized TransactionTemplate getStreamingTransactionTemplate() {
+        if (streamingTransactionTemplate == null) {
+            TransactionTemplate template = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+            template.setReadOnly(true);
+            streamingTransactionTemplate = template;
+        }
+        return streamingTransactionTemplate;
+    }
+
+    protected String getQuerySQL(SearchQueryConverter.ProcessedFilter where) {
+        return getQuerySQL(where, null);
+    }
+
+    protected String getQuerySQL(SearchQueryConverter.ProcessedFilter where, Set<String> attributes) {
+        String baseSqlQuery = getBaseSqlQuery(attributes);
         if (where.hasOrderBy()) {
-            return getBaseSqlQuery() + " where (" + where.getSql().replace(where.ORDER_BY, ")" + where.ORDER_BY);
+            return baseSqlQuery + " where (" + where.getSql().replace(where.ORDER_BY, ")" + where.ORDER_BY);
         } else {
-            return getBaseSqlQuery() + " where (" + where.getSql() + ")";
+            return baseSqlQuery + " where (" + where.getSql() + ")";
         }
     }
 
     protected abstract String getBaseSqlQuery();
 
+    /**
+     * The select statement for a query whose caller only reads the given
+     * resource attributes, or all of them when {@code attributes} is null.
+     */
+    protected String getBaseSqlQuery(Set<String> attributes) {
+        return getBaseSqlQuery();
+    }
+
+    /**
+     * The row mapper matching {@link #getBaseSqlQuery(Set)}.
+     */
+    protected RowMapper<T> getRowMapper(Set<String> attributes) {
+        return rowMapper;
+    }
+
     protected abstract String getTableName();
 
     protected abstract void validateOrderBy(String orderBy) throws IllegalArgumentException;
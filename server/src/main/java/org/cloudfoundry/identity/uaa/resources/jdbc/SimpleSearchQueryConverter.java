@@ -1,5 +1,7 @@
 package org.cloudfoundry.identity.uaa.resources.jdbc;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.unboundid.scim.sdk.AttributePath;
 import com.unboundid.scim.sdk.InvalidResourceException;
 import com.unboundid.scim.sdk.SCIMException;
@@ -20,7 +22,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import static com.unboundid.scim.sdk.SCIMException.createException;
 import static java.util.Arrays.asList;
@@ -83,11 +87,24 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
             "g.displayname",
             "g.id");
 
+    /**
+     * Attributes holding system generated identifiers, which are stored and
+     * compared as-is so that plain indexes on them stay usable.
+     */
+    private static final Set<String> EXACT_MATCH_ATTRIBUTE_NAMES = Set.of("identity_zone_id");
+
+    private static final int MAX_COMPILED_FILTERS = 1000;
+
+    private static final String TEMPLATE_PARAM_PREFIX = "__filter_param_";
+
     private static Logger logger = LoggerFactory.getLogger(SimpleSearchQueryConverter.class);
     private AttributeNameMapper mapper = new SimpleAttributeNameMapper(Collections.emptyMap());
 
     private boolean dbCaseInsensitive = false;
     private RandomValueStringGenerator randomStringGenerator;
+    private final Cache<String, CompiledFilter> compiledFilters = CacheBuilder.newBuilder()
+            .maximumSize(MAX_COMPILED_FILTERS)
+            .build();
 
     public SimpleSearchQueryConverter() {
         randomStringGenerator = new RandomValueStringGenerator();
@@ -103,17 +120,19 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
 
     public void setDbCaseInsensitive(boolean caseInsensitive) {
         this.dbCaseInsensitive = caseInsensitive;
+        compiledFilters.invalidateAll();
     }
 
     public void setAttributeNameMapper(AttributeNameMapper mapper) {
         this.mapper = mapper;
+        compiledFilters.invalidateAll();
     }
 
     @Override
     public ProcessedFilter convert(String filter, String sortBy, boolean ascending, String zoneId) {
         String paramPrefix = generateParameterPrefix(filter);
         Map<String, Object> values = new HashMap<>();
-        String where = getWhereClause(filter, sortBy, ascending, values, mapper, paramPrefix, zoneId);
+        String where = getWhereClause(filter, sortBy, ascending, values, paramPrefix, zoneId);
         ProcessedFilter pf = new ProcessedFilter(where, values, hasText(sortBy));
         pf.setParamPrefix(paramPrefix);
         return pf;
@@ -133,14 +152,33 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
             final String sortBy,
             final boolean ascending,
             final Map<String, Object> values,
-            final AttributeNameMapper mapper,
             final String paramPrefix,
             final String zoneId) {
 
+        String whereClause = compile(filter, zoneId != null).bind(paramPrefix, zoneId, values);
+        if (sortBy != null) {
+            final String internalSortBy = mapper.mapToInternal(sortBy);
+            // Need to add "asc" or "desc" explicitly to ensure that the pattern
+            // splitting below works
+            whereClause += ORDER_BY + internalSortBy + (ascending ? " ASC" : " DESC");
+        }
+        return whereClause;
+    }
+
+    /**
+     * Parses and validates the filter once and keeps the resulting SQL with
+     * placeholder parameter names, so repeated filters skip the SCIM parser.
+     */
+    private CompiledFilter compile(final String filter, final boolean hasZone) {
+        String key = (hasZone ? "z:" : "n:") + (filter == null ? "" : filter);
+        CompiledFilter compiled = compiledFilters.getIfPresent(key);
+        if (compiled != null) {
+            return compiled;
+        }
         try {
             final SCIMFilter zoneIdFilter = SCIMFilter.createEqualityFilter(
                     AttributePath.parse("identity_zone_id"),
-                    zoneId);
+                    hasZone ? "" : null);
             SCIMFilter fullFilter;
             if (hasText(filter)) {
                 fullFilter = SCIMFilter.createAndFilter(asList(scimFilter(filter), zoneIdFilter));
@@ -148,15 +186,13 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
                 fullFilter = zoneIdFilter;
             }
 
-            String whereClause = whereClauseFromFilter(fullFilter, values, mapper, paramPrefix);
-            if (sortBy != null) {
-                final String internalSortBy = mapper.mapToInternal(sortBy);
-                // Need to add "asc" or "desc" explicitly to ensure that the pattern
-                // splitting below works
-                whereClause += ORDER_BY + internalSortBy + (ascending ? " ASC" : " DESC");
-            }
-
-            return whereClause;
+            Map<String, Object> values = new HashMap<>();
+            String sql = whereClauseFromFilter(fullFilter, values, mapper, TEMPLATE_PARAM_PREFIX);
+            Object[] parameters = new Object[values.size()];
+            values.forEach((name, value) -> parameters[Integer.parseInt(name.substring(TEMPLATE_PARAM_PREFIX.length()))] = value);
+            compiled = new CompiledFilter(sql, parameters, hasZone);
+            compiledFilters.put(key, compiled);
+            return compiled;
         } catch (SCIMException e) {
             logger.debug("Unable to parse " + filter, e);
             throw new IllegalArgumentException("Invalid SCIM Filter: " + filter + "; Message: " + e.getMessage());
@@ -292,11 +328,15 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
                     default:
                         break;
                 }
-                values.put(pName, valuePrefix + value + valueSuffix);
-                if (isDbCaseInsensitive()) {
-                    return "" + getAttributeName(filter, mapper) + " " + comparator + " " + paramName + "";
+                String attributeName = getAttributeName(filter, mapper);
+                if (isDbCaseInsensitive() || EXACT_MATCH_ATTRIBUTE_NAMES.contains(attributeName.toLowerCase())) {
+                    values.put(pName, valuePrefix + value + valueSuffix);
+                    return attributeName + " " + comparator + " " + paramName;
                 } else {
-                    return "LOWER(" + getAttributeName(filter, mapper) + ") " + comparator + " LOWER(" + paramName + ")";
+                    // the value is lower cased here rather than with LOWER(:param), so that the
+                    // comparison matches the LOWER(column) indexes and LIKE gets a constant prefix
+                    values.put(pName, valuePrefix + ((String) value).toLowerCase(Locale.ROOT) + valueSuffix);
+                    return "LOWER(" + attributeName + ") " + comparator + " " + paramName;
                 }
             } else {
                 values.put(pName, value);
@@ -346,4 +386,30 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
     public String map(String attribute) {
         return hasText(attribute) ? mapper.mapToInternal(attribute) : attribute;
     }
+
+    /**
+     * A parsed filter as SQL with {@code TEMPLATE_PARAM_PREFIX} parameter
+     * names. When it has a zone, the last parameter is the identity zone.
+     */
+    private static final class CompiledFilter {
+        private final String sql;
+        private final Object[] parameters;
+        private final boolean hasZone;
+
+        private CompiledFilter(String sql, Object[] parameters, boolean hasZone) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.hasZone = hasZone;
+        }
+
+        private String bind(String paramPrefix, String zoneId, Map<String, Object> values) {
+            for (int i = 0; i < parameters.length; i++) {
+                values.put(paramPrefix + i, parameters[i]);
+            }
+            if (hasZone) {
+                values.put(paramPrefix + (parameters.length - 1), zoneId);
+            }
+            return sql.replace(":" + TEMPLATE_PARAM_PREFIX, ":" + paramPrefix);
+        }
+    }
 }
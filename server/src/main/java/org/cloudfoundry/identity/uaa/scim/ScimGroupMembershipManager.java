@@ -22,6 +22,16 @@ public interface ScimGroupMembershipManager {
             final String zoneId)
             throws ScimResourceNotFoundException, MemberAlreadyExistsException;
 
+    /**
+     * Add all members to a group with a single batch. The group is validated
+     * once; the members are expected to be users or groups of the same zone.
+     */
+    void addMembers(
+            final String groupId,
+            final List<ScimGroupMember> members,
+            final String zoneId)
+            throws ScimResourceNotFoundException, MemberAlreadyExistsException;
+
     /**
      * Retrieve all members of a group
      */
@@ -15,8 +15,22 @@ package org.cloudfoundry.identity.uaa.scim;
 import org.cloudfoundry.identity.uaa.resources.Queryable;
 import org.cloudfoundry.identity.uaa.resources.ResourceManager;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface ScimGroupProvisioning extends ResourceManager<ScimGroup>, Queryable<ScimGroup> {
     ScimGroup createOrGet(ScimGroup group, String zoneId);
 
     ScimGroup getByName(String displayName, String zoneId);
+
+    /**
+     * Creates all groups, without members, in one round trip.
+     */
+    List<ScimGroup> createGroups(List<ScimGroup> groups, String zoneId);
+
+    /**
+     * Streams the groups matching the filter, each with its direct members
+     * populated, in group id order.
+     */
+    void streamWithMembers(String filter, String zoneId, Consumer<ScimGroup> consumer);
 }
@@ -18,6 +18,7 @@ import org.cloudfoundry.identity.uaa.scim.exception.InvalidPasswordException;
 import org.cloudfoundry.identity.uaa.scim.exception.InvalidScimResourceException;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -25,6 +26,13 @@ public interface ScimUserProvisioning extends ResourceManager<ScimUser>, Queryab
 
     ScimUser createUser(ScimUser user, String password, String zoneId) throws InvalidPasswordException, InvalidScimResourceException;
 
+    /**
+     * Creates all users in one round trip. Passwords must already be encoded.
+     */
+    List<ScimUser> createUsers(List<ScimUser> users, String zoneId);
+
+    List<ScimUser> retrieveByUsernamesAndZone(Collection<String> usernames, String zoneId);
+
     List<ScimUser> retrieveByEmailAndZone(String email, String origin, String zoneId);
 
     List<ScimUser> retrieveByUsernameAndZone(String username, String zoneId);
@@ -0,0 +1,711 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.error.UaaException;
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
+import org.cloudfoundry.identity.uaa.scim.DisableUserManagementSecurityFilter;
+import org.cloudfoundry.identity.uaa.scim.InternalUserManagementDisabledException;
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMembershipManager;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.scim.event.ScimEventPublisher;
+import org.cloudfoundry.identity.uaa.scim.exception.InvalidPasswordException;
+import org.cloudfoundry.identity.uaa.scim.exception.InvalidScimResourceException;
+import org.cloudfoundry.identity.uaa.scim.exception.ScimException;
+import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceAlreadyExistsException;
+import org.cloudfoundry.identity.uaa.scim.util.ScimUtils;
+import org.cloudfoundry.identity.uaa.scim.validate.PasswordValidator;
+import org.cloudfoundry.identity.uaa.util.DomainFilter;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.UaaUrlUtils;
+import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * Executes SCIM bulk requests (RFC 7644, section 3.7) for users and groups.
+ * <p>
+ * Consecutive resource creations are collected into chunks of
+ * {@code scim.bulk.batchSize} operations. Each chunk is validated up front,
+ * has its passwords hashed in parallel and is written with a single JDBC
+ * batch inside its own transaction. If the batch fails, the chunk is retried
+ * one operation per transaction so every operation still gets its own result.
+ * All other operations run one at a time, each in its own transaction.
+ * <p>
+ * Queued creations are written before any later operation can count towards
+ * {@code failOnErrors}, so operations run in request order. Once the limit is
+ * reached, every remaining operation is reported with status 412 rather than
+ * left out of the response.
+ */
+@Component("scimBulkProcessor")
+public class ScimBulkProcessor implements ApplicationEventPublisherAware, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScimBulkProcessor.class);
+
+    static final String BULK_ID_PREFIX = "bulkId:";
+
+    private static final Pattern PATH_PATTERN = Pattern.compile("^/(Users|Groups)(?:/([^/]+))?$");
+
+    private final IdentityZoneManager identityZoneManager;
+    private final ScimUserProvisioning scimUserProvisioning;
+    private final ScimGroupProvisioning scimGroupProvisioning;
+    private final ScimGroupMembershipManager membershipManager;
+    private final IdentityProviderProvisioning identityProviderProvisioning;
+    private final PasswordValidator passwordValidator;
+    private final PasswordEncoder passwordEncoder;
+    private final ScimEventPublisher scimEventPublisher;
+    private final Map<Class<? extends Exception>, HttpStatus> statuses;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool hashingPool;
+    private final int batchSize;
+
+    private ApplicationEventPublisher publisher;
+
+    public ScimBulkProcessor(
+            final IdentityZoneManager identityZoneManager,
+            final ScimUserProvisioning scimUserProvisioning,
+            final ScimGroupProvisioning scimGroupProvisioning,
+            final ScimGroupMembershipManager membershipManager,
+            final IdentityProviderProvisioning identityProviderProvisioning,
+            final PasswordValidator passwordValidator,
+            final @Qualifier("nonCachingPasswordEncoder") PasswordEncoder passwordEncoder,
+            final ScimEventPublisher scimEventPublisher,
+            final @Qualifier("exceptionToStatusMap") Map<Class<? extends Exception>, HttpStatus> statuses,
+            final @Qualifier("transactionManager") PlatformTransactionManager transactionManager,
+            final @Value("${scim.bulk.batchSize:100}") int batchSize,
+            final @Value("${scim.bulk.hashingThreads:0}") int hashingThreads) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid \"scim.bulk.batchSize\" value (got %d). Should be positive number.", batchSize)
+            );
+        }
+        this.identityZoneManager = identityZoneManager;
+        this.scimUserProvisioning = scimUserProvisioning;
+        this.scimGroupProvisioning = scimGroupProvisioning;
+        this.membershipManager = membershipManager;
+        this.identityProviderProvisioning = identityProviderProvisioning;
+        this.passwordValidator = passwordValidator;
+        this.passwordEncoder = passwordEncoder;
+        this.scimEventPublisher = scimEventPublisher;
+        this.statuses = statuses;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hashingPool = new ForkJoinPool(hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors());
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+        this.publisher = applicationEventPublisher;
+    }
+
+    @Override
+    public void destroy() {
+        hashingPool.shutdown();
+    }
+
+    public ScimBulkResponse process(ScimBulkRequest request, boolean internalUserManagementDisabled) {
+        List<ScimBulkOperation> operations = request.getOperations();
+        BulkContext context = new BulkContext(
+                identityZoneManager.getCurrentIdentityZoneId(),
+                operations.size(),
+                request.getFailOnErrors(),
+                internalUserManagementDisabled);
+
+        for (int i = 0; i < operations.size(); i++) {
+            ScimBulkOperation operation = operations.get(i);
+            try {
+                Target target = parseTarget(operation);
+                if (target.isCreate() && target.isUsers()) {
+                    flushGroups(context);
+                    if (skipIfFailed(i, operation, context)) {
+                        continue;
+                    }
+                    context.pendingUsers.add(prepareUser(i, operation, context));
+                    if (context.pendingUsers.size() >= batchSize) {
+                        flushUsers(context);
+                    }
+                } else if (target.isCreate() && !hasMembers(operation)) {
+                    flushUsers(context);
+                    if (skipIfFailed(i, operation, context)) {
+                        continue;
+                    }
+                    context.pendingGroups.add(prepareGroup(i, operation, context));
+                    if (context.pendingGroups.size() >= batchSize) {
+                        flushGroups(context);
+                    }
+                } else {
+                    flushUsers(context);
+                    flushGroups(context);
+                    if (skipIfFailed(i, operation, context)) {
+                        continue;
+                    }
+                    executeSingle(i, operation, target.resolve(context), context);
+                }
+            } catch (Exception e) {
+                // the queued operations come first, so they run before this error counts
+                flushUsers(context);
+                flushGroups(context);
+                if (!skipIfFailed(i, operation, context)) {
+                    context.record(i, toError(operation, e));
+                }
+            }
+        }
+        flushUsers(context);
+        flushGroups(context);
+
+        ScimBulkResponse response = new ScimBulkResponse();
+        response.setOperations(context.getResults());
+        logger.debug(String.format("Processed bulk request with %d operations, %d errors", operations.size(), context.errors));
+        return response;
+    }
+
+    private Pending<ScimUser> prepareUser(int index, ScimBulkOperation operation, BulkContext context) {
+        ScimUser user = readResource(operation, ScimUser.class, context);
+        if (!hasText(user.getOrigin())) {
+            user.setOrigin(OriginKeys.UAA);
+        }
+        if (context.internalUserManagementDisabled && OriginKeys.UAA.equals(user.getOrigin())) {
+            throw new InternalUserManagementDisabledException(DisableUserManagementSecurityFilter.INTERNAL_USER_CREATION_IS_CURRENTLY_DISABLED);
+        }
+        ScimUtils.validate(user);
+        String password = "";
+        if (OriginKeys.UAA.equals(user.getOrigin())) {
+            List<String> ssoOrigins = DomainFilter.getIdpsForEmailDomain(context.getActiveProviders(), user.getEmails().get(0).getValue())
+                    .stream()
+                    .map(IdentityProvider::getOriginKey)
+                    .filter(origin -> !OriginKeys.UAA.equals(origin))
+                    .collect(Collectors.toList());
+            if (!ssoOrigins.isEmpty()) {
+                throw new ScimException(String.format("The user account is set up for single sign-on. Please use one of these origin(s) : %s", ssoOrigins), HttpStatus.BAD_REQUEST);
+            }
+            passwordValidator.validate(user.getPassword());
+            password = user.getPassword();
+        }
+        return new Pending<>(index, operation, user, password);
+    }
+
+    private Pending<ScimGroup> prepareGroup(int index, ScimBulkOperation operation, BulkContext context) {
+        ScimGroup group = readResource(operation, ScimGroup.class, context);
+        group.setZoneId(context.zoneId);
+        if (!hasText(group.getDisplayName())) {
+            throw new InvalidScimResourceException("A group must have a displayName");
+        }
+        return new Pending<>(index, operation, group, null);
+    }
+
+    private void flushUsers(BulkContext context) {
+        if (context.pendingUsers.isEmpty()) {
+            return;
+        }
+        List<Pending<ScimUser>> chunk = new ArrayList<>(context.pendingUsers);
+        context.pendingUsers.clear();
+        try {
+            writeUsers(chunk, context);
+        } catch (RuntimeException e) {
+            recordUnfinished(chunk, e, context);
+        }
+    }
+
+    private void writeUsers(List<Pending<ScimUser>> chunk, BulkContext context) {
+        Set<String> taken = scimUserProvisioning.retrieveByUsernamesAndZone(
+                chunk.stream().map(p -> p.resource.getUserName()).collect(Collectors.toList()),
+                context.zoneId)
+                .stream()
+                .map(u -> userKey(u.getOrigin(), u.getUserName()))
+                .collect(Collectors.toSet());
+        List<Pending<ScimUser>> accepted = new ArrayList<>();
+        for (Pending<ScimUser> pending : chunk) {
+            if (context.isFailed()) {
+                context.skip(pending.index, pending.operation);
+                continue;
+            }
+            if (!taken.add(userKey(pending.resource.getOrigin(), pending.resource.getUserName()))) {
+                context.record(pending.index, toError(pending.operation,
+                        new ScimResourceAlreadyExistsException("Username already in use: " + pending.resource.getUserName())));
+            } else {
+                accepted.add(pending);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        hashingPool.submit(() -> accepted.parallelStream()
+                .forEach(p -> p.resource.setPassword(passwordEncoder.encode(p.password))))
+                .join();
+
+        try {
+            List<ScimUser> users = accepted.stream().map(p -> p.resource).collect(Collectors.toList());
+            transactionTemplate.execute(status -> scimUserProvisioning.createUsers(users, context.zoneId));
+            for (Pending<ScimUser> pending : accepted) {
+                userCreated(pending, pending.resource, context);
+            }
+        } catch (DataAccessException e) {
+            logger.debug("Batch insert of " + accepted.size() + " users failed, retrying one by one", e);
+            for (Pending<ScimUser> pending : accepted) {
+                if (context.isFailed()) {
+                    context.skip(pending.index, pending.operation);
+                    continue;
+                }
+                try {
+                    ScimUser created = transactionTemplate.execute(status -> scimUserProvisioning.create(pending.resource, context.zoneId));
+                    userCreated(pending, created, context);
+                } catch (Exception x) {
+                    context.record(pending.index, toError(pending.operation, x));
+                }
+            }
+        }
+    }
+
+    private void recordUnfinished(List<? extends Pending<?>> chunk, Exception e, BulkContext context) {
+        for (Pending<?> pending : chunk) {
+            if (!context.hasResult(pending.index) && !skipIfFailed(pending.index, pending.operation, context)) {
+                context.record(pending.index, toError(pending.operation, e));
+            }
+        }
+    }
+
+    private void userCreated(Pending<ScimUser> pending, ScimUser user, BulkContext context) {
+        context.created(pending.operation, user.getId());
+        context.record(pending.index, ScimBulkOperationResult.success(pending.operation, HttpStatus.CREATED.value(), location("Users", user.getId()), user.getVersion()));
+        scimEventPublisher.userCreated(user);
+    }
+
+    private void flushGroups(BulkContext context) {
+        if (context.pendingGroups.isEmpty()) {
+            return;
+        }
+        List<Pending<ScimGroup>> chunk = new ArrayList<>(context.pendingGroups);
+        context.pendingGroups.clear();
+        try {
+            writeGroups(chunk, context);
+        } catch (RuntimeException e) {
+            recordUnfinished(chunk, e, context);
+        }
+    }
+
+    private void writeGroups(List<Pending<ScimGroup>> chunk, BulkContext context) {
+        try {
+            List<ScimGroup> groups = chunk.stream().map(p -> p.resource).collect(Collectors.toList());
+            transactionTemplate.execute(status -> scimGroupProvisioning.createGroups(groups, context.zoneId));
+            for (Pending<ScimGroup> pending : chunk) {
+                groupCreated(pending, pending.resource, context);
+            }
+        } catch (DataAccessException e) {
+            logger.debug("Batch insert of " + chunk.size() + " groups failed, retrying one by one", e);
+            for (Pending<ScimGroup> pending : chunk) {
+                if (context.isFailed()) {
+                    context.skip(pending.index, pending.operation);
+                    continue;
+                }
+                try {
+                    ScimGroup created = transactionTemplate.execute(status -> scimGroupProvisioning.create(pending.resource, context.zoneId));
+                    groupCreated(pending, created, context);
+                } catch (Exception x) {
+                    context.record(pending.index, toError(pending.operation, x));
+                }
+            }
+        }
+    }
+
+    private void groupCreated(Pending<ScimGroup> pending, ScimGroup group, BulkContext context) {
+        context.created(pending.operation, group.getId());
+        context.record(pending.index, ScimBulkOperationResult.success(pending.operation, HttpStatus.CREATED.value(), location("Groups", group.getId()), group.getVersion()));
+        scimEventPublisher.groupCreated(group);
+    }
+
+    private void executeSingle(int index, ScimBulkOperation operation, Target target, BulkContext context) {
+        List<Runnable> afterCommit = new ArrayList<>();
+        ScimBulkOperationResult result = transactionTemplate.execute(status -> {
+            if (target.isUsers()) {
+                return executeUserOperation(operation, target, context, afterCommit);
+            }
+            return executeGroupOperation(operation, target, context, afterCommit);
+        });
+        afterCommit.forEach(Runnable::run);
+        context.record(index, result);
+    }
+
+    private ScimBulkOperationResult executeUserOperation(ScimBulkOperation operation, Target target, BulkContext context, List<Runnable> afterCommit) {
+        ScimUser existing = scimUserProvisioning.retrieve(target.id, context.zoneId);
+        checkUserManagement(existing.getOrigin(), context);
+        Integer version = parseVersion(operation.getVersion());
+        switch (target.method) {
+            case "DELETE":
+                membershipManager.removeMembersByMemberId(existing.getId(), existing.getOrigin(), context.zoneId);
+                scimUserProvisioning.delete(existing.getId(), version == null ? -1 : version, context.zoneId);
+                afterCommit.add(() -> {
+                    scimEventPublisher.userDeleted(existing);
+                    if (publisher != null) {
+                        publisher.publishEvent(new EntityDeletedEvent<>(existing, SecurityContextHolder.getContext().getAuthentication(), context.zoneId));
+                    }
+                });
+                return ScimBulkOperationResult.success(operation, HttpStatus.NO_CONTENT.value(), null, null);
+            case "PATCH":
+                ScimUser patch = readResource(operation, ScimUser.class, context);
+                try {
+                    existing.patch(patch);
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidScimResourceException(e.getMessage());
+                }
+                if (existing.getEmails() != null && existing.getEmails().size() > 1) {
+                    String primary = existing.getPrimaryEmail();
+                    existing.setEmails(new ArrayList<>());
+                    existing.setPrimaryEmail(primary);
+                }
+                return updateUser(operation, target.id, existing, version == null ? existing.getVersion() : version, context);
+            case "PUT":
+                ScimUser user = readResource(operation, ScimUser.class, context);
+                checkUserManagement(user.getOrigin(), context);
+                return updateUser(operation, target.id, user, version == null ? existing.getVersion() : version, context);
+            default:
+                throw new ScimException("Unsupported bulk method: " + operation.getMethod(), HttpStatus.METHOD_NOT_ALLOWED);
+        }
+    }
+
+    private ScimBulkOperationResult updateUser(ScimBulkOperation operation, String id, ScimUser user, int version, BulkContext context) {
+        user.setVersion(version);
+        ScimUser updated = scimUserProvisioning.update(id, user, context.zoneId);
+        return ScimBulkOperationResult.success(operation, HttpStatus.OK.value(), location("Users", id), updated.getVersion());
+    }
+
+    private ScimBulkOperationResult executeGroupOperation(ScimBulkOperation operation, Target target, BulkContext context, List<Runnable> afterCommit) {
+        if (target.isCreate()) {
+            ScimGroup group = readResource(operation, ScimGroup.class, context);
+            group.setZoneId(context.zoneId);
+            ScimGroup created = scimGroupProvisioning.create(group, context.zoneId);
+            created.setMembers(membershipManager.updateOrAddMembers(created.getId(), group.getMembers(), context.zoneId));
+            context.created(operation, created.getId());
+            afterCommit.add(() -> scimEventPublisher.groupCreated(created));
+            return ScimBulkOperationResult.success(operation, HttpStatus.CREATED.value(), location("Groups", created.getId()), created.getVersion());
+        }
+
+        ScimGroup existing = scimGroupProvisioning.retrieve(target.id, context.zoneId);
+        Integer version = parseVersion(operation.getVersion());
+        switch (target.method) {
+            case "DELETE":
+                existing.setMembers(membershipManager.removeMembersByGroupId(target.id, context.zoneId));
+                membershipManager.removeMembersByMemberId(target.id, context.zoneId);
+                scimGroupProvisioning.delete(target.id, version == null ? -1 : version, context.zoneId);
+                afterCommit.add(() -> scimEventPublisher.groupDeleted(existing));
+                return ScimBulkOperationResult.success(operation, HttpStatus.NO_CONTENT.value(), null, null);
+            case "PATCH":
+                existing.setMembers(membershipManager.getMembers(target.id, false, context.zoneId));
+                ScimGroup patch = readResource(operation, ScimGroup.class, context);
+                patch.setVersion(version == null ? existing.getVersion() : version);
+                existing.patch(patch);
+                return updateGroup(operation, target.id, existing, existing.getVersion(), context, afterCommit);
+            case "PUT":
+                ScimGroup group = readResource(operation, ScimGroup.class, context);
+                return updateGroup(operation, target.id, group, version == null ? existing.getVersion() : version, context, afterCommit);
+            default:
+                throw new ScimException("Unsupported bulk method: " + operation.getMethod(), HttpStatus.METHOD_NOT_ALLOWED);
+        }
+    }
+
+    private ScimBulkOperationResult updateGroup(ScimBulkOperation operation, String id, ScimGroup group, int version, BulkContext context, List<Runnable> afterCommit) {
+        group.setVersion(version);
+        group.setZoneId(context.zoneId);
+        ScimGroup updated = scimGroupProvisioning.update(id, group, context.zoneId);
+        if (group.getMembers() != null && !group.getMembers().isEmpty()) {
+            updated.setMembers(membershipManager.updateOrAddMembers(id, group.getMembers(), context.zoneId));
+        } else {
+            membershipManager.removeMembersByGroupId(id, context.zoneId);
+            updated.setMembers(new ArrayList<>());
+        }
+        afterCommit.add(() -> scimEventPublisher.groupModified(updated));
+        return ScimBulkOperationResult.success(operation, HttpStatus.OK.value(), location("Groups", id), updated.getVersion());
+    }
+
+    private void checkUserManagement(String origin, BulkContext context) {
+        if (context.internalUserManagementDisabled && (OriginKeys.UAA.equals(origin) || !hasText(origin))) {
+            throw new InternalUserManagementDisabledException(DisableUserManagementSecurityFilter.INTERNAL_USER_CREATION_IS_CURRENTLY_DISABLED);
+        }
+    }
+
+    private Target parseTarget(ScimBulkOperation operation) {
+        String method = operation.getMethod() == null ? "" : operation.getMethod().toUpperCase();
+        Matcher matcher = PATH_PATTERN.matcher(operation.getPath() == null ? "" : operation.getPath());
+        if (!matcher.matches()) {
+            throw new InvalidScimResourceException("Invalid bulk operation path: " + operation.getPath());
+        }
+        String id = matcher.group(2);
+        if ("POST".equals(method)) {
+            if (id != null) {
+                throw new InvalidScimResourceException("POST operations must target a resource collection: " + operation.getPath());
+            }
+        } else if ("PUT".equals(method) || "PATCH".equals(method) || "DELETE".equals(method)) {
+            if (id == null) {
+                throw new InvalidScimResourceException(method + " operations must target a single resource: " + operation.getPath());
+            }
+        } else {
+            throw new ScimException("Unsupported bulk method: " + operation.getMethod(), HttpStatus.METHOD_NOT_ALLOWED);
+        }
+        return new Target(method, "Users".equals(matcher.group(1)), id);
+    }
+
+    /**
+     * Reports an operation as not processed once the failOnErrors limit has
+     * been reached, so that every operation of the request has a result.
+     */
+    private static boolean skipIfFailed(int index, ScimBulkOperation operation, BulkContext context) {
+        if (!context.isFailed()) {
+            return false;
+        }
+        context.skip(index, operation);
+        return true;
+    }
+
+    private static boolean hasMembers(ScimBulkOperation operation) {
+        JsonNode members = operation.getData() == null ? null : operation.getData().get("members");
+        return members != null && members.size() > 0;
+    }
+
+    private <T> T readResource(ScimBulkOperation operation, Class<T> type, BulkContext context) {
+        if (operation.getData() == null || !operation.getData().isObject()) {
+            throw new InvalidScimResourceException("Bulk operation " + operation.getMethod() + " " + operation.getPath() + " requires data");
+        }
+        ObjectNode data = operation.getData().deepCopy();
+        // the legacy resource classes only accept the SCIM 1.0 core schema
+        data.remove("schemas");
+        resolveBulkIds(data, context);
+        try {
+            return JsonUtils.convertValue(data, type);
+        } catch (JsonUtils.JsonUtilException e) {
+            throw new InvalidScimResourceException("Invalid " + type.getSimpleName() + " data: " + e.getMessage());
+        }
+    }
+
+    private void resolveBulkIds(JsonNode node, BulkContext context) {
+        if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            List<String> names = new ArrayList<>();
+            object.fieldNames().forEachRemaining(names::add);
+            for (String name : names) {
+                JsonNode value = object.get(name);
+                if (value.isTextual() && value.asText().startsWith(BULK_ID_PREFIX)) {
+                    object.put(name, resolveBulkId(value.asText(), context));
+                } else {
+                    resolveBulkIds(value, context);
+                }
+            }
+        } else if (node.isArray()) {
+            ArrayNode array = (ArrayNode) node;
+            for (int i = 0; i < array.size(); i++) {
+                JsonNode value = array.get(i);
+                if (value.isTextual() && value.asText().startsWith(BULK_ID_PREFIX)) {
+                    array.set(i, TextNode.valueOf(resolveBulkId(value.asText(), context)));
+                } else {
+                    resolveBulkIds(value, context);
+                }
+            }
+        }
+    }
+
+    private static String resolveBulkId(String value, BulkContext context) {
+        if (!value.startsWith(BULK_ID_PREFIX)) {
+            return value;
+        }
+        String id = context.bulkIds.get(value.substring(BULK_ID_PREFIX.length()));
+        if (id == null) {
+            throw new ScimException("Unable to resolve " + value + ", the referenced operation did not succeed", HttpStatus.CONFLICT);
+        }
+        return id;
+    }
+
+    private static Integer parseVersion(String version) {
+        if (!hasText(version)) {
+            return null;
+        }
+        String value = version.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        value = value.replace("\"", "");
+        if ("*".equals(value)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new ScimException("Invalid version (should be a version number): " + version, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private String location(String type, String id) {
+        return UaaUrlUtils.getUaaUrl("/" + type + "/" + id, identityZoneManager.getCurrentIdentityZone());
+    }
+
+    private static String userKey(String origin, String userName) {
+        return origin + "|" + userName.toLowerCase();
+    }
+
+    ScimBulkOperationResult toError(ScimBulkOperation operation, Exception e) {
+        HttpStatus status = null;
+        String scimType = null;
+        if (e instanceof ScimResourceAlreadyExistsException) {
+            scimType = "uniqueness";
+        } else if (e instanceof InvalidScimResourceException || e instanceof InvalidPasswordException) {
+            scimType = "invalidValue";
+        }
+        if (e instanceof ScimException) {
+            status = ((ScimException) e).getStatus();
+        } else if (e instanceof UaaException) {
+            status = HttpStatus.valueOf(((UaaException) e).getHttpStatus());
+        } else if (e instanceof OptimisticLockingFailureException || e instanceof IncorrectResultSizeDataAccessException) {
+            status = HttpStatus.CONFLICT;
+        } else {
+            for (Map.Entry<Class<? extends Exception>, HttpStatus> entry : statuses.entrySet()) {
+                if (entry.getKey().isAssignableFrom(e.getClass())) {
+                    status = entry.getValue();
+                    break;
+                }
+            }
+        }
+        if (status == null) {
+            logger.error("Unexpected error in bulk operation " + operation.getMethod() + " " + operation.getPath(), e);
+            return ScimBulkOperationResult.error(operation, HttpStatus.INTERNAL_SERVER_ERROR.value(), null, "Unexpected error");
+        }
+        logger.debug("Bulk operation " + operation.getMethod() + " " + operation.getPath() + " failed: " + e.getMessage());
+        return ScimBulkOperationResult.error(operation, status.value(), scimType, e.getMessage());
+    }
+
+    private static final class Target {
+        private final String method;
+        private final boolean users;
+        private final String id;
+
+        private Target(String method, boolean users, String id) {
+            this.method = method;
+            this.users = users;
+            this.id = id;
+        }
+
+        private boolean isCreate() {
+            return "POST".equals(method);
+        }
+
+        private boolean isUsers() {
+            return users;
+        }
+
+        /**
+         * Resolves a bulkId reference in the path. Done only when the
+         * operation runs, so that earlier queued creations are in place.
+         */
+        private Target resolve(BulkContext context) {
+            return id == null ? this : new Target(method, users, resolveBulkId(id, context));
+        }
+    }
+
+    private static final class Pending<T> {
+        private final int index;
+        private final ScimBulkOperation operation;
+        private final T resource;
+        private final String password;
+
+        private Pending(int index, ScimBulkOperation operation, T resource, String password) {
+            this.index = index;
+            this.operation = operation;
+            this.resource = resource;
+            this.password = password;
+        }
+    }
+
+    private final class BulkContext {
+        private final String zoneId;
+        private final ScimBulkOperationResult[] results;
+        private final Integer failOnErrors;
+        private final boolean internalUserManagementDisabled;
+        private final Map<String, String> bulkIds = new HashMap<>();
+        private final List<Pending<ScimUser>> pendingUsers = new ArrayList<>();
+        private final List<Pending<ScimGroup>> pendingGroups = new ArrayList<>();
+        private List<IdentityProvider> activeProviders;
+        private int errors;
+
+        private BulkContext(String zoneId, int size, Integer failOnErrors, boolean internalUserManagementDisabled) {
+            this.zoneId = zoneId;
+            this.results = new ScimBulkOperationResult[size];
+            this.failOnErrors = failOnErrors;
+            this.internalUserManagementDisabled = internalUserManagementDisabled;
+        }
+
+        private void record(int index, ScimBulkOperationResult result) {
+            results[index] = result;
+            if (result.isError()) {
+                errors++;
+            }
+        }
+
+        private boolean hasResult(int index) {
+            return results[index] != null;
+        }
+
+        private void skip(int index, ScimBulkOperation operation) {
+            results[index] = ScimBulkOperationResult.error(operation, HttpStatus.PRECONDITION_FAILED.value(), null,
+                    String.format("Not processed, %d errors reached the failOnErrors limit", errors));
+        }
+
+        private void created(ScimBulkOperation operation, String id) {
+            if (hasText(operation.getBulkId())) {
+                bulkIds.put(operation.getBulkId(), id);
+            }
+        }
+
+        private boolean isFailed() {
+            return failOnErrors != null && failOnErrors > 0 && errors >= failOnErrors;
+        }
+
+        private List<IdentityProvider> getActiveProviders() {
+            if (activeProviders == null) {
+                activeProviders = identityProviderProvisioning.retrieveActive(zoneId);
+            }
+            return activeProviders;
+        }
+
+        private List<ScimBulkOperationResult> getResults() {
+            List<ScimBulkOperationResult> list = new ArrayList<>();
+            for (ScimBulkOperationResult result : results) {
+                if (result != null) {
+                    list.add(result);
+                }
+            }
+            return list;
+        }
+    }
+}
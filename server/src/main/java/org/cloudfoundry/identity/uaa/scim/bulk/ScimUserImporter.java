@@ -0,0 +1,362 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.scim.DisableUserManagementSecurityFilter;
+import org.cloudfoundry.identity.uaa.scim.InternalUserManagementDisabledException;
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMembershipManager;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.scim.exception.InvalidScimResourceException;
+import org.cloudfoundry.identity.uaa.scim.util.ScimUtils;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * Loads users, with their existing password hashes and group memberships,
+ * from newline delimited SCIM user records. Each record is a user as written
+ * by {@code GET /Users/export}, plus a {@code password} holding the BCrypt
+ * hash and {@code groups} naming the groups by their {@code display} name.
+ * The export writes neither of these, so they have to be added to exported
+ * records before importing them.
+ * <p>
+ * Records are read in chunks of {@code scim.import.commitSize}. Each chunk is
+ * parsed and validated in parallel, inserted with batched statements and
+ * committed together with the import checkpoint, so a failed run can be
+ * repeated with the same import id and continues after the last committed
+ * chunk. Passwords must already be BCrypt hashes and are stored as-is.
+ */
+@Component("scimUserImporter")
+public class ScimUserImporter implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScimUserImporter.class);
+
+    static final String GET_CHECKPOINT_SQL = "select records_committed from user_import_checkpoint where import_id=? and identity_zone_id=?";
+    static final String UPDATE_CHECKPOINT_SQL = "update user_import_checkpoint set records_committed=?, last_modified=? where import_id=? and identity_zone_id=?";
+    static final String INSERT_CHECKPOINT_SQL = "insert into user_import_checkpoint (import_id, identity_zone_id, records_committed, last_modified) values (?,?,?,?)";
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("^(\\{bcrypt})?\\$2[aby]?\\$\\d\\d\\$[./A-Za-z0-9]{53}$");
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final ScimUserProvisioning scimUserProvisioning;
+    private final ScimGroupProvisioning scimGroupProvisioning;
+    private final ScimGroupMembershipManager membershipManager;
+    private final PasswordEncoder passwordEncoder;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool validationPool;
+    private final int commitSize;
+
+    public ScimUserImporter(
+            final ScimUserProvisioning scimUserProvisioning,
+            final ScimGroupProvisioning scimGroupProvisioning,
+            final ScimGroupMembershipManager membershipManager,
+            final @Qualifier("nonCachingPasswordEncoder") PasswordEncoder passwordEncoder,
+            final JdbcTemplate jdbcTemplate,
+            final @Qualifier("transactionManager") PlatformTransactionManager transactionManager,
+            final @Value("${scim.import.commitSize:1000}") int commitSize,
+            final @Value("${scim.import.validationThreads:0}") int validationThreads) {
+        if (commitSize <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid \"scim.import.commitSize\" value (got %d). Should be positive number.", commitSize)
+            );
+        }
+        this.scimUserProvisioning = scimUserProvisioning;
+        this.scimGroupProvisioning = scimGroupProvisioning;
+        this.membershipManager = membershipManager;
+        this.passwordEncoder = passwordEncoder;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validationPool = new ForkJoinPool(validationThreads > 0 ? validationThreads : Runtime.getRuntime().availableProcessors());
+        this.commitSize = commitSize;
+    }
+
+    @Override
+    public void destroy() {
+        validationPool.shutdown();
+    }
+
+    public int getCommitSize() {
+        return commitSize;
+    }
+
+    public ScimUserImportResult importUsers(String importId, Reader input, IdentityZone zone, boolean internalUserManagementDisabled) throws IOException {
+        if (!hasText(importId)) {
+            throw new InvalidScimResourceException("An import id must be provided.");
+        }
+        String zoneId = zone.getId();
+        long checkpoint = getCheckpoint(importId, zoneId);
+        ScimUserImportResult result = new ScimUserImportResult(importId, checkpoint);
+        ImportContext context = new ImportContext(zone, result, passwordEncoder.encode(""), internalUserManagementDisabled);
+        long started = System.currentTimeMillis();
+
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        long lineNumber = 0;
+        String line;
+        while (lineNumber < checkpoint && reader.readLine() != null) {
+            lineNumber++;
+        }
+        if (lineNumber < checkpoint) {
+            logger.warn(String.format("Import %s: input has %d records, checkpoint is at %d", importId, lineNumber, checkpoint));
+        }
+
+        List<String> chunk = new ArrayList<>(commitSize);
+        long chunkStart = lineNumber;
+        while ((line = reader.readLine()) != null) {
+            chunk.add(line);
+            if (chunk.size() == commitSize) {
+                importChunk(chunkStart, chunk, context);
+                chunkStart += chunk.size();
+                chunk.clear();
+                logProgress(result, started);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunkStart, chunk, context);
+            logProgress(result, started);
+        }
+        result.setElapsedMillis(System.currentTimeMillis() - started);
+        return result;
+    }
+
+    private void importChunk(long chunkStart, List<String> lines, ImportContext context) {
+        List<ImportRecord> records = validationPool.submit(() -> IntStream.range(0, lines.size())
+                .parallel()
+                .mapToObj(i -> parse(chunkStart + i + 1, lines.get(i), context))
+                .collect(Collectors.toList()))
+                .join();
+
+        List<ImportRecord> valid = new ArrayList<>();
+        Set<String> taken = new HashSet<>();
+        List<String> usernames = records.stream()
+                .filter(r -> r.error == null && r.user != null)
+                .map(r -> r.user.getUserName())
+                .collect(Collectors.toList());
+        for (ScimUser existing : scimUserProvisioning.retrieveByUsernamesAndZone(usernames, context.zone.getId())) {
+            taken.add(userKey(existing.getOrigin(), existing.getUserName()));
+        }
+        for (ImportRecord record : records) {
+            if (record.user == null && record.error == null) {
+                continue;
+            }
+            if (record.error == null && !taken.add(userKey(record.user.getOrigin(), record.user.getUserName()))) {
+                record.error = "Username already in use: " + record.user.getUserName();
+            }
+            if (record.error != null) {
+                context.failed(record);
+            } else {
+                valid.add(record);
+            }
+        }
+
+        // groups are resolved up front, outside the chunk transaction, so a
+        // rolled back chunk does not leave stale ids in the cache
+        valid.forEach(r -> r.groups.forEach(context::groupId));
+
+        long checkpoint = chunkStart + lines.size();
+        try {
+            transactionTemplate.execute(status -> {
+                if (!valid.isEmpty()) {
+                    scimUserProvisioning.createUsers(valid.stream().map(r -> r.user).collect(Collectors.toList()), context.zone.getId());
+                }
+                addMemberships(valid, context);
+                saveCheckpoint(context.result.getImportId(), context.zone.getId(), checkpoint);
+                return null;
+            });
+            context.result.setImported(context.result.getImported() + valid.size());
+        } catch (DataAccessException e) {
+            logger.debug("Batch import of " + valid.size() + " users failed, retrying one by one", e);
+            for (ImportRecord record : valid) {
+                // the batch insert has cleared the password of every user it wrote
+                record.user.setPassword(record.password);
+                try {
+                    transactionTemplate.execute(status -> {
+                        ScimUser created = scimUserProvisioning.create(record.user, context.zone.getId());
+                        record.user.setId(created.getId());
+                        addMemberships(Collections.singletonList(record), context);
+                        return null;
+                    });
+                    context.result.setImported(context.result.getImported() + 1);
+                } catch (Exception x) {
+                    record.error = x.getMessage();
+                    context.failed(record);
+                }
+            }
+            transactionTemplate.execute(status -> {
+                saveCheckpoint(context.result.getImportId(), context.zone.getId(), checkpoint);
+                return null;
+            });
+        }
+        context.result.setProcessed(context.result.getProcessed() + lines.size());
+        context.result.setCheckpoint(checkpoint);
+    }
+
+    private ImportRecord parse(long lineNumber, String line, ImportContext context) {
+        ImportRecord record = new ImportRecord(lineNumber);
+        if (!hasText(line)) {
+            return record;
+        }
+        try {
+            ScimUser user = JsonUtils.readValue(line, ScimUser.class);
+            if (user == null) {
+                throw new InvalidScimResourceException("Empty user record.");
+            }
+            if (!hasText(user.getOrigin())) {
+                user.setOrigin(OriginKeys.UAA);
+            }
+            if (context.internalUserManagementDisabled && OriginKeys.UAA.equals(user.getOrigin())) {
+                throw new InternalUserManagementDisabledException(DisableUserManagementSecurityFilter.INTERNAL_USER_CREATION_IS_CURRENTLY_DISABLED);
+            }
+            ScimUtils.validate(user);
+            if (hasText(user.getPassword())) {
+                if (!BCRYPT_PATTERN.matcher(user.getPassword()).matches()) {
+                    throw new InvalidScimResourceException("The password must be a BCrypt hash.");
+                }
+            } else if (OriginKeys.UAA.equals(user.getOrigin())) {
+                throw new InvalidScimResourceException("A password hash must be provided for uaa users.");
+            } else {
+                user.setPassword(context.emptyPassword);
+            }
+            record.password = user.getPassword();
+            if (user.getGroups() != null) {
+                for (ScimUser.Group group : user.getGroups()) {
+                    if (hasText(group.getDisplay())) {
+                        record.groups.add(group.getDisplay());
+                    }
+                }
+                user.setGroups(null);
+            }
+            user.setId(null);
+            record.user = user;
+        } catch (JsonUtils.JsonUtilException | InvalidScimResourceException | InternalUserManagementDisabledException e) {
+            record.error = e.getMessage();
+        }
+        return record;
+    }
+
+    private void addMemberships(List<ImportRecord> records, ImportContext context) {
+        Map<String, List<ScimGroupMember>> membersByGroup = new LinkedHashMap<>();
+        for (ImportRecord record : records) {
+            for (String displayName : record.groups) {
+                if (context.defaultGroups.contains(displayName)) {
+                    continue;
+                }
+                ScimGroupMember member = new ScimGroupMember(record.user.getId(), ScimGroupMember.Type.USER);
+                member.setOrigin(record.user.getOrigin());
+                membersByGroup.computeIfAbsent(context.groupId(displayName), k -> new ArrayList<>()).add(member);
+            }
+        }
+        membersByGroup.forEach((groupId, members) -> membershipManager.addMembers(groupId, members, context.zone.getId()));
+    }
+
+    long getCheckpoint(String importId, String zoneId) {
+        try {
+            Long committed = jdbcTemplate.queryForObject(GET_CHECKPOINT_SQL, Long.class, importId, zoneId);
+            return committed == null ? 0 : committed;
+        } catch (EmptyResultDataAccessException e) {
+            return 0;
+        }
+    }
+
+    private void saveCheckpoint(String importId, String zoneId, long checkpoint) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        if (jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, checkpoint, now, importId, zoneId) == 0) {
+            jdbcTemplate.update(INSERT_CHECKPOINT_SQL, importId, zoneId, checkpoint, now);
+        }
+    }
+
+    private static void logProgress(ScimUserImportResult result, long started) {
+        result.setElapsedMillis(System.currentTimeMillis() - started);
+        logger.info(String.format("Import %s: %d records processed, %d imported, %d failed, checkpoint %d, %d records/s",
+                result.getImportId(),
+                result.getProcessed(),
+                result.getImported(),
+                result.getFailed(),
+                result.getCheckpoint(),
+                result.getRecordsPerSecond()));
+    }
+
+    private static String userKey(String origin, String userName) {
+        return origin + "|" + userName.toLowerCase();
+    }
+
+    private static final class ImportRecord {
+        private final long lineNumber;
+        private final Set<String> groups = new LinkedHashSet<>();
+        private ScimUser user;
+        private String password;
+        private String error;
+
+        private ImportRecord(long lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    private final class ImportContext {
+        private final IdentityZone zone;
+        private final ScimUserImportResult result;
+        private final Set<String> defaultGroups;
+        private final Map<String, String> groupIds = new HashMap<>();
+        private final String emptyPassword;
+        private final boolean internalUserManagementDisabled;
+
+        private ImportContext(IdentityZone zone, ScimUserImportResult result, String emptyPassword, boolean internalUserManagementDisabled) {
+            this.zone = zone;
+            this.result = result;
+            this.emptyPassword = emptyPassword;
+            this.internalUserManagementDisabled = internalUserManagementDisabled;
+            List<String> groups = zone.getConfig() == null ? null : zone.getConfig().getUserConfig().getDefaultGroups();
+            this.defaultGroups = groups == null ? Collections.emptySet() : new HashSet<>(groups);
+        }
+
+        private String groupId(String displayName) {
+            if (defaultGroups.contains(displayName)) {
+                return null;
+            }
+            return groupIds.computeIfAbsent(displayName,
+                    name -> scimGroupProvisioning.createOrGet(new ScimGroup(null, name, zone.getId()), zone.getId()).getId());
+        }
+
+        private void failed(ImportRecord record) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add("Record " + record.lineNumber + ": " + record.error);
+            }
+        }
+    }
+}
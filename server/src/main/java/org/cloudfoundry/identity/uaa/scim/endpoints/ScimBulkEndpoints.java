@@ -0,0 +1,95 @@
+package org.cloudfoundry.identity.uaa.scim.endpoints;
+
+import org.cloudfoundry.identity.uaa.scim.DisableInternalUserManagementFilter;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimBulkProcessor;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimBulkRequest;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimBulkResponse;
+import org.cloudfoundry.identity.uaa.scim.exception.ScimException;
+import org.cloudfoundry.identity.uaa.web.ConvertingExceptionView;
+import org.cloudfoundry.identity.uaa.web.ExceptionReport;
+import org.cloudfoundry.identity.uaa.web.ExceptionReportHttpMessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.View;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Map;
+
+/**
+ * SCIM bulk endpoint for users and groups. Operations are executed in order;
+ * see {@link ScimBulkProcessor} for how they are batched.
+ */
+@Controller
+public class ScimBulkEndpoints {
+
+    private final ScimBulkProcessor bulkProcessor;
+    private final Map<Class<? extends Exception>, HttpStatus> statuses;
+    private final int maxOperations;
+    private final HttpMessageConverter<?>[] messageConverters;
+
+    public ScimBulkEndpoints(
+            final ScimBulkProcessor bulkProcessor,
+            final @Qualifier("exceptionToStatusMap") Map<Class<? extends Exception>, HttpStatus> statuses,
+            final @Value("${scim.bulk.maxOperations:1000}") int maxOperations) {
+        if (maxOperations <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid \"scim.bulk.maxOperations\" value (got %d). Should be positive number.", maxOperations)
+            );
+        }
+        this.bulkProcessor = bulkProcessor;
+        this.statuses = statuses;
+        this.maxOperations = maxOperations;
+        this.messageConverters = new HttpMessageConverter<?>[]{
+                new ExceptionReportHttpMessageConverter()
+        };
+    }
+
+    @RequestMapping(value = {"/Bulk"}, method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public ScimBulkResponse bulk(@RequestBody ScimBulkRequest request, HttpServletRequest httpServletRequest) {
+        if (request.getOperations() == null || request.getOperations().isEmpty()) {
+            throw new ScimException("A bulk request must contain at least one operation", HttpStatus.BAD_REQUEST);
+        }
+        if (request.getOperations().size() > maxOperations) {
+            throw new ScimException(
+                    String.format("Too many operations (got %d, maximum is %d)", request.getOperations().size(), maxOperations),
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        return bulkProcessor.process(request, isInternalUserManagementDisabled(httpServletRequest));
+    }
+
+    private static boolean isInternalUserManagementDisabled(HttpServletRequest request) {
+        Object attr = request.getAttribute(DisableInternalUserManagementFilter.DISABLE_INTERNAL_USER_MANAGEMENT);
+        return attr instanceof Boolean && (Boolean) attr;
+    }
+
+    @ExceptionHandler
+    public View handleException(Exception t, HttpServletRequest request) throws ScimException {
+        ScimException e = new ScimException("Unexpected error", t, HttpStatus.INTERNAL_SERVER_ERROR);
+        if (t instanceof ScimException) {
+            e = (ScimException) t;
+        } else {
+            Class<?> clazz = t.getClass();
+            for (Class<?> key : statuses.keySet()) {
+                if (key.isAssignableFrom(clazz)) {
+                    e = new ScimException(t.getMessage(), t, statuses.get(key));
+                    break;
+                }
+            }
+        }
+        boolean trace = request.getParameter("trace") != null && !request.getParameter("trace").equals("false");
+        return new ConvertingExceptionView(new ResponseEntity<>(new ExceptionReport(e, trace),
+                e.getStatus()), messageConverters);
+    }
+}
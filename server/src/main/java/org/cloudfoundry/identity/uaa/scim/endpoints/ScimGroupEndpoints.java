@@ -21,6 +21,7 @@ import org.cloudfoundry.identity.uaa.util.UaaPagingUtils;
 import org.cloudfoundry.identity.uaa.web.ConvertingExceptionView;
 import org.cloudfoundry.identity.uaa.web.ExceptionReport;
 import org.cloudfoundry.identity.uaa.web.ExceptionReportHttpMessageConverter;
+import org.cloudfoundry.identity.uaa.web.NdjsonResponseWriter;
 import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +48,7 @@ import org.springframework.web.util.HtmlUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -178,6 +180,26 @@ public class ScimGroupEndpoints {
         }
     }
 
+    /**
+     * Streams every group matching the filter, with its direct members, as
+     * newline delimited JSON in group id order.
+     */
+    @RequestMapping(value = {"/Groups/export"}, method = RequestMethod.GET, produces = NdjsonResponseWriter.APPLICATION_NDJSON_VALUE)
+    public void exportGroups(
+            @RequestParam(required = false, defaultValue = "id pr") String filter,
+            HttpServletResponse response) throws IOException {
+
+        NdjsonResponseWriter<ScimGroup> writer = new NdjsonResponseWriter<>(response);
+        try {
+            dao.streamWithMembers(filter, identityZoneManager.getCurrentIdentityZoneId(), writer);
+        } catch (IllegalArgumentException e) {
+            throw new ScimException("Invalid filter expression: [" + HtmlUtils.htmlEscape(filter) + "]",
+                    HttpStatus.BAD_REQUEST);
+        }
+        writer.finish();
+        logger.debug("Exported " + writer.getCount() + " groups");
+    }
+
     @RequestMapping(value = {"/Groups/External/list"}, method = RequestMethod.GET)
     @ResponseBody
     @Deprecated
@@ -40,6 +40,7 @@ import org.cloudfoundry.identity.uaa.util.UaaStringUtils;
 import org.cloudfoundry.identity.uaa.web.ConvertingExceptionView;
 import org.cloudfoundry.identity.uaa.web.ExceptionReport;
 import org.cloudfoundry.identity.uaa.web.ExceptionReportHttpMessageConverter;
+import org.cloudfoundry.identity.uaa.web.NdjsonResponseWriter;
 import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -78,6 +79,7 @@ import org.springframework.web.util.HtmlUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -445,6 +447,33 @@ public class ScimUserEndpoints implements InitializingBean, ApplicationEventPubl
         }
     }
 
+    /**
+     * Streams every user matching the filter as newline delimited JSON. Rows are
+     * read from a forward only cursor and written as they arrive, so neither a
+     * count query nor an offset is needed and memory use is independent of the
+     * number of users in the zone.
+     */
+    @RequestMapping(value = "/Users/export", method = RequestMethod.GET, produces = NdjsonResponseWriter.APPLICATION_NDJSON_VALUE)
+    public void exportUsers(
+            @RequestParam(required = false, defaultValue = "id pr") String filter,
+            @RequestParam(required = false, defaultValue = "created") String sortBy,
+            @RequestParam(required = false, defaultValue = "ascending") String sortOrder,
+            HttpServletResponse response) throws IOException {
+
+        NdjsonResponseWriter<ScimUser> writer = new NdjsonResponseWriter<>(response);
+        try {
+            scimUserProvisioning.stream(filter, sortBy, "ascending".equals(sortOrder), identityZoneManager.getCurrentIdentityZoneId(), writer);
+        } catch (IllegalArgumentException e) {
+            String msg = "Invalid filter expression: [" + filter + "]";
+            if (StringUtils.hasText(sortBy)) {
+                msg += " [" + sortBy + "]";
+            }
+            throw new ScimException(HtmlUtils.htmlEscape(msg), HttpStatus.BAD_REQUEST);
+        }
+        writer.finish();
+        logger.debug("Exported " + writer.getCount() + " users");
+    }
+
     @RequestMapping(value = "/Users/{userId}/status", method = RequestMethod.PATCH)
     public UserAccountStatus updateAccountStatus(@RequestBody UserAccountStatus status, @PathVariable String userId) {
         ScimUser user = scimUserProvisioning.retrieve(userId, identityZoneManager.getCurrentIdentityZoneId());
@@ -0,0 +1,91 @@
+package org.cloudfoundry.identity.uaa.scim.endpoints;
+
+import org.cloudfoundry.identity.uaa.scim.DisableInternalUserManagementFilter;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimUserImportResult;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimUserImporter;
+import org.cloudfoundry.identity.uaa.scim.exception.ScimException;
+import org.cloudfoundry.identity.uaa.web.ConvertingExceptionView;
+import org.cloudfoundry.identity.uaa.web.ExceptionReport;
+import org.cloudfoundry.identity.uaa.web.ExceptionReportHttpMessageConverter;
+import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.View;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Imports users with pre-hashed passwords from a newline delimited request
+ * body; see {@link ScimUserImporter} for the record format. Users of the uaa
+ * origin are rejected while internal user management is disabled. Repeating
+ * a request with the same {@code importId} resumes after the last committed
+ * chunk.
+ */
+@Controller
+public class ScimUserImportEndpoints {
+
+    private final ScimUserImporter importer;
+    private final IdentityZoneManager identityZoneManager;
+    private final Map<Class<? extends Exception>, HttpStatus> statuses;
+    private final HttpMessageConverter<?>[] messageConverters;
+
+    public ScimUserImportEndpoints(
+            final ScimUserImporter importer,
+            final IdentityZoneManager identityZoneManager,
+            final @Qualifier("exceptionToStatusMap") Map<Class<? extends Exception>, HttpStatus> statuses) {
+        this.importer = importer;
+        this.identityZoneManager = identityZoneManager;
+        this.statuses = statuses;
+        this.messageConverters = new HttpMessageConverter<?>[]{
+                new ExceptionReportHttpMessageConverter()
+        };
+    }
+
+    @RequestMapping(value = {"/Users/import"}, method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public ScimUserImportResult importUsers(@RequestParam(value = "importId") String importId,
+                                            HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            return importer.importUsers(importId, reader, identityZoneManager.getCurrentIdentityZone(), isInternalUserManagementDisabled(request));
+        }
+    }
+
+    private static boolean isInternalUserManagementDisabled(HttpServletRequest request) {
+        Object attr = request.getAttribute(DisableInternalUserManagementFilter.DISABLE_INTERNAL_USER_MANAGEMENT);
+        return attr instanceof Boolean && (Boolean) attr;
+    }
+
+    @ExceptionHandler
+    public View handleException(Exception t, HttpServletRequest request) throws ScimException {
+        ScimException e = new ScimException("Unexpected error", t, HttpStatus.INTERNAL_SERVER_ERROR);
+        if (t instanceof ScimException) {
+            e = (ScimException) t;
+        } else {
+            Class<?> clazz = t.getClass();
+            for (Class<?> key : statuses.keySet()) {
+                if (key.isAssignableFrom(clazz)) {
+                    e = new ScimException(t.getMessage(), t, statuses.get(key));
+                    break;
+                }
+            }
+        }
+        boolean trace = request.getParameter("trace") != null && !request.getParameter("trace").equals("false");
+        return new ConvertingExceptionView(new ResponseEntity<>(new ExceptionReport(e, trace),
+                e.getStatus()), messageConverters);
+    }
+}
@@ -52,6 +52,10 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
 
     private static final String DELETE_MEMBERS_WITH_ORIGIN_GROUP_SQL = String.format("delete from %s where origin=? and identity_zone_id=?", MEMBERSHIP_TABLE);
 
+    private static final String GET_EXISTING_USER_IDS_SQL_BASE = "select id from users where identity_zone_id = ? and id in (%s)";
+
+    private static final String GET_EXISTING_GROUP_IDS_SQL_BASE = String.format("select id from %s where identity_zone_id = ? and id in (%%s)", JdbcScimGroupProvisioning.GROUP_TABLE);
+
     private static final String DELETE_MEMBERS_IN_GROUP_SQL = String.format("delete from %s where group_id=? and identity_zone_id=?", MEMBERSHIP_TABLE);
 
     private static final String DELETE_MEMBER_IN_GROUPS_SQL_USER = String.format("delete from %s where member_id=? and member_type='USER' and identity_zone_id=?", MEMBERSHIP_TABLE);
@@ -160,6 +164,81 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         return getMemberById(groupId, member.getMemberId(), zoneId);
     }
 
+    @Override
+    public void addMembers(final String groupId, final List<ScimGroupMember> members, final String zoneId)
+            throws ScimResourceNotFoundException, MemberAlreadyExistsException {
+        if (members.isEmpty()) {
+            return;
+        }
+        validateMembers(groupId, members, zoneId);
+        insertMembers(groupId, members, zoneId);
+    }
+
+    private void validateMembers(String groupId, List<ScimGroupMember> members, String zoneId) {
+        if (isDefaultGroup(groupId, zoneId)) {
+            throw new MemberAlreadyExistsException("Trying to add member to default group");
+        }
+        ScimGroup group = scimGroupProvisioning.retrieve(groupId, zoneId);
+        if (!zoneId.equals(group.getZoneId())) {
+            throw new ScimResourceConstraintFailedException("Unable to make membership changes in a different zone");
+        }
+        for (ScimGroupMember member : members) {
+            if (!hasText(member.getMemberId()) || !hasText(member.getOrigin())) {
+                throw new InvalidScimResourceException("group-id, member-id, origin and member-type must be non-empty");
+            }
+            if (groupId.equals(member.getMemberId())) {
+                throw new InvalidScimResourceException("trying to nest group within itself, aborting");
+            }
+        }
+    }
+
+    private void insertMembers(String groupId, List<ScimGroupMember> members, String zoneId) {
+        final Timestamp added = new Timestamp(new Date().getTime());
+        try {
+            logger.debug("Associating group:" + groupId + " with " + members.size() + " members");
+            jdbcTemplate.batchUpdate(ADD_MEMBER_SQL, members, members.size(), (ps, member) -> {
+                ps.setString(1, groupId);
+                ps.setString(2, member.getMemberId());
+                ps.setString(3, (member.getType() == null ? ScimGroupMember.Type.USER : member.getType()).toString());
+                ps.setNull(4, Types.VARCHAR);
+                ps.setTimestamp(5, added);
+                ps.setString(6, member.getOrigin());
+                ps.setString(7, zoneId);
+            });
+        } catch (DuplicateKeyException e) {
+            throw new MemberAlreadyExistsException("One or more members are already part of the group: " + groupId);
+        }
+    }
+
+    /**
+     * Verifies with one query per member type (and per
+     * {@code database.maxParameters} ids) that every member exists in the zone.
+     */
+    private void validateMembersExist(List<ScimGroupMember> members, String zoneId) {
+        Map<ScimGroupMember.Type, List<String>> idsByType = members.stream()
+                .collect(Collectors.groupingBy(
+                        m -> m.getType() == ScimGroupMember.Type.GROUP ? ScimGroupMember.Type.GROUP : ScimGroupMember.Type.USER,
+                        Collectors.mapping(ScimGroupMember::getMemberId, Collectors.toList())));
+        for (Map.Entry<ScimGroupMember.Type, List<String>> entry : idsByType.entrySet()) {
+            boolean group = entry.getKey() == ScimGroupMember.Type.GROUP;
+            Set<String> found = new HashSet<>();
+            List<String> ids = entry.getValue();
+            while (!ids.isEmpty()) {
+                int size = maxSqlParameters > 1 ? Math.min(maxSqlParameters - 1, ids.size()) : ids.size();
+                String sql = String.format(group ? GET_EXISTING_GROUP_IDS_SQL_BASE : GET_EXISTING_USER_IDS_SQL_BASE,
+                        ids.subList(0, size).stream().map(s -> "?").collect(Collectors.joining(", ")));
+                Object[] parameterList = ArrayUtils.addAll(new Object[]{zoneId}, ids.subList(0, size).toArray());
+                found.addAll(jdbcTemplate.queryForList(sql, String.class, parameterList));
+                ids = ids.subList(size, ids.size());
+            }
+            for (String id : entry.getValue()) {
+                if (!found.contains(id)) {
+                    throw new ScimResourceNotFoundException((group ? "Group " : "User ") + id + " does not exist");
+                }
+            }
+        }
+    }
+
     @Override
     public List<ScimGroupMember> getMembers(final String groupId, boolean includeEntities, String zoneId) throws ScimResourceNotFoundException {
         List<ScimGroupMember> result = jdbcTemplate.query(
@@ -267,25 +346,51 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
     public List<ScimGroupMember> updateOrAddMembers(String groupId, List<ScimGroupMember> members, String zoneId)
             throws ScimResourceNotFoundException {
         List<ScimGroupMember> currentMembers = getMembers(groupId, false, zoneId);
-        logger.debug("current-members: " + currentMembers + ", in request: " + members);
+        logger.debug("current-members: " + currentMembers.size() + ", in request: " + members.size());
+
+        Map<String, ScimGroupMember> requested = new LinkedHashMap<>();
+        for (ScimGroupMember member : members) {
+            requested.putIfAbsent(membershipKey(member), member);
+        }
+        Set<String> current = new HashSet<>();
+        List<ScimGroupMember> currentMembersToRemove = new ArrayList<>();
+        for (ScimGroupMember member : currentMembers) {
+            current.add(membershipKey(member));
+            if (!requested.containsKey(membershipKey(member))) {
+                currentMembersToRemove.add(member);
+            }
+        }
+        List<ScimGroupMember> newMembersToAdd = requested.entrySet().stream()
+                .filter(e -> !current.contains(e.getKey()))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+
+        if (!newMembersToAdd.isEmpty()) {
+            validateMembers(groupId, newMembersToAdd, zoneId);
+            validateMembersExist(newMembersToAdd, zoneId);
+        }
 
-        List<ScimGroupMember> currentMembersToRemove = new ArrayList<>(currentMembers);
-        currentMembersToRemove.removeAll(members);
-        logger.debug("removing members: " + currentMembersToRemove);
-        for (ScimGroupMember member : currentMembersToRemove) {
-            removeMemberById(groupId, member.getMemberId(), zoneId);
+        logger.debug("removing " + currentMembersToRemove.size() + " members from group: " + groupId);
+        if (!currentMembersToRemove.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_MEMBER_SQL, currentMembersToRemove, currentMembersToRemove.size(), (ps, member) -> {
+                ps.setString(1, member.getMemberId());
+                ps.setString(2, groupId);
+                ps.setString(3, zoneId);
+            });
         }
 
-        List<ScimGroupMember> newMembersToAdd = new ArrayList<>(members);
-        newMembersToAdd.removeAll(currentMembers);
-        logger.debug("adding new members: " + newMembersToAdd);
-        for (ScimGroupMember member : newMembersToAdd) {
-            addMember(groupId, member, zoneId);
+        logger.debug("adding " + newMembersToAdd.size() + " members to group: " + groupId);
+        if (!newMembersToAdd.isEmpty()) {
+            insertMembers(groupId, newMembersToAdd, zoneId);
         }
 
         return getMembers(groupId, false, zoneId);
     }
 
+    private static String membershipKey(ScimGroupMember member) {
+        return (member.getType() == null ? ScimGroupMember.Type.USER : member.getType()) + ":" + member.getMemberId();
+    }
+
     @Override
     public ScimGroupMember removeMemberById(final String groupId, final String memberId, final String zoneId)
             throws ScimResourceNotFoundException, MemberNotFoundException {
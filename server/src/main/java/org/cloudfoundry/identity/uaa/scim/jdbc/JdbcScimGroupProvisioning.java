@@ -5,8 +5,11 @@ import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
 import org.cloudfoundry.identity.uaa.audit.event.SystemDeletable;
 import org.cloudfoundry.identity.uaa.resources.jdbc.AbstractQueryable;
 import org.cloudfoundry.identity.uaa.resources.jdbc.JdbcPagingListFactory;
+import org.cloudfoundry.identity.uaa.resources.jdbc.SearchQueryConverter;
 import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
+import org.cloudfoundry.identity.uaa.scim.ScimMeta;
 import org.cloudfoundry.identity.uaa.scim.exception.InvalidScimResourceException;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceAlreadyExistsException;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceConstraintFailedException;
@@ -18,12 +21,17 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.cloudfoundry.identity.uaa.zone.ZoneManagementScopes.getSystemScopes;
 import static org.springframework.util.StringUtils.hasText;
@@ -119,6 +127,16 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
             GROUP_MEMBERSHIP_TABLE
     );
 
+    private static final String STREAM_WITH_MEMBERS_SQL = String.format(
+            "select g.%s, gm.member_id, gm.member_type, gm.origin from %s g left outer join %s gm " +
+                    "on gm.group_id = g.id and gm.identity_zone_id = g.identity_zone_id " +
+                    "where g.id in (select id from %s where (%%s)) order by g.id",
+            GROUP_FIELDS.replace(",", ",g."),
+            GROUP_TABLE,
+            GROUP_MEMBERSHIP_TABLE,
+            GROUP_TABLE
+    );
+
     private final JdbcTemplate jdbcTemplate;
 
     private JdbcScimGroupExternalMembershipManager jdbcScimGroupExternalMembershipManager;
@@ -232,6 +250,44 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
         return retrieve(id, zoneId);
     }
 
+    /**
+     * Inserts all groups with a single JDBC batch. A duplicate display name
+     * fails the whole batch, so callers should run this inside a transaction.
+     */
+    @Override
+    public List<ScimGroup> createGroups(final List<ScimGroup> groups, final String zoneId) {
+        logger.debug("creating " + groups.size() + " groups in one batch");
+        final Timestamp t = new Timestamp(new Date().getTime());
+        for (ScimGroup group : groups) {
+            group.setZoneId(zoneId);
+            validateGroup(group);
+            group.setId(UUID.randomUUID().toString());
+        }
+        jdbcTemplate.batchUpdate(ADD_GROUP_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ScimGroup group = groups.get(i);
+                int pos = 1;
+                ps.setString(pos++, group.getId());
+                ps.setString(pos++, group.getDisplayName());
+                ps.setString(pos++, group.getDescription());
+                ps.setTimestamp(pos++, t);
+                ps.setTimestamp(pos++, t);
+                ps.setInt(pos++, group.getVersion());
+                ps.setString(pos, zoneId);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return groups.size();
+            }
+        });
+        for (ScimGroup group : groups) {
+            group.setMeta(new ScimMeta(t, t, group.getVersion()));
+        }
+        return groups;
+    }
+
     @Override
     public ScimGroup update(final String id, final ScimGroup group, final String zoneId) throws InvalidScimResourceException,
             ScimResourceNotFoundException {
@@ -275,6 +331,35 @@ public class JdbcScimGroupProvisioning extends AbstractQueryable<ScimGroup>
         return group;
     }
 
+    @Override
+    public void streamWithMembers(String filter, String zoneId, Consumer<ScimGroup> consumer) {
+        SearchQueryConverter.ProcessedFilter where = getQueryConverter().convert(filter, null, true, zoneId);
+        String sql = String.format(STREAM_WITH_MEMBERS_SQL, where.getSql());
+        logger.debug("streaming groups with members using sql: " + sql + ", params: " + where.getParams());
+        // rows arrive ordered by group id, so a group is complete as soon as the id changes
+        ScimGroup[] current = {null};
+        int[] rowNum = {0};
+        stream(filter, sql, where.getParams(), rs -> {
+            String groupId = rs.getString(1);
+            if (current[0] == null || !current[0].getId().equals(groupId)) {
+                if (current[0] != null) {
+                    consumer.accept(current[0]);
+                }
+                current[0] = rowMapper.mapRow(rs, rowNum[0]++);
+                current[0].setMembers(new ArrayList<>());
+            }
+            String memberId = rs.getString("member_id");
+            if (memberId != null) {
+                ScimGroupMember member = new ScimGroupMember(memberId, ScimGroupMember.Type.valueOf(rs.getString("member_type")));
+                member.setOrigin(rs.getString("origin"));
+                current[0].getMembers().add(member);
+            }
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+
     public int deleteByIdentityZone(String zoneId) {
         jdbcTemplate.update(DELETE_ZONE_ADMIN_MEMBERSHIP_BY_ZONE, IdentityZone.getUaaZoneId(), "zones." + zoneId + ".%");
         jdbcTemplate.update(DELETE_ZONE_ADMIN_GROUPS_BY_ZONE, IdentityZone.getUaaZoneId(), "zones." + zoneId + ".%");
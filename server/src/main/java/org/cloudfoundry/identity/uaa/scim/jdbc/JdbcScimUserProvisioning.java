@@ -37,17 +37,22 @@ import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.util.Assert;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -55,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static java.sql.Types.VARCHAR;
 import static org.springframework.util.StringUtils.hasText;
@@ -100,6 +106,8 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
 
     public static final String USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY = "select " + USER_FIELDS + " from users " + "where LOWER(username)=LOWER(?) and LOWER(origin)=LOWER(?) and LOWER(identity_zone_id)=LOWER(?)";
 
+    public static final String USER_BY_USERNAMES_AND_ZONE_QUERY = "select " + USER_FIELDS + " from users " + "where LOWER(username) in (:usernames) and identity_zone_id=:zoneId";
+
     public static final String ALL_USERS = "select " + USER_FIELDS + " from users";
 
     public static final String HARD_DELETE_OF_GROUP_MEMBERS_BY_ZONE = "delete from group_membership where identity_zone_id = ?";
@@ -190,33 +198,7 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         try {
             jdbcTemplate.update(CREATE_USER_SQL, ps -> {
                 Timestamp t = new Timestamp(new Date().getTime());
-                ps.setString(1, id);
-                ps.setInt(2, user.getVersion());
-                ps.setTimestamp(3, t);
-                ps.setTimestamp(4, t);
-                ps.setString(5, user.getUserName());
-                ps.setString(6, user.getPrimaryEmail());
-                if (user.getName() == null) {
-                    ps.setString(7, null);
-                    ps.setString(8, null);
-                }
-                else {
-                    ps.setString(7, user.getName().getGivenName());
-                    ps.setString(8, user.getName().getFamilyName());
-                }
-                ps.setBoolean(9, user.isActive());
-                String phoneNumber = extractPhoneNumber(user);
-                ps.setString(10, phoneNumber);
-                ps.setBoolean(11, user.isVerified());
-                ps.setString(12, origin);
-                ps.setString(13, hasText(user.getExternalId())?user.getExternalId():null);
-                ps.setString(14, identityZoneId);
-                ps.setString(15, user.getSalt());
-
-                ps.setTimestamp(16, getPasswordLastModifiedTimestamp(t));
-                ps.setNull(17, Types.BIGINT);
-                ps.setNull(18, Types.BIGINT);
-                ps.setString(19, user.getPassword());
+                setCreateUserValues(ps, user, id, origin, identityZoneId, t, getPasswordLastModifiedTimestamp(t));
             });
         } catch (DuplicateKeyException e) {
             String userOrigin = hasText(user.getOrigin()) ? user.getOrigin() : OriginKeys.UAA;
@@ -230,6 +212,91 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         return retrieve(id, zoneId);
     }
 
+    private void setCreateUserValues(PreparedStatement ps,
+                                     ScimUser user,
+                                     String id,
+                                     String origin,
+                                     String identityZoneId,
+                                     Timestamp t,
+                                     Timestamp passwordLastModified) throws SQLException {
+        ps.setString(1, id);
+        ps.setInt(2, user.getVersion());
+        ps.setTimestamp(3, t);
+        ps.setTimestamp(4, t);
+        ps.setString(5, user.getUserName());
+        ps.setString(6, user.getPrimaryEmail());
+        if (user.getName() == null) {
+            ps.setString(7, null);
+            ps.setString(8, null);
+        }
+        else {
+            ps.setString(7, user.getName().getGivenName());
+            ps.setString(8, user.getName().getFamilyName());
+        }
+        ps.setBoolean(9, user.isActive());
+        String phoneNumber = extractPhoneNumber(user);
+        ps.setString(10, phoneNumber);
+        ps.setBoolean(11, user.isVerified());
+        ps.setString(12, origin);
+        ps.setString(13, hasText(user.getExternalId())?user.getExternalId():null);
+        ps.setString(14, identityZoneId);
+        ps.setString(15, user.getSalt());
+
+        ps.setTimestamp(16, passwordLastModified);
+        ps.setNull(17, Types.BIGINT);
+        ps.setNull(18, Types.BIGINT);
+        ps.setString(19, user.getPassword());
+    }
+
+    /**
+     * Inserts all users with a single JDBC batch. Passwords must already be
+     * encoded. A constraint violation fails the whole batch, so callers should
+     * run this inside a transaction and fall back to {@link #create(ScimUser, String)}
+     * to find the offending row.
+     */
+    @Override
+    public List<ScimUser> createUsers(final List<ScimUser> users, final String zoneId) {
+        logger.debug("Creating " + users.size() + " users in one batch");
+        final Timestamp t = new Timestamp(new Date().getTime());
+        final Timestamp passwordLastModified = getPasswordLastModifiedTimestamp(t);
+        for (ScimUser user : users) {
+            if (!hasText(user.getOrigin())) {
+                user.setOrigin(OriginKeys.UAA);
+            }
+            user.setId(UUID.randomUUID().toString());
+            user.setZoneId(zoneId);
+        }
+        jdbcTemplate.batchUpdate(CREATE_USER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ScimUser user = users.get(i);
+                setCreateUserValues(ps, user, user.getId(), user.getOrigin(), zoneId, t, passwordLastModified);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return users.size();
+            }
+        });
+        for (ScimUser user : users) {
+            user.setMeta(new ScimMeta(t, t, user.getVersion()));
+            user.setPasswordLastModified(passwordLastModified);
+            user.setPassword(null);
+        }
+        return users;
+    }
+
+    @Override
+    public List<ScimUser> retrieveByUsernamesAndZone(Collection<String> usernames, String zoneId) {
+        if (usernames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("usernames", usernames.stream().map(String::toLowerCase).collect(Collectors.toSet()));
+        params.put("zoneId", zoneId);
+        return new NamedParameterJdbcTemplate(jdbcTemplate).query(USER_BY_USERNAMES_AND_ZONE_QUERY, params, mapper);
+    }
+
     protected Timestamp getPasswordLastModifiedTimestamp(Timestamp t) {
         Calendar cal = new GregorianCalendar();
         cal.set(Calendar.MILLISECOND, 0);
@@ -12,6 +12,8 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
@@ -19,10 +21,11 @@ import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.springframework.security.oauth2.provider.ClientDetails;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.EMPTY_LIST;
@@ -32,6 +35,17 @@ public class DomainFilter {
 
     private static Logger logger = LoggerFactory.getLogger(DomainFilter.class);
 
+    private static final List<String> UAA_CATCH_ALL_DOMAINS = Arrays.asList("*.*", "*.*.*", "*.*.*.*");
+
+    /*
+     * Indexes are keyed by the contents of the email domain list, since every
+     * caller gets its own copy of a provider's list, so each distinct list is
+     * built once rather than on every discovery request.
+     */
+    private static final Cache<List<String>, EmailDomainIndex> INDEXES = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .build();
+
     public static List<IdentityProvider> filter(List<IdentityProvider> activeProviders, ClientDetails client, String email) {
         return filter(activeProviders, client, email, true);
     }
@@ -100,15 +114,27 @@ public class DomainFilter {
         wildcardList = domainList;
         if (!explicit) {
             if (UAA.equals(provider.getOriginKey())) {
-                wildcardList = domainList == null ? Arrays.asList("*.*", "*.*.*", "*.*.*.*") : domainList;
+                wildcardList = domainList == null ? UAA_CATCH_ALL_DOMAINS : domainList;
             }
         }
 
         if (wildcardList==null) {
             return false;
         } else {
-            Set<Pattern> patterns = UaaStringUtils.constructWildcards(wildcardList);
-            return UaaStringUtils.matches(patterns, domain);
+            return indexFor(wildcardList).matches(domain);
+        }
+    }
+
+    static EmailDomainIndex indexFor(List<String> domains) {
+        EmailDomainIndex index = INDEXES.getIfPresent(domains);
+        if (index != null) {
+            return index;
+        }
+        List<String> key = Collections.unmodifiableList(new ArrayList<>(domains));
+        try {
+            return INDEXES.get(key, () -> new EmailDomainIndex(key));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
         }
     }
 
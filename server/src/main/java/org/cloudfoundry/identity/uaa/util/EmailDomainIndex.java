@@ -0,0 +1,91 @@
+package org.cloudfoundry.identity.uaa.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Matches domains against email domain patterns, where a {@code *} label
+ * matches any one label, the same as the patterns built by
+ * {@link UaaStringUtils#constructWildcards(Collection)}. Patterns are kept in
+ * a trie keyed by their labels from right to left, so a lookup walks the
+ * labels of the domain once instead of running a regular expression per
+ * pattern. Patterns with a {@code *} inside a label, like {@code mail*.org},
+ * still use a regular expression, compiled once.
+ */
+public final class EmailDomainIndex {
+
+    private static final String WILDCARD = "*";
+
+    private final Node root = new Node();
+    private final Set<Pattern> partialWildcards;
+
+    public EmailDomainIndex(Collection<String> patterns) {
+        List<String> partial = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (pattern == null) {
+                continue;
+            }
+            String[] labels = pattern.split("\\.", -1);
+            if (hasPartialWildcard(labels)) {
+                partial.add(pattern);
+                continue;
+            }
+            Node node = root;
+            for (int i = labels.length - 1; i >= 0; i--) {
+                node = node.child(labels[i]);
+            }
+            node.terminal = true;
+        }
+        this.partialWildcards = UaaStringUtils.constructWildcards(partial);
+    }
+
+    public boolean matches(String domain) {
+        if (domain == null) {
+            return false;
+        }
+        String[] labels = domain.split("\\.", -1);
+        return matches(root, labels, labels.length - 1) || UaaStringUtils.matches(partialWildcards, domain);
+    }
+
+    private static boolean matches(Node node, String[] labels, int index) {
+        if (index < 0) {
+            return node.terminal;
+        }
+        String label = labels[index];
+        Node literal = node.children.get(label);
+        if (literal != null && matches(literal, labels, index - 1)) {
+            return true;
+        }
+        return node.wildcard != null && !label.isEmpty() && matches(node.wildcard, labels, index - 1);
+    }
+
+    private static boolean hasPartialWildcard(String[] labels) {
+        for (String label : labels) {
+            if (!WILDCARD.equals(label) && label.contains(WILDCARD)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Node wildcard;
+        private boolean terminal;
+
+        private Node child(String label) {
+            if (WILDCARD.equals(label)) {
+                if (wildcard == null) {
+                    wildcard = new Node();
+                }
+                return wildcard;
+            }
+            return children.computeIfAbsent(label, l -> new Node());
+        }
+    }
+}
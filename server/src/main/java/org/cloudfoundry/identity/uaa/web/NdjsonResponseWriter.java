@@ -0,0 +1,58 @@
+package org.cloudfoundry.identity.uaa.web;
+
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes resources to the response as newline delimited JSON, one document per
+ * line, flushing to the client as the buffer fills rather than holding the
+ * whole result in memory.
+ */
+public class NdjsonResponseWriter<T> implements Consumer<T> {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final HttpServletResponse response;
+    private Writer writer;
+    private long count;
+
+    public NdjsonResponseWriter(HttpServletResponse response) {
+        this.response = response;
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    }
+
+    @Override
+    public void accept(T resource) {
+        try {
+            if (writer == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+            }
+            writer.write(JsonUtils.writeValueAsString(resource));
+            writer.write('\n');
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else {
+            response.getOutputStream().flush();
+        }
+    }
+}
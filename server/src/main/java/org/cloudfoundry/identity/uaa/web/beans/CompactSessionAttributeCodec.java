@@ -0,0 +1,410 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.authentication.UaaLoginHint;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.user.UaaAuthority;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.savedrequest.DefaultSavedRequest;
+import org.springframework.security.web.savedrequest.SavedCookie;
+
+import javax.servlet.http.Cookie;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact binary form for the session attributes UAA itself writes on
+ * every login: the security context holding a {@link UaaAuthentication} and
+ * the {@link DefaultSavedRequest} that is replayed after login. Java
+ * serialization writes the class descriptors of every object in these
+ * graphs, which makes up most of their size.
+ *
+ * <p>
+ * Every value starts with {@link #MAGIC}, which Java serialization and gzip
+ * never start with, a format version and a type. Only values that can be
+ * restored exactly are encoded; {@link #encode} returns {@code null} for
+ * anything else, such as subclasses, authentications with credentials or a
+ * SAML message context, or authorities of other types, and the caller falls
+ * back to Java serialization. A reader that does not know the version fails
+ * loudly, so the version must be bumped whenever the layout changes.
+ * </p>
+ */
+class CompactSessionAttributeCodec {
+
+    static final byte[] MAGIC = {(byte) 0xCF, (byte) 0x55};
+    static final byte VERSION = 1;
+
+    private static final byte SECURITY_CONTEXT = 1;
+    private static final byte UAA_AUTHENTICATION = 2;
+    private static final byte SAVED_REQUEST = 3;
+
+    private static final byte SIMPLE_AUTHORITY = 0;
+    private static final byte UAA_AUTHORITY = 1;
+
+    static boolean isEncoded(byte[] bytes) {
+        return bytes.length > MAGIC.length + 1 && bytes[0] == MAGIC[0] && bytes[1] == MAGIC[1];
+    }
+
+    /**
+     * @return the compact form of the value, or {@code null} if the value
+     * has to be stored with Java serialization
+     */
+    byte[] encode(Object value) throws IOException {
+        byte type;
+        if (value != null && value.getClass() == SecurityContextImpl.class
+                && canEncode(((SecurityContextImpl) value).getAuthentication())) {
+            type = SECURITY_CONTEXT;
+        } else if (value instanceof Authentication && canEncode((Authentication) value)) {
+            type = UAA_AUTHENTICATION;
+        } else if (value != null && value.getClass() == DefaultSavedRequest.class) {
+            type = SAVED_REQUEST;
+        } else {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        switch (type) {
+            case SECURITY_CONTEXT:
+                Authentication authentication = ((SecurityContextImpl) value).getAuthentication();
+                out.writeBoolean(authentication != null);
+                if (authentication != null) {
+                    writeAuthentication(out, (UaaAuthentication) authentication);
+                }
+                break;
+            case UAA_AUTHENTICATION:
+                writeAuthentication(out, (UaaAuthentication) value);
+                break;
+            default:
+                writeSavedRequest(out, (DefaultSavedRequest) value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    Object decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, MAGIC.length, bytes.length - MAGIC.length));
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported session attribute format version " + version);
+        }
+        byte type = in.readByte();
+        switch (type) {
+            case SECURITY_CONTEXT:
+                SecurityContextImpl context = new SecurityContextImpl();
+                if (in.readBoolean()) {
+                    context.setAuthentication(readAuthentication(in));
+                }
+                return context;
+            case UAA_AUTHENTICATION:
+                return readAuthentication(in);
+            case SAVED_REQUEST:
+                return readSavedRequest(in);
+            default:
+                throw new IOException("Unknown session attribute type " + type);
+        }
+    }
+
+    private static boolean canEncode(Authentication authentication) {
+        if (authentication == null) {
+            return true;
+        }
+        if (authentication.getClass() != UaaAuthentication.class) {
+            return false;
+        }
+        UaaAuthentication uaaAuthentication = (UaaAuthentication) authentication;
+        if (uaaAuthentication.getCredentials() != null
+                || uaaAuthentication.getSamlMessageContext() != null
+                || uaaAuthentication.getPrincipal().getClass() != UaaPrincipal.class
+                || !(uaaAuthentication.getAuthorities() instanceof List)) {
+            return false;
+        }
+        Object details = uaaAuthentication.getDetails();
+        if (details != null && details.getClass() != UaaAuthenticationDetails.class) {
+            return false;
+        }
+        for (GrantedAuthority authority : uaaAuthentication.getAuthorities()) {
+            if (authority.getClass() != SimpleGrantedAuthority.class && !(authority instanceof UaaAuthority)) {
+                return false;
+            }
+        }
+        for (Object values : uaaAuthentication.getUserAttributesAsMap().values()) {
+            if (!(values instanceof List) || !((List<?>) values).stream().allMatch(v -> v == null || v instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeAuthentication(DataOutputStream out, UaaAuthentication authentication) throws IOException {
+        UaaPrincipal principal = authentication.getPrincipal();
+        writeString(out, principal.getId());
+        writeString(out, principal.getName());
+        writeString(out, principal.getEmail());
+        writeString(out, principal.getOrigin());
+        writeString(out, principal.getExternalId());
+        writeString(out, principal.getZoneId());
+
+        out.writeInt(authentication.getAuthorities().size());
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (authority instanceof UaaAuthority) {
+                out.writeByte(UAA_AUTHORITY);
+                writeString(out, ((UaaAuthority) authority).name());
+            } else {
+                out.writeByte(SIMPLE_AUTHORITY);
+                writeString(out, authority.getAuthority());
+            }
+        }
+
+        UaaAuthenticationDetails details = (UaaAuthenticationDetails) authentication.getDetails();
+        out.writeBoolean(details != null);
+        if (details != null) {
+            out.writeBoolean(details.isAddNew());
+            writeString(out, details.getClientId());
+            writeString(out, details.getOrigin());
+            writeString(out, details.getSessionId());
+            writeString(out, details.getLoginHint() == null ? null : details.getLoginHint().getOrigin());
+            writeArrayMap(out, details.getParameterMap());
+        }
+
+        out.writeBoolean(authentication.isAuthenticated());
+        out.writeLong(authentication.getAuthenticatedTime());
+        out.writeLong(authentication.getExpiresAt());
+        Long lastLoginSuccessTime = authentication.getLastLoginSuccessTime();
+        out.writeBoolean(lastLoginSuccessTime != null);
+        if (lastLoginSuccessTime != null) {
+            out.writeLong(lastLoginSuccessTime);
+        }
+        writeStrings(out, authentication.getExternalGroups());
+        writeStrings(out, authentication.getAuthenticationMethods());
+        writeStrings(out, authentication.getAuthContextClassRef());
+        writeListMap(out, authentication.getUserAttributesAsMap());
+    }
+
+    private static UaaAuthentication readAuthentication(DataInputStream in) throws IOException {
+        UaaPrincipal principal = new UaaPrincipal(readString(in), readString(in), readString(in),
+                readString(in), readString(in), readString(in));
+
+        int authorityCount = in.readInt();
+        List<GrantedAuthority> authorities = new ArrayList<>(authorityCount);
+        for (int i = 0; i < authorityCount; i++) {
+            byte type = in.readByte();
+            String authority = readString(in);
+            authorities.add(type == UAA_AUTHORITY ? UaaAuthority.valueOf(authority) : new SimpleGrantedAuthority(authority));
+        }
+
+        UaaAuthenticationDetails details = null;
+        if (in.readBoolean()) {
+            boolean addNew = in.readBoolean();
+            String clientId = readString(in);
+            String origin = readString(in);
+            String sessionId = readString(in);
+            String loginHint = readString(in);
+            details = new UaaAuthenticationDetails(addNew, clientId, origin, sessionId,
+                    loginHint == null ? null : new UaaLoginHint(loginHint), readArrayMap(in));
+        }
+
+        boolean authenticated = in.readBoolean();
+        long authenticatedTime = in.readLong();
+        long expiresAt = in.readLong();
+        Long lastLoginSuccessTime = in.readBoolean() ? in.readLong() : null;
+        Set<String> externalGroups = readStrings(in);
+        Set<String> authenticationMethods = readStrings(in);
+        Set<String> authContextClassRef = readStrings(in);
+        Map<String, List<String>> userAttributes = readListMap(in);
+
+        UaaAuthentication authentication = new UaaAuthentication(principal, null, authorities, externalGroups,
+                userAttributes, details, authenticated, authenticatedTime, expiresAt);
+        authentication.setLastLoginSuccessTime(lastLoginSuccessTime);
+        authentication.setAuthenticationMethods(authenticationMethods);
+        authentication.setAuthContextClassRef(authContextClassRef);
+        return authentication;
+    }
+
+    private static void writeSavedRequest(DataOutputStream out, DefaultSavedRequest request) throws IOException {
+        List<Cookie> cookies = request.getCookies();
+        out.writeInt(cookies.size());
+        for (Cookie cookie : cookies) {
+            writeString(out, cookie.getName());
+            writeString(out, cookie.getValue());
+            writeString(out, cookie.getComment());
+            writeString(out, cookie.getDomain());
+            out.writeInt(cookie.getMaxAge());
+            writeString(out, cookie.getPath());
+            out.writeBoolean(cookie.getSecure());
+            out.writeInt(cookie.getVersion());
+        }
+
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : request.getHeaderNames()) {
+            headers.put(name, request.getHeaderValues(name));
+        }
+        writeListMap(out, headers);
+
+        List<Locale> locales = request.getLocales();
+        out.writeInt(locales.size());
+        for (Locale locale : locales) {
+            writeString(out, locale.toLanguageTag());
+        }
+
+        writeArrayMap(out, request.getParameterMap());
+        writeString(out, request.getContextPath());
+        writeString(out, request.getMethod());
+        writeString(out, request.getPathInfo());
+        writeString(out, request.getQueryString());
+        writeString(out, request.getRequestURI());
+        writeString(out, request.getRequestURL());
+        writeString(out, request.getScheme());
+        writeString(out, request.getServerName());
+        out.writeInt(request.getServerPort());
+        writeString(out, request.getServletPath());
+    }
+
+    private static DefaultSavedRequest readSavedRequest(DataInputStream in) throws IOException {
+        int cookieCount = in.readInt();
+        List<SavedCookie> cookies = new ArrayList<>(cookieCount);
+        for (int i = 0; i < cookieCount; i++) {
+            cookies.add(new SavedCookie(readString(in), readString(in), readString(in), readString(in),
+                    in.readInt(), readString(in), in.readBoolean(), in.readInt()));
+        }
+        Map<String, List<String>> headers = readListMap(in);
+        int localeCount = in.readInt();
+        List<Locale> locales = new ArrayList<>(localeCount);
+        for (int i = 0; i < localeCount; i++) {
+            locales.add(Locale.forLanguageTag(readString(in)));
+        }
+
+        DefaultSavedRequest.Builder builder = new DefaultSavedRequest.Builder();
+        builder.setCookies(cookies);
+        builder.setHeaders(headers);
+        builder.setLocales(locales);
+        builder.setParameters(readArrayMap(in));
+        builder.setContextPath(readString(in));
+        builder.setMethod(readString(in));
+        builder.setPathInfo(readString(in));
+        builder.setQueryString(readString(in));
+        builder.setRequestURI(readString(in));
+        builder.setRequestURL(readString(in));
+        builder.setScheme(readString(in));
+        builder.setServerName(readString(in));
+        builder.setServerPort(in.readInt());
+        builder.setServletPath(readString(in));
+        return builder.build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static Set<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static void writeListMap(DataOutputStream out, Map<String, List<String>> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            List<String> values = entry.getValue();
+            out.writeInt(values.size());
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static Map<String, List<String>> readListMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            int valueCount = in.readInt();
+            List<String> values = new ArrayList<>(valueCount);
+            for (int j = 0; j < valueCount; j++) {
+                values.add(readString(in));
+            }
+            map.put(key, values);
+        }
+        return map;
+    }
+
+    private static void writeArrayMap(DataOutputStream out, Map<String, String[]> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, String[]> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            String[] values = entry.getValue();
+            out.writeInt(values.length);
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static Map<String, String[]> readArrayMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, String[]> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            String[] values = new String[in.readInt()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = readString(in);
+            }
+            map.put(key, values);
+        }
+        return map;
+    }
+}
@@ -2,27 +2,207 @@ package org.cloudfoundry.identity.uaa.web.beans;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.session.Session;
 import org.springframework.stereotype.Component;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static java.util.stream.Collectors.toList;
-
+/**
+ * The sessions of the memory session store, indexed by the time they expire
+ * at, so {@link #purge()} only visits the sessions that are due rather than
+ * scanning them all. {@code MapSessionRepository} stores a copy of a session
+ * on every save, so the expiry time of a stored session does not change and
+ * is indexed by {@link #put} and {@link #remove(Object)}. Every other way of
+ * changing the map goes through those two, and its views are read-only, so
+ * the index cannot miss a change. Sessions that never expire are not indexed.
+ */
 @Component
-class PurgeableSessionMap extends ConcurrentHashMap<String, Session> {
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=SessionStore",
+        description = "UAA Memory Session Store Metrics"
+)
+public class PurgeableSessionMap extends AbstractMap<String, Session> {
     private final static Logger logger = LoggerFactory.getLogger(PurgeableSessionMap.class);
 
-    @Scheduled(fixedDelayString = "${servlet-session-purge-delay:900000}")
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final NavigableSet<Expiry> expiries = new ConcurrentSkipListSet<>();
+    private final AtomicLong purged = new AtomicLong();
+
+    @Override
+    public Session get(Object id) {
+        return sessions.get(id);
+    }
+
+    @Override
+    public boolean containsKey(Object id) {
+        return sessions.containsKey(id);
+    }
+
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public Set<Entry<String, Session>> entrySet() {
+        return Collections.unmodifiableMap(sessions).entrySet();
+    }
+
+    @Override
+    public Session put(String id, Session session) {
+        Session[] previous = new Session[1];
+        sessions.compute(id, (key, current) -> {
+            previous[0] = current;
+            unindex(key, current);
+            index(key, session);
+            return session;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public Session remove(Object id) {
+        if (!(id instanceof String)) {
+            return null;
+        }
+        Session[] removed = new Session[1];
+        sessions.computeIfPresent((String) id, (key, current) -> {
+            removed[0] = current;
+            unindex(key, current);
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public void clear() {
+        sessions.clear();
+        expiries.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${servlet-session-purge-delay:60000}")
     public void purge() {
-        List<Session> expired = expired();
-        expired.forEach(s -> remove(s.getId()));
-        logger.debug(String.format("Purged %s sessions", expired.size()));
+        List<Expiry> due = new ArrayList<>(expiries.headSet(Expiry.before(System.currentTimeMillis() + 1)));
+        int[] count = new int[1];
+        for (Expiry expiry : due) {
+            // under the lock of the session's key, so it cannot be replaced meanwhile
+            sessions.compute(expiry.id, (key, current) -> {
+                if (current != expiry.session) {
+                    // replaced or removed since it was indexed; the index
+                    // entry may be the replacement's, which expires at the same time
+                    if (current == null || !expiry.equals(Expiry.of(key, current))) {
+                        expiries.remove(expiry);
+                    }
+                    return current;
+                }
+                if (!current.isExpired()) {
+                    return current;
+                }
+                unindex(key, current);
+                count[0]++;
+                return null;
+            });
+        }
+        purged.addAndGet(count[0]);
+        logger.debug(String.format("Purged %s sessions", count[0]));
     }
 
     public List<Session> expired() {
-        return values().stream().filter(Session::isExpired).collect(toList());
+        List<Session> expired = new ArrayList<>();
+        for (Expiry expiry : expiries.headSet(Expiry.before(System.currentTimeMillis() + 1))) {
+            if (get(expiry.id) == expiry.session && expiry.session.isExpired()) {
+                expired.add(expiry.session);
+            }
+        }
+        return expired;
+    }
+
+    @ManagedMetric(displayName = "Live Sessions")
+    public int getLiveSessionCount() {
+        return Math.max(0, size() - getExpiredSessionCount());
+    }
+
+    @ManagedMetric(displayName = "Expired Sessions Awaiting Purge")
+    public int getExpiredSessionCount() {
+        return expired().size();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Purged Sessions (Since Startup)")
+    public long getPurgedSessionCount() {
+        return purged.get();
+    }
+
+    private void index(String id, Session session) {
+        Expiry expiry = Expiry.of(id, session);
+        if (expiry != null) {
+            expiries.add(expiry);
+        }
+    }
+
+    private void unindex(String id, Session session) {
+        Expiry expiry = session == null ? null : Expiry.of(id, session);
+        if (expiry != null) {
+            expiries.remove(expiry);
+        }
+    }
+
+    private static final class Expiry implements Comparable<Expiry> {
+        private static final Comparator<Expiry> ORDER = Comparator
+                .comparingLong((Expiry e) -> e.at)
+                .thenComparing(e -> e.id);
+
+        private final long at;
+        private final String id;
+        private final Session session;
+
+        private Expiry(long at, String id, Session session) {
+            this.at = at;
+            this.id = id;
+            this.session = session;
+        }
+
+        private static Expiry of(String id, Session session) {
+            if (session.getMaxInactiveInterval().isNegative()) {
+                return null;
+            }
+            return new Expiry(session.getLastAccessedTime().plus(session.getMaxInactiveInterval()).toEpochMilli(), id, session);
+        }
+
+        /**
+         * A bound that sorts before every session expiring at or after the
+         * given time.
+         */
+        private static Expiry before(long at) {
+            return new Expiry(at, "", null);
+        }
+
+        @Override
+        public int compareTo(Expiry other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Expiry && compareTo((Expiry) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(at) * 31 + id.hashCode();
+        }
     }
 }
@@ -0,0 +1,88 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Turns session attribute values into the bytes stored in
+ * {@code SPRING_SESSION_ATTRIBUTES} and back. Values are written with Java
+ * serialization, as Spring Session does, or in the form of
+ * {@link CompactSessionAttributeCodec} when compact attributes are on and the
+ * value is one of UAA's own session types. Either form is gzipped when
+ * compression is on and it is larger than {@link #COMPRESSION_THRESHOLD}
+ * bytes. The forms are told apart by their first bytes, so values written
+ * with any setting, or by Spring Session, can be read.
+ */
+class SessionAttributeSerializer {
+
+    static final int COMPRESSION_THRESHOLD = 512;
+
+    private final boolean compact;
+    private final boolean compress;
+    private final CompactSessionAttributeCodec codec = new CompactSessionAttributeCodec();
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer;
+
+    SessionAttributeSerializer(boolean compact, boolean compress, ClassLoader classLoader) {
+        this.compact = compact;
+        this.compress = compress;
+        this.deserializer = new DeserializingConverter(classLoader);
+    }
+
+    byte[] serialize(Object value) {
+        byte[] bytes = compact ? encode(value) : null;
+        if (bytes == null) {
+            bytes = serializer.convert(value);
+        }
+        if (!compress || bytes.length <= COMPRESSION_THRESHOLD) {
+            return bytes;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new SerializationFailedException("Failed to compress session attribute", e);
+        }
+        return compressed.toByteArray();
+    }
+
+    Object deserialize(byte[] bytes) {
+        if (isGzipped(bytes)) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                bytes = StreamUtils.copyToByteArray(in);
+            } catch (IOException e) {
+                throw new SerializationFailedException("Failed to decompress session attribute", e);
+            }
+        }
+        if (!CompactSessionAttributeCodec.isEncoded(bytes)) {
+            return deserializer.convert(bytes);
+        }
+        try {
+            return codec.decode(bytes);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationFailedException("Failed to decode session attribute", e);
+        }
+    }
+
+    private byte[] encode(Object value) {
+        try {
+            return codec.encode(value);
+        } catch (IOException e) {
+            throw new SerializationFailedException("Failed to encode session attribute", e);
+        }
+    }
+
+    private static boolean isGzipped(byte[] bytes) {
+        return bytes.length > 2
+                && bytes[0] == (byte) GZIPInputStream.GZIP_MAGIC
+                && bytes[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+}
@@ -3,19 +3,24 @@ package org.cloudfoundry.identity.uaa.web.beans;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Condition;
 import org.springframework.context.annotation.ConditionContext;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.lang.NonNull;
-import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
-import org.springframework.session.jdbc.config.annotation.web.http.JdbcHttpSessionConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
 @Conditional(UaaJdbcSessionConfig.DatabaseConfigured.class)
-@EnableJdbcHttpSession
+@EnableSpringHttpSession
+@EnableScheduling
 public class UaaJdbcSessionConfig extends UaaSessionConfig {
 
     private final static Logger logger = LoggerFactory.getLogger(UaaJdbcSessionConfig.class);
@@ -29,11 +34,18 @@ public class UaaJdbcSessionConfig extends UaaSessionConfig {
         }
     }
 
-    @Autowired
-    public void customizeIdleTimeout(
-            final JdbcHttpSessionConfiguration jdbcHttpSessionConfiguration,
-            final @Value("${servlet.idle-timeout:1800}") int idleTimeout) {
-        jdbcHttpSessionConfiguration.setMaxInactiveIntervalInSeconds(idleTimeout);
+    @Bean
+    public UaaJdbcSessionRepository sessionRepository(
+            final JdbcTemplate jdbcTemplate,
+            final @Qualifier("transactionManager") PlatformTransactionManager transactionManager,
+            final @Value("${servlet.idle-timeout:1800}") int idleTimeout,
+            final @Value("${servlet.jdbc-session.last-access-granularity-seconds:60}") int lastAccessGranularitySeconds,
+            final @Value("${servlet.jdbc-session.near-cache-seconds:0}") int nearCacheSeconds,
+            final @Value("${servlet.jdbc-session.compact-attributes:false}") boolean compactAttributes,
+            final @Value("${servlet.jdbc-session.compress-attributes:false}") boolean compressAttributes
+    ) {
+        return new UaaJdbcSessionRepository(jdbcTemplate, transactionManager, idleTimeout,
+                lastAccessGranularitySeconds, nearCacheSeconds, compactAttributes, compressAttributes);
     }
 
     @Autowired
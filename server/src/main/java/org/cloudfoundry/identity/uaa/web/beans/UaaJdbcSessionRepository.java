@@ -0,0 +1,389 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.cloudfoundry.identity.uaa.util.SessionUtils.SPRING_SECURITY_CONTEXT;
+
+/**
+ * Stores HTTP sessions in the {@code SPRING_SESSION} tables, in the same
+ * format as Spring Session's JDBC repository, with less database traffic:
+ * <ul>
+ * <li>only the attributes set or removed during a request are written;</li>
+ * <li>the last access time is written once it has moved by at least
+ * {@code servlet.jdbc-session.last-access-granularity-seconds}, so other
+ * nodes and the expired session clean-up may see a session expire up to
+ * that much early;</li>
+ * <li>sessions this node has read or written are kept in a near-cache for
+ * {@code servlet.jdbc-session.near-cache-seconds}. Changes made by other
+ * nodes are not seen until the entry expires, so the near-cache is off by
+ * default and should only be turned on with session affinity;</li>
+ * <li>UAA's own attribute types are written in a compact form when
+ * {@code servlet.jdbc-session.compact-attributes} is on, and attribute
+ * values are compressed when {@code servlet.jdbc-session.compress-attributes}
+ * is on, see {@link SessionAttributeSerializer}.</li>
+ * </ul>
+ * A request that changes no attribute and comes within the granularity of
+ * the last written access does not write to the database at all.
+ */
+public class UaaJdbcSessionRepository implements SessionRepository<UaaJdbcSessionRepository.UaaJdbcSession> {
+
+    private static final Logger logger = LoggerFactory.getLogger(UaaJdbcSessionRepository.class);
+
+    private static final String SELECT_SESSION = "SELECT S.PRIMARY_ID, S.SESSION_ID, S.CREATION_TIME, S.LAST_ACCESS_TIME, S.MAX_INACTIVE_INTERVAL, SA.ATTRIBUTE_NAME, SA.ATTRIBUTE_BYTES " +
+            "FROM SPRING_SESSION S LEFT OUTER JOIN SPRING_SESSION_ATTRIBUTES SA ON S.PRIMARY_ID = SA.SESSION_PRIMARY_ID " +
+            "WHERE S.SESSION_ID = ?";
+    private static final String INSERT_SESSION = "INSERT INTO SPRING_SESSION (PRIMARY_ID, SESSION_ID, CREATION_TIME, LAST_ACCESS_TIME, MAX_INACTIVE_INTERVAL, EXPIRY_TIME, PRINCIPAL_NAME) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SESSION = "UPDATE SPRING_SESSION SET SESSION_ID = ?, LAST_ACCESS_TIME = ?, MAX_INACTIVE_INTERVAL = ?, EXPIRY_TIME = ?, PRINCIPAL_NAME = ? WHERE PRIMARY_ID = ?";
+    private static final String DELETE_SESSION = "DELETE FROM SPRING_SESSION WHERE SESSION_ID = ?";
+    private static final String DELETE_EXPIRED_SESSIONS = "DELETE FROM SPRING_SESSION WHERE EXPIRY_TIME < ?";
+    private static final String INSERT_ATTRIBUTE = "INSERT INTO SPRING_SESSION_ATTRIBUTES (SESSION_PRIMARY_ID, ATTRIBUTE_NAME, ATTRIBUTE_BYTES) VALUES (?, ?, ?)";
+    private static final String UPDATE_ATTRIBUTE = "UPDATE SPRING_SESSION_ATTRIBUTES SET ATTRIBUTE_BYTES = ? WHERE SESSION_PRIMARY_ID = ? AND ATTRIBUTE_NAME = ?";
+    private static final String DELETE_ATTRIBUTE = "DELETE FROM SPRING_SESSION_ATTRIBUTES WHERE SESSION_PRIMARY_ID = ? AND ATTRIBUTE_NAME = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SessionAttributeSerializer serializer;
+    private final Duration defaultMaxInactiveInterval;
+    private final Duration lastAccessGranularity;
+    private final Cache<String, UaaJdbcSession> nearCache;
+
+    public UaaJdbcSessionRepository(
+            final JdbcTemplate jdbcTemplate,
+            final PlatformTransactionManager transactionManager,
+            final int defaultMaxInactiveIntervalSeconds,
+            final int lastAccessGranularitySeconds,
+            final int nearCacheSeconds,
+            final boolean compactAttributes,
+            final boolean compressAttributes) {
+        if (lastAccessGranularitySeconds < 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"servlet.jdbc-session.last-access-granularity-seconds\" value (got %d). Should not be negative.", lastAccessGranularitySeconds));
+        }
+        if (nearCacheSeconds < 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"servlet.jdbc-session.near-cache-seconds\" value (got %d). Should not be negative.", nearCacheSeconds));
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.serializer = new SessionAttributeSerializer(compactAttributes, compressAttributes, UaaJdbcSessionRepository.class.getClassLoader());
+        this.defaultMaxInactiveInterval = Duration.ofSeconds(defaultMaxInactiveIntervalSeconds);
+        this.lastAccessGranularity = Duration.ofSeconds(lastAccessGranularitySeconds);
+        this.nearCache = nearCacheSeconds == 0 ? null : CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(nearCacheSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public UaaJdbcSession createSession() {
+        Instant now = Instant.now();
+        return new UaaJdbcSession(true, UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+                now, now, now, defaultMaxInactiveInterval, new HashMap<>());
+    }
+
+    @Override
+    public void save(UaaJdbcSession session) {
+        String previousId = session.persistedId;
+        if (session.isNew) {
+            transactionTemplate.executeWithoutResult(status -> insert(session));
+        } else if (session.isSessionChanged(lastAccessGranularity) || !session.changedAttributes.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> update(session));
+        }
+        session.persisted();
+        if (nearCache != null) {
+            if (!session.id.equals(previousId)) {
+                nearCache.invalidate(previousId);
+            }
+            nearCache.put(session.id, session.copy());
+        }
+    }
+
+    @Override
+    public UaaJdbcSession findById(String id) {
+        UaaJdbcSession cached = nearCache == null ? null : nearCache.getIfPresent(id);
+        UaaJdbcSession session;
+        if (cached != null) {
+            session = cached.copy();
+        } else {
+            session = load(id);
+            if (session == null) {
+                return null;
+            }
+            if (nearCache != null) {
+                nearCache.asMap().putIfAbsent(id, session.copy());
+            }
+        }
+        if (session.isExpired()) {
+            deleteById(id);
+            return null;
+        }
+        return session;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        if (nearCache != null) {
+            nearCache.invalidate(id);
+        }
+        jdbcTemplate.update(DELETE_SESSION, id);
+    }
+
+    @Scheduled(cron = "${servlet.jdbc-session.cleanup-cron:0 * * * * *}")
+    public void cleanUpExpiredSessions() {
+        int deleted = jdbcTemplate.update(DELETE_EXPIRED_SESSIONS, System.currentTimeMillis());
+        logger.debug(String.format("Cleaned up %s expired sessions", deleted));
+    }
+
+    private UaaJdbcSession load(String id) {
+        return jdbcTemplate.query(SELECT_SESSION, rs -> {
+            UaaJdbcSession session = null;
+            Map<String, Object> attributes = new HashMap<>();
+            while (rs.next()) {
+                if (session == null) {
+                    Instant lastAccessedTime = Instant.ofEpochMilli(rs.getLong("LAST_ACCESS_TIME"));
+                    session = new UaaJdbcSession(false, rs.getString("PRIMARY_ID"), rs.getString("SESSION_ID"),
+                            Instant.ofEpochMilli(rs.getLong("CREATION_TIME")), lastAccessedTime, lastAccessedTime,
+                            Duration.ofSeconds(rs.getInt("MAX_INACTIVE_INTERVAL")), attributes);
+                }
+                String name = rs.getString("ATTRIBUTE_NAME");
+                if (name != null) {
+                    attributes.put(name, serializer.deserialize(rs.getBytes("ATTRIBUTE_BYTES")));
+                }
+            }
+            if (session != null) {
+                session.persisted();
+            }
+            return session;
+        }, id);
+    }
+
+    private void insert(UaaJdbcSession session) {
+        jdbcTemplate.update(INSERT_SESSION, ps -> {
+            ps.setString(1, session.primaryId);
+            ps.setString(2, session.id);
+            ps.setLong(3, session.creationTime.toEpochMilli());
+            ps.setLong(4, session.lastAccessedTime.toEpochMilli());
+            ps.setInt(5, (int) session.maxInactiveInterval.getSeconds());
+            ps.setLong(6, session.getExpiryTime());
+            ps.setString(7, principalName(session));
+        });
+        session.persistedLastAccessedTime = session.lastAccessedTime;
+        session.attributes.forEach((name, value) -> insertAttribute(session, name, value));
+    }
+
+    private void update(UaaJdbcSession session) {
+        if (session.isSessionChanged(lastAccessGranularity)) {
+            jdbcTemplate.update(UPDATE_SESSION, ps -> {
+                ps.setString(1, session.id);
+                ps.setLong(2, session.lastAccessedTime.toEpochMilli());
+                ps.setInt(3, (int) session.maxInactiveInterval.getSeconds());
+                ps.setLong(4, session.getExpiryTime());
+                ps.setString(5, principalName(session));
+                ps.setString(6, session.primaryId);
+            });
+            session.persistedLastAccessedTime = session.lastAccessedTime;
+        }
+        for (String name : session.changedAttributes) {
+            Object value = session.attributes.get(name);
+            boolean stored = session.persistedAttributes.contains(name);
+            if (value == null) {
+                if (stored) {
+                    jdbcTemplate.update(DELETE_ATTRIBUTE, session.primaryId, name);
+                }
+            } else if (stored) {
+                byte[] bytes = serializer.serialize(value);
+                jdbcTemplate.update(UPDATE_ATTRIBUTE, ps -> {
+                    ps.setBytes(1, bytes);
+                    ps.setString(2, session.primaryId);
+                    ps.setString(3, name);
+                });
+            } else {
+                insertAttribute(session, name, value);
+            }
+        }
+    }
+
+    private void insertAttribute(UaaJdbcSession session, String name, Object value) {
+        byte[] bytes = serializer.serialize(value);
+        jdbcTemplate.update(INSERT_ATTRIBUTE, ps -> {
+            ps.setString(1, session.primaryId);
+            ps.setString(2, name);
+            ps.setBytes(3, bytes);
+        });
+    }
+
+    private static String principalName(Session session) {
+        String principalName = session.getAttribute(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME);
+        if (principalName != null) {
+            return principalName;
+        }
+        Object context = session.getAttribute(SPRING_SECURITY_CONTEXT);
+        if (context instanceof SecurityContext) {
+            Authentication authentication = ((SecurityContext) context).getAuthentication();
+            return authentication == null ? null : authentication.getName();
+        }
+        return null;
+    }
+
+    /**
+     * A session as read from, or last written to, the database, plus the
+     * changes made to it since.
+     */
+    public static final class UaaJdbcSession implements Session {
+
+        private boolean isNew;
+        private final String primaryId;
+        private String id;
+        private String persistedId;
+        private final Instant creationTime;
+        private Instant lastAccessedTime;
+        private Instant persistedLastAccessedTime;
+        private Duration maxInactiveInterval;
+        private Duration persistedMaxInactiveInterval;
+        private String persistedPrincipalName;
+        private final Map<String, Object> attributes;
+        private final Set<String> persistedAttributes = new HashSet<>();
+        private final Set<String> changedAttributes = new HashSet<>();
+
+        private UaaJdbcSession(boolean isNew, String primaryId, String id, Instant creationTime,
+                               Instant lastAccessedTime, Instant persistedLastAccessedTime,
+                               Duration maxInactiveInterval, Map<String, Object> attributes) {
+            this.isNew = isNew;
+            this.primaryId = primaryId;
+            this.id = id;
+            this.persistedId = id;
+            this.creationTime = creationTime;
+            this.lastAccessedTime = lastAccessedTime;
+            this.persistedLastAccessedTime = persistedLastAccessedTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+            this.persistedMaxInactiveInterval = maxInactiveInterval;
+            this.attributes = attributes;
+        }
+
+        private UaaJdbcSession copy() {
+            UaaJdbcSession copy = new UaaJdbcSession(isNew, primaryId, id, creationTime, lastAccessedTime,
+                    persistedLastAccessedTime, maxInactiveInterval, new HashMap<>(attributes));
+            copy.persistedPrincipalName = persistedPrincipalName;
+            copy.persistedAttributes.addAll(persistedAttributes);
+            return copy;
+        }
+
+        private void persisted() {
+            isNew = false;
+            persistedId = id;
+            persistedMaxInactiveInterval = maxInactiveInterval;
+            persistedPrincipalName = principalName(this);
+            persistedAttributes.clear();
+            persistedAttributes.addAll(attributes.keySet());
+            changedAttributes.clear();
+        }
+
+        private boolean isSessionChanged(Duration lastAccessGranularity) {
+            return !id.equals(persistedId)
+                    || !maxInactiveInterval.equals(persistedMaxInactiveInterval)
+                    || !Objects.equals(principalName(this), persistedPrincipalName)
+                    || (lastAccessedTime.isAfter(persistedLastAccessedTime)
+                        && Duration.between(persistedLastAccessedTime, lastAccessedTime).compareTo(lastAccessGranularity) >= 0);
+        }
+
+        private long getExpiryTime() {
+            if (maxInactiveInterval.isNegative()) {
+                return Long.MAX_VALUE;
+            }
+            return lastAccessedTime.plus(maxInactiveInterval).toEpochMilli();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String changeSessionId() {
+            id = UUID.randomUUID().toString();
+            return id;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getAttribute(String attributeName) {
+            return (T) attributes.get(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return new HashSet<>(attributes.keySet());
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            if (attributeValue == null) {
+                removeAttribute(attributeName);
+                return;
+            }
+            attributes.put(attributeName, attributeValue);
+            changedAttributes.add(attributeName);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            attributes.remove(attributeName);
+            changedAttributes.add(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return creationTime;
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            this.lastAccessedTime = lastAccessedTime;
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return lastAccessedTime;
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            this.maxInactiveInterval = interval;
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return maxInactiveInterval;
+        }
+
+        @Override
+        public boolean isExpired() {
+            if (maxInactiveInterval.isNegative()) {
+                return false;
+            }
+            return !Instant.now().minus(maxInactiveInterval).isBefore(lastAccessedTime);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.cloudfoundry.identity.uaa.zone;
+
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Deletes an identity zone and everything it owns. The zone is marked
+ * inactive straight away, so it stops serving requests. The tables that can
+ * hold millions of rows for a large zone are then purged in chunks, each in
+ * its own transaction, with a pause between chunks when running in the
+ * background, so no single statement holds locks for long. Finally the
+ * {@link EntityDeletedEvent} is published, in one transaction, so every
+ * {@code SystemDeletable} removes what is left.
+ *
+ * <p>
+ * When {@code zones.deletion.async} is false the purge runs on the calling
+ * thread. Otherwise it runs on a single background thread, which is stopped
+ * when the context closes. The progress of the last deletion of each zone is
+ * kept in memory on the node that runs it. A purge that fails leaves the zone inactive with
+ * part of its rows deleted; deleting the zone again resumes it.
+ * </p>
+ */
+@Component("identityZoneDeletionService")
+public class IdentityZoneDeletionService implements ApplicationEventPublisherAware, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdentityZoneDeletionService.class);
+
+    private static final long STATUS_RETENTION_MILLIS = 24 * 60 * 60 * 1000L;
+
+    static final List<ChunkedTable> CHUNKED_TABLES = Collections.unmodifiableList(Arrays.asList(
+            new ChunkedTable("revocable_tokens", "token_id"),
+            new ChunkedTable("authz_approvals", "user_id"),
+            new ChunkedTable("group_membership", "member_id"),
+            new ChunkedTable("users", "id")
+    ));
+
+    private final IdentityZoneProvisioning zoneProvisioning;
+    private final JdbcTemplate jdbcTemplate;
+    private final LimitSqlAdapter limitSqlAdapter;
+    private final TransactionTemplate chunkTransaction;
+    private final TransactionTemplate eventTransaction;
+    private final Executor executor;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    private final Map<String, IdentityZoneDeletionStatus> statuses = new ConcurrentHashMap<>();
+
+    private ApplicationEventPublisher publisher;
+
+    @Autowired
+    public IdentityZoneDeletionService(
+            final IdentityZoneProvisioning zoneProvisioning,
+            final JdbcTemplate jdbcTemplate,
+            final LimitSqlAdapter limitSqlAdapter,
+            final @Qualifier("transactionManager") PlatformTransactionManager transactionManager,
+            final @Value("${zones.deletion.async:false}") boolean async,
+            final @Value("${zones.deletion.chunkSize:1000}") int chunkSize,
+            final @Value("${zones.deletion.pauseMillis:100}") long pauseMillis) {
+        this(zoneProvisioning, jdbcTemplate, limitSqlAdapter, transactionManager,
+                async ? Executors.newSingleThreadExecutor(IdentityZoneDeletionService::newDeletionThread) : Runnable::run,
+                chunkSize,
+                async ? pauseMillis : 0);
+    }
+
+    IdentityZoneDeletionService(
+            final IdentityZoneProvisioning zoneProvisioning,
+            final JdbcTemplate jdbcTemplate,
+            final LimitSqlAdapter limitSqlAdapter,
+            final PlatformTransactionManager transactionManager,
+            final Executor executor,
+            final int chunkSize,
+            final long pauseMillis) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"zones.deletion.chunkSize\" value (got %d). Should be positive number.", chunkSize));
+        }
+        if (pauseMillis < 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"zones.deletion.pauseMillis\" value (got %d). Should not be negative.", pauseMillis));
+        }
+        this.zoneProvisioning = zoneProvisioning;
+        this.jdbcTemplate = jdbcTemplate;
+        this.limitSqlAdapter = limitSqlAdapter;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventTransaction = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+        this.publisher = applicationEventPublisher;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    /**
+     * Starts deleting the zone, unless a deletion of it is already running.
+     * A deletion that failed is started again and carries on with the rows
+     * that are left.
+     *
+     * @return the status of the deletion of the zone, which is done when the
+     * purge ran on the calling thread
+     */
+    public IdentityZoneDeletionStatus delete(IdentityZone zone, Authentication authentication) {
+        long now = System.currentTimeMillis();
+        statuses.values().removeIf(s -> s.isDone() && now - s.getFinished().getTime() > STATUS_RETENTION_MILLIS);
+
+        IdentityZoneDeletionStatus status = new IdentityZoneDeletionStatus(zone.getId(), new Date(now));
+        IdentityZoneDeletionStatus current = statuses.compute(zone.getId(),
+                (id, existing) -> existing == null || existing.isDone() ? status : existing);
+        if (current != status) {
+            return current;
+        }
+
+        if (zone.isActive()) {
+            zone.setActive(false);
+            zoneProvisioning.update(zone);
+        }
+        executor.execute(() -> purge(zone, authentication, status));
+        return status;
+    }
+
+    public IdentityZoneDeletionStatus getStatus(String zoneId) {
+        return statuses.get(zoneId);
+    }
+
+    private void purge(IdentityZone zone, Authentication authentication, IdentityZoneDeletionStatus status) {
+        status.running();
+        IdentityZone previous = IdentityZoneHolder.get();
+        try {
+            for (ChunkedTable table : CHUNKED_TABLES) {
+                while (chunkTransaction.execute(s -> deleteChunk(table, zone.getId(), status))) {
+                    if (pauseMillis > 0) {
+                        Thread.sleep(pauseMillis);
+                    }
+                }
+            }
+            IdentityZoneHolder.set(zone);
+            if (publisher != null) {
+                eventTransaction.execute(s -> {
+                    publisher.publishEvent(new EntityDeletedEvent<>(zone, authentication, zone.getId()));
+                    return null;
+                });
+            }
+            status.completed(new Date());
+            logger.debug("Zone - deleted id[" + zone.getId() + "] " + status.getDeletedRows());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status.failed(new Date(), "interrupted");
+        } catch (RuntimeException e) {
+            logger.error("Zone - deletion failed for id[" + zone.getId() + "]", e);
+            status.failed(new Date(), e.getMessage());
+            throw e;
+        } finally {
+            IdentityZoneHolder.set(previous);
+        }
+    }
+
+    /**
+     * Deletes the rows of the zone up to the key of its chunk-size-th row, in
+     * key order, or all its rows when it has fewer left.
+     *
+     * @return true if the zone may have rows left in the table
+     */
+    private boolean deleteChunk(ChunkedTable table, String zoneId, IdentityZoneDeletionStatus status) {
+        List<String> last = jdbcTemplate.query(
+                limitSqlAdapter.getLimitSql(table.selectSql, chunkSize - 1, 1),
+                (rs, rowNum) -> rs.getString(1),
+                zoneId);
+        if (last.isEmpty()) {
+            status.deleted(table.name, jdbcTemplate.update(table.deleteSql, zoneId));
+            return false;
+        }
+        status.deleted(table.name, jdbcTemplate.update(table.deleteChunkSql, zoneId, last.get(0)));
+        return true;
+    }
+
+    private static Thread newDeletionThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "identity-zone-deletion");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    static final class ChunkedTable {
+        private final String name;
+        private final String selectSql;
+        private final String deleteSql;
+        private final String deleteChunkSql;
+
+        ChunkedTable(String name, String keyColumn) {
+            this.name = name;
+            this.selectSql = "select " + keyColumn + " from " + name + " where identity_zone_id = ? order by " + keyColumn;
+            this.deleteSql = "delete from " + name + " where identity_zone_id = ?";
+            this.deleteChunkSql = deleteSql + " and " + keyColumn + " <= ?";
+        }
+    }
+}
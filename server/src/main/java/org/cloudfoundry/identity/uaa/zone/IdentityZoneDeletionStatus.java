@@ -0,0 +1,85 @@
+package org.cloudfoundry.identity.uaa.zone;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Progress of the deletion of an identity zone and the rows it owns.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IdentityZoneDeletionStatus {
+
+    public enum State {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String zoneId;
+    private final Date started;
+    private final Map<String, Long> deletedRows = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile State state = State.PENDING;
+    private volatile Date finished;
+    private volatile String error;
+
+    public IdentityZoneDeletionStatus(String zoneId, Date started) {
+        this.zoneId = zoneId;
+        this.started = started;
+    }
+
+    public String getZoneId() {
+        return zoneId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Date getStarted() {
+        return started;
+    }
+
+    public Date getFinished() {
+        return finished;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Map<String, Long> getDeletedRows() {
+        synchronized (deletedRows) {
+            return new LinkedHashMap<>(deletedRows);
+        }
+    }
+
+    @JsonIgnore
+    public boolean isDone() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+
+    void running() {
+        state = State.RUNNING;
+    }
+
+    void deleted(String table, int rows) {
+        deletedRows.merge(table, (long) rows, Long::sum);
+    }
+
+    void completed(Date finished) {
+        this.finished = finished;
+        state = State.COMPLETED;
+    }
+
+    void failed(Date finished, String error) {
+        this.finished = finished;
+        this.error = error;
+        state = State.FAILED;
+    }
+}
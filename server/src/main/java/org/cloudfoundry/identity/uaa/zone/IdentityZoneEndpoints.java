@@ -1,6 +1,5 @@
 package org.cloudfoundry.identity.uaa.zone;
 
-import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.client.InvalidClientDetailsException;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.error.UaaException;
@@ -26,7 +25,6 @@ import org.springframework.security.oauth2.provider.ClientAlreadyExistsException
 import org.springframework.security.oauth2.provider.ClientDetails;
 import org.springframework.security.oauth2.provider.NoSuchClientException;
 import org.springframework.security.oauth2.provider.client.BaseClientDetails;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.Errors;
@@ -48,6 +46,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import static java.util.Optional.ofNullable;
+import static org.springframework.http.HttpStatus.ACCEPTED;
 import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
@@ -70,6 +69,7 @@ public class IdentityZoneEndpoints implements ApplicationEventPublisherAware {
     private final ScimGroupProvisioning groupProvisioning;
     private final IdentityZoneValidator validator;
     private final MessageSource messageSource;
+    private final IdentityZoneDeletionService zoneDeletionService;
 
     private ApplicationEventPublisher publisher;
 
@@ -78,7 +78,8 @@ public class IdentityZoneEndpoints implements ApplicationEventPublisherAware {
                                  final IdentityZoneEndpointClientRegistrationService clientRegistrationService,
                                  final ScimGroupProvisioning groupProvisioning,
                                  final IdentityZoneValidator validator,
-                                 final MessageSource messageSource) {
+                                 final MessageSource messageSource,
+                                 final IdentityZoneDeletionService zoneDeletionService) {
         super();
         this.zoneDao = zoneDao;
         this.idpDao = idpDao;
@@ -86,6 +87,7 @@ public class IdentityZoneEndpoints implements ApplicationEventPublisherAware {
         this.groupProvisioning = groupProvisioning;
         this.validator = validator;
         this.messageSource = messageSource;
+        this.zoneDeletionService = zoneDeletionService;
     }
 
     @Override
@@ -302,9 +304,13 @@ public class IdentityZoneEndpoints implements ApplicationEventPublisherAware {
         }
     }
 
+    /**
+     * Not transactional: the zone is purged in chunks, each committed on its
+     * own. Answers 202 with the deletion status while the purge runs in the
+     * background.
+     */
     @RequestMapping(value = "{id}", method = DELETE)
-    @Transactional
-    public ResponseEntity<IdentityZone> deleteIdentityZone(@PathVariable String id) {
+    public ResponseEntity<?> deleteIdentityZone(@PathVariable String id) {
         if (id == null) {
             throw new ZoneDoesNotExistsException(id);
         }
@@ -319,7 +325,11 @@ public class IdentityZoneEndpoints implements ApplicationEventPublisherAware {
             // ignore the id in the body, the id in the path is the only one that matters
             IdentityZoneHolder.set(zone);
             if (publisher != null && zone != null) {
-                publisher.publishEvent(new EntityDeletedEvent<>(zone, SecurityContextHolder.getContext().getAuthentication(), IdentityZoneHolder.getCurrentZoneId()));
+                IdentityZoneDeletionStatus status = zoneDeletionService.delete(zone, SecurityContextHolder.getContext().getAuthentication());
+                if (!status.isDone()) {
+                    logger.debug("Zone - deletion started id[" + zone.getId() + "]");
+                    return new ResponseEntity<>(status, ACCEPTED);
+                }
                 logger.debug("Zone - deleted id[" + zone.getId() + "]");
                 return new ResponseEntity<>(removeKeys(zone), OK);
             } else {
@@ -330,6 +340,22 @@ public class IdentityZoneEndpoints implements ApplicationEventPublisherAware {
         }
     }
 
+    /**
+     * The deletion status is kept in memory on the node that ran the deletion,
+     * so other nodes answer 404 for it, as does any node once it restarts.
+     */
+    @RequestMapping(value = "{id}/deletion", method = GET)
+    public IdentityZoneDeletionStatus getIdentityZoneDeletionStatus(@PathVariable String id) {
+        if (!IdentityZoneHolder.isUaa() && !id.equals(IdentityZoneHolder.get().getId())) {
+            throw new AccessDeniedException("Zone admins can only read their own zone.");
+        }
+        IdentityZoneDeletionStatus status = zoneDeletionService.getStatus(id);
+        if (status == null) {
+            throw new ZoneDoesNotExistsException("No deletion of zone[" + id + "] found.");
+        }
+        return status;
+    }
+
     @RequestMapping(method = POST, value = "{identityZoneId}/clients")
     public ResponseEntity<? extends ClientDetails> createClient(
             @PathVariable String identityZoneId, @RequestBody BaseClientDetails clientDetails) {
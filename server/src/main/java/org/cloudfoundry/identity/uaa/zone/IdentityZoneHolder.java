@@ -3,16 +3,25 @@ package org.cloudfoundry.identity.uaa.zone;
 import org.cloudfoundry.identity.uaa.provider.saml.SamlKeyManagerFactory;
 import org.springframework.security.saml.key.KeyManager;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * @Deprecated Use {@link org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager} instead
  */
 @Deprecated
 public class IdentityZoneHolder {
 
+    private static final long UAA_ZONE_REFRESH_MILLIS = 10_000;
+
     private static IdentityZoneProvisioning provisioning;
 
+    private static final AtomicLong uaaZoneGeneration = new AtomicLong();
+
+    private static volatile UaaZoneSnapshot uaaZoneSnapshot;
+
     public static void setProvisioning(IdentityZoneProvisioning provisioning) {
         IdentityZoneHolder.provisioning = provisioning;
+        invalidateUaaZone();
     }
 
     private static SamlKeyManagerFactory samlKeyManagerFactory = new SamlKeyManagerFactory();
@@ -47,11 +56,34 @@ public class IdentityZoneHolder {
         return getUaaZone(provisioning);
     }
 
+    /**
+     * The default zone is served from an in-memory snapshot that is reloaded
+     * every {@code UAA_ZONE_REFRESH_MILLIS} or after {@link #invalidateUaaZone()}.
+     * The returned zone is shared between threads and must not be modified.
+     */
     private static IdentityZone getUaaZone(IdentityZoneProvisioning provisioning) {
         if (provisioning == null) {
             return IdentityZone.getUaa();
         }
-        return provisioning.retrieve(IdentityZone.getUaaZoneId());
+        long generation = uaaZoneGeneration.get();
+        long now = System.currentTimeMillis();
+        UaaZoneSnapshot snapshot = uaaZoneSnapshot;
+        if (snapshot != null && snapshot.isValid(provisioning, generation, now)) {
+            return snapshot.zone;
+        }
+        IdentityZone zone = provisioning.retrieve(IdentityZone.getUaaZoneId());
+        if (zone != null) {
+            uaaZoneSnapshot = new UaaZoneSnapshot(provisioning, zone, generation, now);
+        }
+        return zone;
+    }
+
+    /**
+     * Drops the in-memory default zone, so the next read loads it again.
+     */
+    public static void invalidateUaaZone() {
+        uaaZoneGeneration.incrementAndGet();
+        uaaZoneSnapshot = null;
     }
 
     public static void set(IdentityZone zone) {
@@ -72,6 +104,26 @@ public class IdentityZoneHolder {
         return IDENTITY_ZONE_THREAD_LOCAL.get().getId();
     }
 
+    private static final class UaaZoneSnapshot {
+        private final IdentityZoneProvisioning provisioning;
+        private final IdentityZone zone;
+        private final long generation;
+        private final long loadedAt;
+
+        private UaaZoneSnapshot(IdentityZoneProvisioning provisioning, IdentityZone zone, long generation, long loadedAt) {
+            this.provisioning = provisioning;
+            this.zone = zone;
+            this.generation = generation;
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean isValid(IdentityZoneProvisioning provisioning, long generation, long now) {
+            return this.provisioning == provisioning
+                    && this.generation == generation
+                    && now - loadedAt < UAA_ZONE_REFRESH_MILLIS;
+        }
+    }
+
     public static class Initializer {
         public Initializer(IdentityZoneProvisioning provisioning) {
             IdentityZoneHolder.setProvisioning(provisioning);
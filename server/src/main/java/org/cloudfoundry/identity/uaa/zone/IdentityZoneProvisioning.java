@@ -24,6 +24,15 @@ public interface IdentityZoneProvisioning {
 
     IdentityZone retrieveBySubdomain(String subdomain);
 
+    /**
+     * Resolves the active zone for an incoming request. Implementations may
+     * return a cached instance shared between requests, so callers must not
+     * modify it.
+     */
+    default IdentityZone resolveBySubdomain(String subdomain) {
+        return retrieveBySubdomain(subdomain);
+    }
+
     List<IdentityZone> retrieveAll();
 
     default IdentityZone retrieveIgnoreActiveFlag(String id) {
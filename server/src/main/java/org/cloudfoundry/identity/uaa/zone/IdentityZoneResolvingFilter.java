@@ -51,7 +51,7 @@ public class IdentityZoneResolvingFilter extends OncePerRequestFilter implements
         String subdomain = getSubdomain(hostname);
         if (subdomain != null) {
             try {
-                identityZone = dao.retrieveBySubdomain(subdomain);
+                identityZone = dao.resolveBySubdomain(subdomain);
             } catch (EmptyResultDataAccessException ex) {
                 logger.debug("Cannot find identity zone for subdomain " + subdomain);
             } catch (Exception ex) {
@@ -86,9 +86,10 @@ public class IdentityZoneResolvingFilter extends OncePerRequestFilter implements
         if (defaultZoneHostnames.contains(lowerHostName)) {
             return "";
         }
-        for (String internalHostname : defaultZoneHostnames) {
-            if (lowerHostName.endsWith("." + internalHostname)) {
-                return lowerHostName.substring(0, lowerHostName.length() - internalHostname.length() - 1);
+        // walk the suffixes from the longest, so the most specific internal hostname wins
+        for (int dot = lowerHostName.indexOf('.'); dot >= 0; dot = lowerHostName.indexOf('.', dot + 1)) {
+            if (defaultZoneHostnames.contains(lowerHostName.substring(dot + 1))) {
+                return lowerHostName.substring(0, dot);
             }
         }
         //UAA is catch all if we haven't configured anything
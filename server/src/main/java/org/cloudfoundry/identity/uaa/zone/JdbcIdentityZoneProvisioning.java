@@ -1,9 +1,14 @@
 package org.cloudfoundry.identity.uaa.zone;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.cloudfoundry.identity.uaa.audit.event.SystemDeletable;
+import org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -17,6 +22,8 @@ import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
 
+import static org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus.EntityType.ZONE;
+
 @Component("identityZoneProvisioning")
 public class JdbcIdentityZoneProvisioning implements IdentityZoneProvisioning, SystemDeletable {
 
@@ -38,14 +45,40 @@ public class JdbcIdentityZoneProvisioning implements IdentityZoneProvisioning, S
 
     public static final String IDENTITY_ZONE_BY_SUBDOMAIN_QUERY = "select " + ID_ZONE_FIELDS + " from identity_zone " + "where subdomain=? and active = ?";
 
+    public static final String IDENTITY_ZONE_FINGERPRINT_BY_SUBDOMAIN_QUERY = "select id,version,lastmodified from identity_zone where subdomain=? and active = ?";
+
     public static final Logger logger = LoggerFactory.getLogger(JdbcIdentityZoneProvisioning.class);
 
+    private static final int MAX_RESOLVED_ZONES = 10_000;
+
     protected final JdbcTemplate jdbcTemplate;
 
     private final RowMapper<IdentityZone> mapper = new IdentityZoneRowMapper();
 
+    private final long resolvedZoneRevalidationMillis;
+
+    private final Cache<String, ResolvedZone> resolvedZones = CacheBuilder.newBuilder()
+            .maximumSize(MAX_RESOLVED_ZONES)
+            .build();
+
+    private CacheInvalidationBus cacheInvalidationBus;
+
     public JdbcIdentityZoneProvisioning(final JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, 1000);
+    }
+
+    @Autowired
+    public JdbcIdentityZoneProvisioning(
+            final JdbcTemplate jdbcTemplate,
+            final @Value("${zones.cache.revalidateMillis:1000}") long resolvedZoneRevalidationMillis) {
         this.jdbcTemplate = jdbcTemplate;
+        this.resolvedZoneRevalidationMillis = resolvedZoneRevalidationMillis;
+    }
+
+    @Autowired(required = false)
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        cacheInvalidationBus.register(ZONE, (zoneId, id) -> evictZone(id));
     }
 
     @Override
@@ -79,6 +112,56 @@ public class JdbcIdentityZoneProvisioning implements IdentityZoneProvisioning, S
         return jdbcTemplate.queryForObject(IDENTITY_ZONE_BY_SUBDOMAIN_QUERY, mapper, subdomain.toLowerCase(), true);
     }
 
+    /**
+     * Returns a cached zone with its configuration already parsed. Once an
+     * entry is older than the revalidation interval, it is checked against
+     * the zone's id, version and last modified time, which is much cheaper
+     * than reading and parsing the configuration again. Changes made through
+     * this instance drop the cache straight away.
+     */
+    @Override
+    public IdentityZone resolveBySubdomain(String subdomain) {
+        if (subdomain == null) {
+            throw new EmptyResultDataAccessException("Subdomain cannot be null", 1);
+        }
+        String key = subdomain.toLowerCase();
+        long now = System.currentTimeMillis();
+        ResolvedZone resolved = resolvedZones.getIfPresent(key);
+        if (resolved != null && now - resolved.validatedAt < resolvedZoneRevalidationMillis) {
+            return resolved.zone;
+        }
+
+        if (resolved != null) {
+            String fingerprint;
+            try {
+                fingerprint = jdbcTemplate.queryForObject(IDENTITY_ZONE_FINGERPRINT_BY_SUBDOMAIN_QUERY,
+                        (rs, rowNum) -> fingerprint(rs.getString(1).trim(), rs.getInt(2), rs.getTimestamp(3)),
+                        key, true);
+            } catch (EmptyResultDataAccessException x) {
+                resolvedZones.invalidate(key);
+                throw x;
+            }
+            if (resolved.fingerprint.equals(fingerprint)) {
+                resolvedZones.put(key, new ResolvedZone(resolved.zone, fingerprint, now));
+                return resolved.zone;
+            }
+        }
+
+        IdentityZone zone;
+        try {
+            zone = retrieveBySubdomain(key);
+        } catch (EmptyResultDataAccessException x) {
+            resolvedZones.invalidate(key);
+            throw x;
+        }
+        resolvedZones.put(key, new ResolvedZone(zone, fingerprint(zone.getId(), zone.getVersion(), zone.getLastModified()), now));
+        return zone;
+    }
+
+    private static String fingerprint(String id, int version, Date lastModified) {
+        return id + ":" + version + ":" + (lastModified == null ? "" : lastModified.getTime());
+    }
+
     @Override
     public IdentityZone create(final IdentityZone identityZone) {
 
@@ -102,6 +185,7 @@ public class JdbcIdentityZoneProvisioning implements IdentityZoneProvisioning, S
             throw new ZoneAlreadyExistsException(e.getMostSpecificCause().getMessage(), e);
         }
 
+        zoneChanged(identityZone.getId(), identityZone.getVersion());
         return retrieveIgnoreActiveFlag(identityZone.getId());
     }
 
@@ -127,12 +211,29 @@ public class JdbcIdentityZoneProvisioning implements IdentityZoneProvisioning, S
             //duplicate subdomain
             throw new ZoneAlreadyExistsException(e.getMostSpecificCause().getMessage(), e);
         }
+        zoneChanged(identityZone.getId(), identityZone.getVersion() + 1);
         return retrieveIgnoreActiveFlag(identityZone.getId());
     }
 
     @Override
     public int deleteByIdentityZone(String zoneId) {
-        return jdbcTemplate.update(DELETE_IDENTITY_ZONE_SQL, zoneId);
+        int deleted = jdbcTemplate.update(DELETE_IDENTITY_ZONE_SQL, zoneId);
+        zoneChanged(zoneId, null);
+        return deleted;
+    }
+
+    private void zoneChanged(String zoneId, Integer version) {
+        evictZone(zoneId);
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.publish(ZONE, zoneId, zoneId, version);
+        }
+    }
+
+    private void evictZone(String zoneId) {
+        resolvedZones.invalidateAll();
+        if (IdentityZone.getUaaZoneId().equals(zoneId)) {
+            IdentityZoneHolder.invalidateUaaZone();
+        }
     }
 
     @Override
@@ -140,6 +241,18 @@ public class JdbcIdentityZoneProvisioning implements IdentityZoneProvisioning, S
         return logger;
     }
 
+    private static final class ResolvedZone {
+        private final IdentityZone zone;
+        private final String fingerprint;
+        private final long validatedAt;
+
+        private ResolvedZone(IdentityZone zone, String fingerprint, long validatedAt) {
+            this.zone = zone;
+            this.fingerprint = fingerprint;
+            this.validatedAt = validatedAt;
+        }
+    }
+
     private static final class IdentityZoneRowMapper implements RowMapper<IdentityZone> {
         @Override
         public IdentityZone mapRow(ResultSet rs, int rowNum) throws SQLException {
@@ -72,4 +72,11 @@ public abstract class MultitenantClientServices implements
     public final ClientDetails loadClientByClientId(String clientId) throws ClientRegistrationException {
         return loadClientByClientId(clientId, identityZoneManager.getCurrentIdentityZoneId());
     }
+
+    /**
+     * To be called after changing a client in the database other than through
+     * this service, so that no stale copy of it is served from a cache.
+     */
+    public void clientChanged(String clientId, String zoneId) {
+    }
 }
@@ -1,7 +1,10 @@
 package org.cloudfoundry.identity.uaa.zone;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.cloudfoundry.identity.uaa.audit.event.SystemDeletable;
 import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus;
 import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
 import org.cloudfoundry.identity.uaa.resources.ResourceMonitor;
 import org.cloudfoundry.identity.uaa.security.ContextSensitiveOAuth2SecurityExpressionMethods;
@@ -9,7 +12,9 @@ import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -17,6 +22,8 @@ import org.springframework.dao.InvalidDataAccessResourceUsageException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -40,9 +47,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Collections.emptySet;
+import static org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus.EntityType.CLIENT;
 import static org.cloudfoundry.identity.uaa.oauth.client.ClientConstants.REQUIRED_USER_GROUPS;
 import static org.springframework.util.StringUtils.collectionToCommaDelimitedString;
 import static org.springframework.util.StringUtils.commaDelimitedListToSet;
@@ -51,6 +63,10 @@ import static org.springframework.util.StringUtils.commaDelimitedListToSet;
  * A copy of JdbcClientDetailsService but with IdentityZone awareness
  */
 @Component("jdbcClientDetailsService")
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=ClientDetailsCache",
+        description = "UAA Client Details Cache Metrics"
+)
 public class MultitenantJdbcClientDetailsService extends MultitenantClientServices implements
         ResourceMonitor<ClientDetails>,
         SystemDeletable {
@@ -104,19 +120,82 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
 
     private JdbcListFactory listFactory;
 
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private final Cache<ClientKey, ClientDetails> clientCache;
+
+    // bumped on every eviction, so a load racing with a change is not cached
+    private final AtomicLong cacheVersion = new AtomicLong();
+
+    private final Map<String, ZoneCacheStatistics> zoneCacheStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a service without a client details cache.
+     */
     public MultitenantJdbcClientDetailsService(
             final JdbcTemplate jdbcTemplate,
             final IdentityZoneManager identityZoneManager,
-            final @Qualifier("cachingPasswordEncoder") PasswordEncoder passwordEncoder) {
+            final PasswordEncoder passwordEncoder) {
+        this(jdbcTemplate, identityZoneManager, passwordEncoder, 0, 60);
+    }
+
+    @Autowired
+    public MultitenantJdbcClientDetailsService(
+            final JdbcTemplate jdbcTemplate,
+            final IdentityZoneManager identityZoneManager,
+            final @Qualifier("cachingPasswordEncoder") PasswordEncoder passwordEncoder,
+            final @Value("${clients.cache.maxEntries:10000}") int cacheMaxEntries,
+            final @Value("${clients.cache.expirationSeconds:60}") int cacheExpirationSeconds) {
         super(identityZoneManager);
         Assert.notNull(jdbcTemplate, "JDbcTemplate required");
+        if (cacheMaxEntries < 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"clients.cache.maxEntries\" value (got %d). Should not be negative.", cacheMaxEntries));
+        }
+        if (cacheExpirationSeconds <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid \"clients.cache.expirationSeconds\" value (got %d). Should be positive number.", cacheExpirationSeconds));
+        }
         this.jdbcTemplate = jdbcTemplate;
         this.listFactory = new DefaultJdbcListFactory(new NamedParameterJdbcTemplate(jdbcTemplate));
         this.passwordEncoder = passwordEncoder;
+        this.clientCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfterWrite(cacheExpirationSeconds, TimeUnit.SECONDS)
+                .build();
     }
 
+    @Autowired(required = false)
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        cacheInvalidationBus.register(CLIENT, (zoneId, id) -> evictClient(id, zoneId));
+    }
+
+    /**
+     * Serves clients from a bounded cache. Changes made through this instance
+     * evict the client straight away and other nodes evict it when the change
+     * reaches them through the {@link CacheInvalidationBus}. Every caller gets
+     * its own copy of the cached details, though values inside the additional
+     * information are shared.
+     */
     @Override
     public ClientDetails loadClientByClientId(String clientId, String zoneId) throws InvalidClientException {
+        ClientKey key = new ClientKey(zoneId, clientId);
+        ZoneCacheStatistics statistics = zoneCacheStatistics.computeIfAbsent(String.valueOf(zoneId), z -> new ZoneCacheStatistics());
+        ClientDetails cached = clientCache.getIfPresent(key);
+        if (cached != null) {
+            statistics.hits.incrementAndGet();
+            return copyOf(cached);
+        }
+
+        statistics.misses.incrementAndGet();
+        long version = cacheVersion.get();
+        ClientDetails details = queryClientByClientId(clientId, zoneId);
+        if (cacheVersion.get() == version) {
+            clientCache.put(key, details);
+        }
+        return copyOf(details);
+    }
+
+    private ClientDetails queryClientByClientId(String clientId, String zoneId) throws InvalidClientException {
         ClientDetails details;
         try {
             details = jdbcTemplate.queryForObject(selectClientDetailsSql, new ClientDetailsRowMapper(), clientId, zoneId);
@@ -134,6 +213,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
         } catch (DuplicateKeyException e) {
             throw new ClientAlreadyExistsException("Client already exists: " + clientDetails.getClientId(), e);
         }
+        clientChanged(clientDetails.getClientId(), zoneId);
     }
 
     @Override
@@ -142,6 +222,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
         if (count != 1) {
             throw new NoSuchClientException("No client found with id = " + clientDetails.getClientId() + " in identity zone id=" + zoneId);
         }
+        clientChanged(clientDetails.getClientId(), zoneId);
     }
 
     @Override
@@ -150,6 +231,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
         if (count != 1) {
             throw new NoSuchClientException("No client found with id = " + clientId);
         }
+        clientChanged(clientId, zoneId);
     }
 
     @Override
@@ -227,7 +309,10 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
 
     @Override
     public int deleteByIdentityZone(String zoneId) {
-        return jdbcTemplate.update(DELETE_CLIENTS_BY_ZONE, zoneId);
+        int deleted = jdbcTemplate.update(DELETE_CLIENTS_BY_ZONE, zoneId);
+        clientChanged(null, zoneId);
+        zoneCacheStatistics.remove(zoneId);
+        return deleted;
     }
 
     @Override
@@ -236,6 +321,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
         if (count == 0) {
             throw new NoSuchClientException("No client found with id = " + clientId);
         }
+        clientChanged(clientId, zoneId);
         return count;
     }
 
@@ -246,7 +332,7 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
 
     @Override
     public void addClientSecret(String clientId, String newSecret, String zoneId) throws NoSuchClientException {
-        ClientDetails clientDetails = loadClientByClientId(clientId, zoneId);
+        ClientDetails clientDetails = queryClientByClientId(clientId, zoneId);
         String encodedNewSecret = passwordEncoder.encode(newSecret);
         StringBuilder newSecretBuilder = new StringBuilder()
                 .append(clientDetails.getClientSecret() == null ? "" : clientDetails.getClientSecret() + " ")
@@ -255,16 +341,93 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
         if (count != 1) {
             throw new NoSuchClientException("No client found with id = " + clientId);
         }
+        clientChanged(clientId, zoneId);
     }
 
     @Override
     public void deleteClientSecret(String clientId, String zoneId) throws NoSuchClientException {
-        ClientDetails clientDetails = loadClientByClientId(clientId, zoneId);
+        ClientDetails clientDetails = queryClientByClientId(clientId, zoneId);
         String clientSecret = clientDetails.getClientSecret().split(" ")[1];
         int count = jdbcTemplate.update(DEFAULT_UPDATE_SECRET_STATEMENT, clientSecret, clientId, zoneId);
         if (count != 1) {
             throw new NoSuchClientException("Unable to update client with " + clientId);
         }
+        clientChanged(clientId, zoneId);
+    }
+
+    @Override
+    public void clientChanged(String clientId, String zoneId) {
+        evictClient(clientId, zoneId);
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.publish(CLIENT, zoneId, clientId, null);
+        }
+    }
+
+    private void evictClient(String clientId, String zoneId) {
+        cacheVersion.incrementAndGet();
+        if (clientId == null) {
+            clientCache.asMap().keySet().removeIf(key -> Objects.equals(key.zoneId, zoneId));
+        } else {
+            clientCache.invalidate(new ClientKey(zoneId, clientId));
+        }
+    }
+
+    private static ClientDetails copyOf(ClientDetails details) {
+        BaseClientDetails copy = new BaseClientDetails(details);
+        copy.setAdditionalInformation(details.getAdditionalInformation());
+        copy.setAutoApproveScopes(((BaseClientDetails) details).getAutoApproveScopes());
+        return copy;
+    }
+
+    @ManagedMetric(displayName = "Client Details Cache Size")
+    public long getCacheSize() {
+        return clientCache.size();
+    }
+
+    @ManagedMetric(displayName = "Client Details Cache Hits and Misses per Zone")
+    public Map<String, String> getCacheStatistics() {
+        Map<String, String> data = new HashMap<>();
+        zoneCacheStatistics.forEach((zoneId, statistics) -> data.put(zoneId, JsonUtils.writeValueAsString(statistics.toMap())));
+        return data;
+    }
+
+    private static final class ClientKey {
+        private final String zoneId;
+        private final String clientId;
+
+        private ClientKey(String zoneId, String clientId) {
+            this.zoneId = zoneId;
+            this.clientId = clientId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) o;
+            return Objects.equals(zoneId, other.zoneId) && Objects.equals(clientId, other.clientId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(zoneId, clientId);
+        }
+    }
+
+    private static final class ZoneCacheStatistics {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        private Map<String, Long> toMap() {
+            Map<String, Long> result = new HashMap<>();
+            result.put("hits", hits.get());
+            result.put("misses", misses.get());
+            return result;
+        }
     }
 
 
@@ -0,0 +1,9 @@
+CREATE TABLE cache_invalidation_log (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 1) PRIMARY KEY,
+  entity_type VARCHAR(64) NOT NULL,
+  identity_zone_id VARCHAR(36) NOT NULL,
+  entity_id VARCHAR(255),
+  entity_version INTEGER,
+  created TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+CREATE INDEX cache_invalidation_log_created ON cache_invalidation_log (created);
@@ -0,0 +1,7 @@
+CREATE TABLE user_import_checkpoint (
+  import_id VARCHAR(255) NOT NULL,
+  identity_zone_id VARCHAR(36) NOT NULL,
+  records_committed BIGINT NOT NULL,
+  last_modified TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (identity_zone_id, import_id)
+) ENGINE=InnoDB ROW_FORMAT=DYNAMIC;
@@ -0,0 +1,4 @@
+-- MySQL compares with case insensitive collations, so plain composite indexes
+-- serve the SCIM "eq" and "sw" filters.
+CREATE INDEX users_zone_username ON users (identity_zone_id, username);
+CREATE INDEX users_zone_email ON users (identity_zone_id, email);
@@ -0,0 +1,9 @@
+CREATE TABLE cache_invalidation_log (
+  id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  entity_type VARCHAR(64) NOT NULL,
+  identity_zone_id VARCHAR(36) NOT NULL,
+  entity_id VARCHAR(255),
+  entity_version INT,
+  created TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+) ENGINE=InnoDB ROW_FORMAT=DYNAMIC;
+CREATE INDEX cache_invalidation_log_created ON cache_invalidation_log (created);
@@ -0,0 +1,18 @@
+-- SCIM filters compare LOWER(column) with an already lower cased value.
+-- text_pattern_ops lets the same index serve "eq" and "sw" (LIKE 'x%').
+CREATE INDEX IF NOT EXISTS users_zone_lower_username ON users (identity_zone_id, LOWER(username) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS users_zone_lower_email ON users (identity_zone_id, LOWER(email) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS groups_zone_lower_displayname ON groups (identity_zone_id, LOWER(displayname) text_pattern_ops);
+
+-- "co" filters (LIKE '%x%') can only use trigram indexes. pg_trgm needs to be
+-- installable by the migration user, so these are skipped when it is not.
+DO $$
+BEGIN
+  CREATE EXTENSION IF NOT EXISTS pg_trgm;
+  CREATE INDEX IF NOT EXISTS users_lower_username_trgm ON users USING gin (LOWER(username) gin_trgm_ops);
+  CREATE INDEX IF NOT EXISTS users_lower_email_trgm ON users USING gin (LOWER(email) gin_trgm_ops);
+  CREATE INDEX IF NOT EXISTS groups_lower_displayname_trgm ON groups USING gin (LOWER(displayname) gin_trgm_ops);
+EXCEPTION WHEN OTHERS THEN
+  RAISE NOTICE 'pg_trgm is not available (%), skipping trigram indexes', SQLERRM;
+END
+$$;
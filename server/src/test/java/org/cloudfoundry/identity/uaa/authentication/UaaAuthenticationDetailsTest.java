@@ -1,6 +1,7 @@
 package org.cloudfoundry.identity.uaa.authentication;
 
 import org.cloudfoundry.identity.uaa.extensions.PollutionPreventionExtension;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -56,6 +57,25 @@ class UaaAuthenticationDetailsTest {
         assertEquals("value", details.getParameterMap().get("key")[0]);
     }
 
+    @Test
+    void testParameterMapIsEmptyForDetailsReadFromJson() {
+        UaaAuthenticationDetails details = JsonUtils.readValue(
+                "{\"addNew\":false,\"clientId\":\"clientid\",\"origin\":\"origin\",\"sessionId\":\"1234\"}",
+                UaaAuthenticationDetails.class);
+
+        assertTrue(details.getParameterMap().isEmpty());
+    }
+
+    @Test
+    void testParameterMapIsACopy() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addParameter("key", "value");
+        UaaAuthenticationDetails details = new UaaAuthenticationDetails(request, null);
+
+        details.getParameterMap().remove("key");
+        assertEquals("value", details.getParameterMap().get("key")[0]);
+    }
+
     @Test
     void testDoesNotSaveUsernamePasswordRequestParameters() {
         MockHttpServletRequest request = new MockHttpServletRequest();
@@ -0,0 +1,114 @@
+package org.cloudfoundry.identity.uaa.cache;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus.EntityType.CLIENT;
+import static org.cloudfoundry.identity.uaa.cache.CacheInvalidationBus.EntityType.ZONE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@WithDatabaseContext
+class CacheInvalidationBusTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LimitSqlAdapter limitSqlAdapter;
+
+    private TimeService timeService;
+    private CacheInvalidationBus writer;
+    private CacheInvalidationBus reader;
+    private List<String> invalidated;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from cache_invalidation_log");
+        timeService = mock(TimeService.class);
+        when(timeService.getCurrentTimeMillis()).thenAnswer(i -> System.currentTimeMillis());
+        writer = new CacheInvalidationBus(jdbcTemplate, limitSqlAdapter, timeService, 1000, 3600);
+        reader = new CacheInvalidationBus(jdbcTemplate, limitSqlAdapter, timeService, 1000, 3600);
+        invalidated = new ArrayList<>();
+        reader.register(ZONE, (zoneId, id) -> invalidated.add(zoneId + "/" + id));
+        reader.poll();
+    }
+
+    @Test
+    void changesPublishedByOneNodeAreAppliedByAnother() {
+        writer.publish(ZONE, "zone1", "zone1", 2);
+        writer.publish(CLIENT, "zone1", "client1", null);
+        writer.publish(ZONE, "zone2", null, null);
+
+        reader.poll();
+        assertEquals(Arrays.asList("zone1/zone1", "zone2/null"), invalidated);
+        assertEquals(3, reader.getAppliedEvents());
+        assertEquals(3, writer.getPublishedEvents());
+
+        reader.poll();
+        assertEquals(2, invalidated.size());
+    }
+
+    @Test
+    void changesCommittedOutOfOrderAreStillApplied() {
+        writer.publish(ZONE, "zone0", "zone0", 1);
+        reader.poll();
+        invalidated.clear();
+
+        writer.publish(ZONE, "zone1", "zone1", 1);
+        writer.publish(ZONE, "zone2", "zone2", 1);
+        long lateId = jdbcTemplate.queryForObject("select min(id) from cache_invalidation_log where identity_zone_id = ?", Long.class, "zone1");
+        jdbcTemplate.update("delete from cache_invalidation_log where id = ?", lateId);
+
+        reader.poll();
+        assertEquals(Arrays.asList("zone2/zone2"), invalidated);
+
+        jdbcTemplate.update(CacheInvalidationBus.INSERT_SQL.replace("(entity_type", "(id, entity_type").replace("values (?", "values (?,?"),
+                lateId, ZONE.name(), "zone1", "zone1", 1, new Timestamp(System.currentTimeMillis()));
+        reader.poll();
+        assertEquals(Arrays.asList("zone2/zone2", "zone1/zone1"), invalidated);
+    }
+
+    @Test
+    void compactRemovesEntriesOlderThanRetention() {
+        writer.publish(ZONE, "zone1", "zone1", 1);
+        jdbcTemplate.update("update cache_invalidation_log set created = ?", new Timestamp(System.currentTimeMillis() - 7200_000));
+        writer.publish(ZONE, "zone2", "zone2", 1);
+
+        writer.compact();
+        assertEquals(1, (int) jdbcTemplate.queryForObject("select count(*) from cache_invalidation_log", Integer.class));
+    }
+
+    @Test
+    void failingListenerDoesNotStopOtherListeners() {
+        reader.register(ZONE, (zoneId, id) -> {
+            throw new IllegalStateException("boom");
+        });
+        List<String> second = new ArrayList<>();
+        reader.register(ZONE, (zoneId, id) -> second.add(id));
+
+        writer.publish(ZONE, "zone1", "zone1", 1);
+        reader.poll();
+        assertEquals(Arrays.asList("zone1"), second);
+        assertTrue(reader.getLagMillis() >= 0);
+    }
+
+    @Test
+    void invalidBatchSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CacheInvalidationBus(jdbcTemplate, limitSqlAdapter, timeService, 0, 3600));
+    }
+}
@@ -527,6 +527,30 @@ class ClientAdminBootstrapTests {
         );
     }
 
+    @Test
+    void bcryptPrefixIsVisibleThroughTheClientCache() {
+        IdentityZoneManager identityZoneManager = mock(IdentityZoneManager.class);
+        when(identityZoneManager.getCurrentIdentityZoneId()).thenReturn(IdentityZone.getUaaZoneId());
+        MultitenantJdbcClientDetailsService cachingService = new MultitenantJdbcClientDetailsService(jdbcTemplate, identityZoneManager, passwordEncoder, 100, 60);
+        String clientId = "bcrypt-" + randomValueStringGenerator.generate().toLowerCase();
+        createClientInDb(clientId, cachingService);
+        Map<String, Object> map = createClientMap(clientId);
+        map.put("use-bcrypt-prefix", "true");
+        clients.put(clientId, map);
+
+        new ClientAdminBootstrap(
+                passwordEncoder,
+                cachingService,
+                new JdbcClientMetadataProvisioning(cachingService, jdbcTemplate),
+                true,
+                clients,
+                Collections.emptySet(),
+                Collections.emptySet(),
+                jdbcTemplate).afterPropertiesSet();
+
+        assertTrue(cachingService.loadClientByClientId(clientId, IdentityZone.getUaaZoneId()).getClientSecret().startsWith("{bcrypt}"));
+    }
+
     private static ClientDetails doSimpleTest(
             final Map<String, Object> map,
             final ClientAdminBootstrap clientAdminBootstrap,
@@ -65,6 +65,7 @@ import static org.junit.Assert.fail;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
@@ -456,11 +457,13 @@ class ClientAdminEndpointsTests {
 
     @Test
     void testFindClientDetails() throws Exception {
-        Mockito.when(clientDetailsService.query("filter", "sortBy", true, IdentityZoneHolder.get().getId())).thenReturn(
+        Mockito.when(clientDetailsService.count("filter", IdentityZoneHolder.get().getId())).thenReturn(1);
+        Mockito.when(clientDetailsService.query(eq("filter"), eq("sortBy"), eq(true), eq(IdentityZoneHolder.get().getId()), eq(1), eq(100), any())).thenReturn(
                 Collections.singletonList(detail));
         SearchResults<?> result = endpoints.listClientDetails("client_id", "filter", "sortBy", "ascending", 1, 100);
         assertEquals(1, result.getResources().size());
-        verify(clientDetailsService).query("filter", "sortBy", true, IdentityZoneHolder.get().getId());
+        assertEquals(1, result.getTotalResults());
+        verify(clientDetailsService).query("filter", "sortBy", true, IdentityZoneHolder.get().getId(), 1, 100, Collections.singleton("client_id"));
 
         result = endpoints.listClientDetails("", "filter", "sortBy", "ascending", 1, 100);
         assertEquals(1, result.getResources().size());
@@ -468,13 +471,14 @@ class ClientAdminEndpointsTests {
 
     @Test
     void testFindClientDetailsInvalidFilter() {
-        Mockito.when(clientDetailsService.query("filter", "sortBy", true, IdentityZoneHolder.get().getId())).thenThrow(new IllegalArgumentException());
+        Mockito.when(clientDetailsService.query(eq("filter"), eq("sortBy"), eq(true), eq(IdentityZoneHolder.get().getId()), anyInt(), anyInt(), any())).thenThrow(new IllegalArgumentException());
         assertThrows(UaaException.class, () -> endpoints.listClientDetails("client_id", "filter", "sortBy", "ascending", 1, 100));
     }
 
     @Test
     void testFindClientDetails_Test_Attribute_Filter() throws Exception {
-        when(clientDetailsService.query(anyString(), anyString(), anyBoolean(), eq(IdentityZoneHolder.get().getId()))).thenReturn(Arrays.asList(inputs));
+        when(clientDetailsService.count(anyString(), eq(IdentityZoneHolder.get().getId()))).thenReturn(inputs.length);
+        when(clientDetailsService.query(anyString(), anyString(), anyBoolean(), eq(IdentityZoneHolder.get().getId()), anyInt(), anyInt(), any())).thenReturn(Arrays.asList(inputs));
         for (String attribute : Arrays.asList("client_id", "resource_ids", "authorized_grant_types", "redirect_uri", "access_token_validity", "refresh_token_validity", "autoapprove", "additionalinformation")) {
             SearchResults<Map<String, Object>> result = (SearchResults<Map<String, Object>>) endpoints.listClientDetails(attribute, "client_id pr", "sortBy", "ascending", 1, 100);
             validateAttributeResults(result, Collections.singletonList(attribute));
@@ -15,11 +15,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.provider.ClientDetails;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.cloudfoundry.identity.uaa.oauth.token.TokenConstants.GRANT_TYPE_AUTHORIZATION_CODE;
 import static org.cloudfoundry.identity.uaa.util.AssertThrowsWithMessage.assertThrowsWithMessageThat;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @WithDatabaseContext
 @ExtendWith(PollutionPreventionExtension.class)
@@ -128,6 +135,28 @@ class JdbcQueryableClientDetailsServiceTests {
         );
     }
 
+    @Test
+    void queryPageAppliesOffsetAndLimitInDatabase() {
+        addClients(jdbcTemplate, "zoneOneId");
+        assertEquals(4, jdbcQueryableClientDetailsService.count("client_id pr", "zoneOneId"));
+
+        List<ClientDetails> page = jdbcQueryableClientDetailsService.query("client_id pr", "client_id", true, "zoneOneId", 2, 2, null);
+        assertEquals(Arrays.asList("app", "cf"), page.stream().map(ClientDetails::getClientId).collect(Collectors.toList()));
+        assertEquals(0, jdbcQueryableClientDetailsService.query("client_id pr", "client_id", true, "zoneOneId", 5, 2, null).size());
+    }
+
+    @Test
+    void queryPageSkipsAdditionalInformationWhenNotRequested() {
+        addClients(jdbcTemplate, "zoneOneId");
+        jdbcTemplate.update("update oauth_client_details set additional_information = ? where client_id = ?", "{\"name\":\"Admin\"}", "admin");
+
+        ClientDetails projected = jdbcQueryableClientDetailsService.query("client_id eq \"admin\"", "client_id", true, "zoneOneId", 1, 1, Collections.singleton("scope")).get(0);
+        assertNull(projected.getAdditionalInformation().get("name"));
+
+        ClientDetails full = jdbcQueryableClientDetailsService.query("client_id eq \"admin\"", "client_id", true, "zoneOneId", 1, 1, Collections.singleton("name")).get(0);
+        assertEquals("Admin", full.getAdditionalInformation().get("name"));
+    }
+
     private static void verifyScimEquality(
             final JdbcTemplate jdbcTemplate,
             final JdbcQueryableClientDetailsService jdbcQueryableClientDetailsService,
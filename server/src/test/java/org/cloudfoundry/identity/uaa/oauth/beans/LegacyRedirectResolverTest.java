@@ -719,6 +719,33 @@ class LegacyRedirectResolverTest {
             assertThat(exception.getMessage(), containsString(invalidRedirectUri));
         }
 
+        @Test
+        void matchesSubdomainAmongManyRegisteredUris() {
+            List<String> redirectUris = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                redirectUris.add("https://app" + i + ".example.org/callback");
+            }
+            redirectUris.add("https://example.com/");
+            ClientDetails client = createClient("many", redirectUris.toArray(new String[0]));
+
+            assertThat(resolver.resolveRedirect("https://app42.example.org/callback", client), is("https://app42.example.org/callback"));
+            assertThat(resolver.resolveRedirect("https://an.example.com/path", client), is("https://an.example.com/path"));
+            assertThrows(RedirectMismatchException.class,
+                    () -> resolver.resolveRedirect("https://example.org/callback", client));
+        }
+
+        @Test
+        void usesUpdatedRedirectUris() {
+            BaseClientDetails client = (BaseClientDetails) createClient("updated", "https://before.example.com/callback");
+            assertThat(resolver.resolveRedirect("https://before.example.com/callback", client), is("https://before.example.com/callback"));
+
+            client.setRegisteredRedirectUri(Collections.singleton("https://after.example.com/callback"));
+
+            assertThrows(RedirectMismatchException.class,
+                    () -> resolver.resolveRedirect("https://before.example.com/callback", client));
+            assertThat(resolver.resolveRedirect("https://after.example.com/callback", client), is("https://after.example.com/callback"));
+        }
+
         private void mockRegisteredRedirectUri(String allowedRedirectUri) {
             when(mockClientDetails.getRegisteredRedirectUri()).thenReturn(Collections.singleton(allowedRedirectUri));
         }
@@ -0,0 +1,126 @@
+package org.cloudfoundry.identity.uaa.provider;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.MultitenancyFixture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@WithDatabaseContext
+class CachingIdentityProviderProvisioningTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcIdentityProviderProvisioning jdbcProvisioning;
+    private CachingIdentityProviderProvisioning cachingProvisioning;
+    private String zoneId;
+    private String origin;
+
+    @BeforeEach
+    void setUp() {
+        RandomValueStringGenerator generator = new RandomValueStringGenerator();
+        jdbcProvisioning = new JdbcIdentityProviderProvisioning(jdbcTemplate);
+        cachingProvisioning = new CachingIdentityProviderProvisioning(jdbcProvisioning, 10, 60);
+        zoneId = "zone-" + generator.generate();
+        origin = "origin-" + generator.generate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from identity_provider where identity_zone_id = ?", zoneId);
+    }
+
+    @Test
+    void providersAreServedFromTheSnapshotUntilTheyAreWritten() {
+        IdentityProvider created = jdbcProvisioning.create(MultitenancyFixture.identityProvider(origin, zoneId), zoneId);
+
+        assertThat(cachingProvisioning.retrieveByOrigin(origin, zoneId).getName(), is(created.getName()));
+        jdbcTemplate.update("update identity_provider set name = ? where id = ?", "changed directly", created.getId());
+        assertThat(cachingProvisioning.retrieveByOrigin(origin, zoneId).getName(), is(created.getName()));
+        assertThat(cachingProvisioning.getCacheHits(), is(1L));
+        assertThat(cachingProvisioning.getCacheMisses(), is(1L));
+
+        created.setName("updated");
+        created.setActive(false);
+        jdbcProvisioning.update(created, zoneId);
+
+        assertThrows(EmptyResultDataAccessException.class, () -> cachingProvisioning.retrieveByOrigin(origin, zoneId));
+        assertThat(cachingProvisioning.retrieveByOriginIgnoreActiveFlag(origin, zoneId).getName(), is("updated"));
+        assertThat(cachingProvisioning.retrieveActive(zoneId).size(), is(0));
+        assertThat(cachingProvisioning.retrieveAll(false, zoneId).size(), is(1));
+    }
+
+    @Test
+    void callersCannotChangeTheSnapshot() throws Exception {
+        IdentityProvider<OIDCIdentityProviderDefinition> provider = MultitenancyFixture.identityProvider(origin, zoneId);
+        OIDCIdentityProviderDefinition definition = new OIDCIdentityProviderDefinition();
+        definition.setDiscoveryUrl(new URL("https://idp.example.com/.well-known/openid-configuration"));
+        provider.setConfig(definition);
+        jdbcProvisioning.create(provider, zoneId);
+
+        IdentityProvider<OIDCIdentityProviderDefinition> first = cachingProvisioning.retrieveByOrigin(origin, zoneId);
+        first.setName("renamed");
+        first.getConfig().setAuthUrl(new URL("https://idp.example.com/authorize"));
+
+        IdentityProvider<OIDCIdentityProviderDefinition> second = cachingProvisioning.retrieveByOrigin(origin, zoneId);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getName(), not("renamed"));
+        assertThat(second.getConfig().getAuthUrl(), nullValue());
+    }
+
+    @Test
+    void callersCannotChangeNonOidcDefinitions() {
+        IdentityProvider<UaaIdentityProviderDefinition> provider = MultitenancyFixture.identityProvider(origin, zoneId);
+        provider.setType(OriginKeys.UAA);
+        UaaIdentityProviderDefinition definition = new UaaIdentityProviderDefinition(new PasswordPolicy(8, 64, 0, 0, 0, 0, 0), null);
+        definition.setEmailDomain(new ArrayList<>(Collections.singletonList("example.com")));
+        provider.setConfig(definition);
+        jdbcProvisioning.create(provider, zoneId);
+
+        IdentityProvider<UaaIdentityProviderDefinition> first = cachingProvisioning.retrieveByOrigin(origin, zoneId);
+        first.getConfig().getEmailDomain().add("evil.com");
+
+        IdentityProvider<UaaIdentityProviderDefinition> second = cachingProvisioning.retrieveAll(true, zoneId).get(0);
+        assertThat(second.getConfig(), not(sameInstance(first.getConfig())));
+        assertThat(second.getConfig().getEmailDomain(), contains("example.com"));
+    }
+
+    @Test
+    void deletingTheZoneDropsItsSnapshot() {
+        jdbcProvisioning.create(MultitenancyFixture.identityProvider(origin, zoneId), zoneId);
+        cachingProvisioning.retrieveActive(zoneId);
+        jdbcTemplate.update("delete from identity_provider where identity_zone_id = ?", zoneId);
+
+        IdentityZone zone = MultitenancyFixture.identityZone(zoneId, zoneId);
+        cachingProvisioning.onApplicationEvent(new EntityDeletedEvent<>(zone, null, zoneId));
+
+        assertThat(cachingProvisioning.retrieveActive(zoneId).size(), is(0));
+        assertThat(cachingProvisioning.getCacheMisses(), is(2L));
+    }
+
+    @Test
+    void invalidExpirationIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingIdentityProviderProvisioning(jdbcProvisioning, 10, 0));
+    }
+}
@@ -0,0 +1,147 @@
+package org.cloudfoundry.identity.uaa.provider.saml;
+
+import org.cloudfoundry.identity.uaa.cache.UrlContentCache;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+class FixedHttpMetaDataProviderTests {
+
+    private static final String URL = "https://idp.example.com/metadata";
+    private static final byte[] FIRST = metadata("first");
+    private static final byte[] SECOND = metadata("second");
+
+    private RestTemplate trustingRestTemplate;
+    private RestTemplate nonTrustingRestTemplate;
+    private UrlContentCache cache;
+    private TimeService timeService;
+    private long now;
+    private FixedHttpMetaDataProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        trustingRestTemplate = mock(RestTemplate.class);
+        nonTrustingRestTemplate = mock(RestTemplate.class);
+        cache = mock(UrlContentCache.class);
+        timeService = mock(TimeService.class);
+        now = 1_000_000L;
+        when(timeService.getCurrentTimeMillis()).thenAnswer(invocation -> now);
+
+        provider = new FixedHttpMetaDataProvider(trustingRestTemplate, nonTrustingRestTemplate, cache, timeService, 60_000, Runnable::run, 3600);
+        when(cache.getUrlContent(URL, nonTrustingRestTemplate)).thenReturn(FIRST);
+    }
+
+    @Test
+    void firstFetchGoesThroughTheCacheAndLaterOnesAreServedFromMemory() throws Exception {
+        assertThat(provider.fetchMetadata(URL, false), is(FIRST));
+        assertThat(provider.fetchMetadata(URL, false), is(FIRST));
+
+        verify(cache, times(1)).getUrlContent(URL, nonTrustingRestTemplate);
+        assertThat(provider.getTrackedCount(), is(1));
+        assertThat(provider.getMetadataAgeSeconds().get(URL), is(0L));
+    }
+
+    @Test
+    void refreshReplacesDocumentsThatAreDue() throws Exception {
+        provider.fetchMetadata(URL, false);
+        when(nonTrustingRestTemplate.getForObject(new URI(URL), byte[].class)).thenReturn(SECOND);
+
+        provider.refresh();
+        verifyZeroInteractions(nonTrustingRestTemplate);
+
+        now += 60_000;
+        provider.refresh();
+
+        assertThat(provider.fetchMetadata(URL, false), is(SECOND));
+        assertThat(provider.getRefreshCount(), is(1L));
+        verifyZeroInteractions(trustingRestTemplate);
+    }
+
+    @Test
+    void failedOrInvalidRefreshKeepsTheLastGoodDocument() throws Exception {
+        provider.fetchMetadata(URL, false);
+        when(nonTrustingRestTemplate.getForObject(new URI(URL), byte[].class))
+                .thenThrow(new RestClientException("unreachable"))
+                .thenReturn("<html/>".getBytes(StandardCharsets.UTF_8));
+
+        now += 60_000;
+        provider.refresh();
+        now += 60_000;
+        provider.refresh();
+
+        assertThat(provider.fetchMetadata(URL, false), is(FIRST));
+        assertThat(provider.getRefreshFailureCount(), is(2L));
+        assertThat(provider.getFetchFailures().get(URL), is(2L));
+    }
+
+    @Test
+    void refreshDoesNotWaitForTheFetchesAndSkipsUrlsStillBeingRefreshed() throws Exception {
+        List<Runnable> submitted = new ArrayList<>();
+        provider = new FixedHttpMetaDataProvider(trustingRestTemplate, nonTrustingRestTemplate, cache, timeService, 60_000, submitted::add, 3600);
+        provider.fetchMetadata(URL, false);
+        when(nonTrustingRestTemplate.getForObject(new URI(URL), byte[].class)).thenReturn(SECOND);
+
+        now += 60_000;
+        provider.refresh();
+        provider.refresh();
+
+        assertThat(submitted.size(), is(1));
+        verifyZeroInteractions(nonTrustingRestTemplate);
+
+        submitted.get(0).run();
+        assertThat(provider.fetchMetadata(URL, false), is(SECOND));
+
+        now += 60_000;
+        provider.refresh();
+        assertThat(submitted.size(), is(2));
+    }
+
+    @Test
+    void invalidParallelismIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new FixedHttpMetaDataProvider(trustingRestTemplate, nonTrustingRestTemplate, cache, timeService, 60_000, 0, 3600));
+    }
+
+    @Test
+    void firstFetchFailureIsReported() {
+        when(cache.getUrlContent(URL, trustingRestTemplate)).thenThrow(new RestClientException("unreachable"));
+
+        assertThrows(RestClientException.class, () -> provider.fetchMetadata(URL, true));
+        assertThat(provider.getFetchFailures().get(URL + " (skipSslValidation)"), is(1L));
+    }
+
+    @Test
+    void documentsNobodyAsksForAreNoLongerRefreshed() throws Exception {
+        provider.fetchMetadata(URL, false);
+
+        now += 3600_001;
+        provider.refresh();
+
+        assertThat(provider.getTrackedCount(), is(0));
+        verify(nonTrustingRestTemplate, never()).getForObject(any(URI.class), eq(byte[].class));
+    }
+
+    private static byte[] metadata(String id) {
+        return ("<md:EntityDescriptor xmlns:md=\"urn:oasis:names:tc:SAML:2.0:metadata\" entityID=\"" + id + "\"/>")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+package org.cloudfoundry.identity.uaa.provider.saml;
+
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+import org.cloudfoundry.identity.uaa.provider.SamlIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.MultitenancyFixture;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensaml.DefaultBootstrap;
+import org.springframework.security.saml.metadata.ExtendedMetadataDelegate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NonSnarlMetadataManagerTests {
+
+    private SamlIdentityProviderConfigurator configurator;
+    private NonSnarlMetadataManager metadataManager;
+    private IdentityZone zone;
+    private IdentityProvider<SamlIdentityProviderDefinition> provider;
+
+    @BeforeAll
+    static void initializeOpenSAML() throws Exception {
+        if (!org.apache.xml.security.Init.isInitialized()) {
+            DefaultBootstrap.bootstrap();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        configurator = mock(SamlIdentityProviderConfigurator.class);
+        when(configurator.getExtendedMetadataDelegate(any())).then(invocation -> mock(ExtendedMetadataDelegate.class));
+        metadataManager = new NonSnarlMetadataManager(configurator);
+
+        zone = MultitenancyFixture.identityZone("zone-id", "zone-subdomain");
+        provider = MultitenancyFixture.identityProvider("saml-idp", zone.getId());
+        provider.setId("provider-id");
+        provider.setType(OriginKeys.SAML);
+        provider.setConfig(new SamlIdentityProviderDefinition()
+                .setMetaDataLocation(String.format(SamlIdentityProviderConfiguratorTests.xmlWithoutID, "http://saml.idp.example.com"))
+                .setIdpEntityAlias("saml-idp"));
+    }
+
+    @Test
+    void delegateIsReusedWhileNothingChanges() throws Exception {
+        ExtendedMetadataDelegate first = metadataManager.getInitializedDelegate(zone, provider, provider.getConfig());
+        ExtendedMetadataDelegate second = metadataManager.getInitializedDelegate(zone, provider, provider.getConfig());
+
+        assertThat(second, sameInstance(first));
+        verify(configurator, times(1)).getExtendedMetadataDelegate(any());
+        verify(first, times(1)).initialize();
+    }
+
+    @Test
+    void delegateIsRebuiltWhenTheProviderChanges() throws Exception {
+        ExtendedMetadataDelegate first = metadataManager.getInitializedDelegate(zone, provider, provider.getConfig());
+        provider.setVersion(provider.getVersion() + 1);
+        ExtendedMetadataDelegate second = metadataManager.getInitializedDelegate(zone, provider, provider.getConfig());
+
+        assertThat(second, not(sameInstance(first)));
+        verify(configurator, times(2)).getExtendedMetadataDelegate(any());
+        verify(second, times(1)).initialize();
+    }
+
+    @Test
+    void delegateIsRebuiltWhenTheZoneChanges() throws Exception {
+        ExtendedMetadataDelegate first = metadataManager.getInitializedDelegate(zone, provider, provider.getConfig());
+        zone.setVersion(zone.getVersion() + 1);
+        ExtendedMetadataDelegate second = metadataManager.getInitializedDelegate(zone, provider, provider.getConfig());
+
+        assertThat(second, not(sameInstance(first)));
+    }
+
+    @Test
+    void zonesDoNotShareDelegates() throws Exception {
+        IdentityZone other = MultitenancyFixture.identityZone("other-zone-id", "other-zone-subdomain");
+
+        ExtendedMetadataDelegate first = metadataManager.getInitializedDelegate(zone, provider, provider.getConfig());
+        ExtendedMetadataDelegate second = metadataManager.getInitializedDelegate(other, provider, provider.getConfig());
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(metadataManager.getInitializedDelegate(zone, provider, provider.getConfig()), sameInstance(first));
+        assertThat(metadataManager.getInitializedDelegate(other, provider, provider.getConfig()), sameInstance(second));
+    }
+}
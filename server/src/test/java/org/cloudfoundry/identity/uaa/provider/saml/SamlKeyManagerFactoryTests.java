@@ -10,6 +10,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.saml.key.JKSKeyManager;
+import org.springframework.security.saml.key.KeyManager;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.security.KeyStore;
@@ -262,4 +263,19 @@ public class SamlKeyManagerFactoryTests {
         assertNotNull(manager1.getDefaultCredential().getPublicKey());
         assertNull(manager1.getDefaultCredential().getPrivateKey());
     }
+
+    @Test
+    void keyManagerIsReusedUntilTheKeysChange() {
+        KeyManager first = samlKeyManagerFactory.getKeyManager(config);
+        assertSame(first, samlKeyManagerFactory.getKeyManager(config));
+        assertSame(first.getDefaultCredential(), first.getDefaultCredential());
+
+        config.setActiveKeyId("key-1");
+        KeyManager activeKeyChanged = samlKeyManagerFactory.getKeyManager(config);
+        assertNotSame(first, activeKeyChanged);
+        assertEquals("key-1", activeKeyChanged.getDefaultCredentialName());
+
+        config.addKey("key-2", new SamlKey(key1, passphrase1, certificate1));
+        assertNotSame(activeKeyChanged, samlKeyManagerFactory.getKeyManager(config));
+    }
 }
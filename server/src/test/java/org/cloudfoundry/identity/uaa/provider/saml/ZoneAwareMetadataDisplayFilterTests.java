@@ -0,0 +1,104 @@
+package org.cloudfoundry.identity.uaa.provider.saml;
+
+import org.cloudfoundry.identity.uaa.extensions.PollutionPreventionExtension;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.MultitenancyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.saml.context.SAMLContextProvider;
+import org.springframework.security.saml.context.SAMLMessageContext;
+import org.springframework.security.saml.metadata.MetadataGenerator;
+
+import java.io.PrintWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(PollutionPreventionExtension.class)
+class ZoneAwareMetadataDisplayFilterTests {
+
+    private IdentityZone zone;
+    private int generated;
+    private ZoneAwareMetadataDisplayFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        zone = MultitenancyFixture.identityZone("zone-id", "zone");
+        IdentityZoneHolder.set(zone);
+
+        SAMLMessageContext context = new SAMLMessageContext();
+        context.setLocalEntityId("entity-id");
+        SAMLContextProvider contextProvider = mock(SAMLContextProvider.class);
+        when(contextProvider.getLocalEntity(any(), any())).thenReturn(context);
+
+        filter = new ZoneAwareMetadataDisplayFilter(mock(MetadataGenerator.class)) {
+            @Override
+            protected void displayMetadata(String spEntityName, PrintWriter writer) {
+                writer.print("<md:EntityDescriptor entityID=\"" + spEntityName + "\" version=\"" + ++generated + "\"/>");
+            }
+        };
+        filter.setContextProvider(contextProvider);
+    }
+
+    @Test
+    void metadataIsGeneratedOnceAndRevalidatedWithItsETag() throws Exception {
+        MockHttpServletResponse first = display(null);
+        String etag = first.getHeader("ETag");
+
+        assertThat(first.getStatus(), is(200));
+        assertThat(etag, notNullValue());
+        assertThat(first.getHeader("Cache-Control"), is(CachingMetadataDisplayFilter.CACHE_CONTROL));
+        assertThat(first.getHeader("Content-Disposition"), is("attachment; filename=\"saml-zone-sp.xml\""));
+        assertThat(first.getContentAsString(), is("<md:EntityDescriptor entityID=\"entity-id\" version=\"1\"/>"));
+
+        MockHttpServletResponse second = display(etag);
+        assertThat(second.getStatus(), is(304));
+        assertThat(second.getContentAsString(), is(""));
+        assertThat(second.getHeader("ETag"), is(etag));
+
+        MockHttpServletResponse third = display("\"something-else\"");
+        assertThat(third.getStatus(), is(200));
+        assertThat(third.getHeader("ETag"), is(etag));
+        assertThat(generated, is(1));
+    }
+
+    @Test
+    void metadataIsGeneratedAgainWhenTheZoneChanges() throws Exception {
+        String etag = display(null).getHeader("ETag");
+
+        zone.setVersion(zone.getVersion() + 1);
+        MockHttpServletResponse response = display(etag);
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getHeader("ETag"), not(etag));
+        assertThat(generated, is(2));
+    }
+
+    @Test
+    void ifNoneMatchAcceptsListsWeakTagsAndWildcards() {
+        assertThat(CachingMetadataDisplayFilter.matches("\"a\", \"b\"", "\"b\""), is(true));
+        assertThat(CachingMetadataDisplayFilter.matches("W/\"b\"", "\"b\""), is(true));
+        assertThat(CachingMetadataDisplayFilter.matches("*", "\"b\""), is(true));
+        assertThat(CachingMetadataDisplayFilter.matches("\"a\"", "\"b\""), is(false));
+        assertThat(CachingMetadataDisplayFilter.matches(null, "\"b\""), is(false));
+    }
+
+    private MockHttpServletResponse display(String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/saml/metadata");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.processMetadataDisplay(request, response);
+        return response;
+    }
+}
@@ -0,0 +1,90 @@
+package org.cloudfoundry.identity.uaa.provider.saml.idp;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@WithDatabaseContext
+class CachingSamlServiceProviderProvisioningTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcSamlServiceProviderProvisioning jdbcProvisioning;
+    private CachingSamlServiceProviderProvisioning cachingProvisioning;
+    private String zoneId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcProvisioning = new JdbcSamlServiceProviderProvisioning(jdbcTemplate);
+        cachingProvisioning = new CachingSamlServiceProviderProvisioning(jdbcProvisioning, 10, 60);
+        zoneId = "zone-" + new RandomValueStringGenerator().generate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from service_provider where identity_zone_id = ?", zoneId);
+    }
+
+    @Test
+    void serviceProvidersAreServedFromTheRegistryUntilTheyAreWritten() {
+        SamlServiceProvider created = jdbcProvisioning.create(serviceProvider(), zoneId);
+
+        assertThat(cachingProvisioning.retrieveByEntityId(SamlTestUtils.SP_ENTITY_ID, zoneId).getName(), is(created.getName()));
+        jdbcTemplate.update("update service_provider set name = ? where id = ?", "changed directly", created.getId());
+        assertThat(cachingProvisioning.retrieveByEntityId(SamlTestUtils.SP_ENTITY_ID, zoneId).getName(), is(created.getName()));
+        assertThat(cachingProvisioning.retrieveActive(zoneId).size(), is(1));
+
+        created.setName("updated");
+        created.setActive(false);
+        jdbcProvisioning.update(created, zoneId);
+
+        assertThat(cachingProvisioning.retrieveByEntityId(SamlTestUtils.SP_ENTITY_ID, zoneId).getName(), is("updated"));
+        assertThat(cachingProvisioning.retrieveActive(zoneId).size(), is(0));
+        assertThat(cachingProvisioning.retrieveAll(false, zoneId).size(), is(1));
+
+        jdbcProvisioning.delete(created.getId(), zoneId);
+        assertThrows(EmptyResultDataAccessException.class,
+                () -> cachingProvisioning.retrieveByEntityId(SamlTestUtils.SP_ENTITY_ID, zoneId));
+    }
+
+    @Test
+    void callersCannotChangeTheRegistry() {
+        jdbcProvisioning.create(serviceProvider(), zoneId);
+
+        SamlServiceProvider first = cachingProvisioning.retrieveByEntityId(SamlTestUtils.SP_ENTITY_ID, zoneId);
+        first.setName("renamed");
+
+        SamlServiceProvider second = cachingProvisioning.retrieveByEntityId(SamlTestUtils.SP_ENTITY_ID, zoneId);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getName(), not("renamed"));
+    }
+
+    @Test
+    void invalidExpirationIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingSamlServiceProviderProvisioning(jdbcProvisioning, 10, 0));
+    }
+
+    private SamlServiceProvider serviceProvider() {
+        SamlServiceProviderDefinition config = new SamlServiceProviderDefinition();
+        config.setMetaDataLocation(SamlTestUtils.SAML_SP_METADATA);
+        return new SamlServiceProvider()
+                .setActive(true)
+                .setConfig(config)
+                .setEntityId(SamlTestUtils.SP_ENTITY_ID)
+                .setIdentityZoneId(zoneId)
+                .setName("Unit Test SAML SP");
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.opensaml.common.SAMLException;
+import org.opensaml.security.SAMLSignatureProfileValidator;
 import org.opensaml.saml2.core.*;
 import org.opensaml.saml2.metadata.provider.MetadataProviderException;
 import org.opensaml.xml.ConfigurationException;
@@ -14,7 +15,9 @@ import org.opensaml.xml.XMLObject;
 import org.opensaml.xml.io.MarshallingException;
 import org.opensaml.xml.schema.XSString;
 import org.opensaml.xml.security.SecurityException;
+import org.opensaml.xml.signature.Signature;
 import org.opensaml.xml.signature.SignatureException;
+import org.opensaml.xml.signature.SignatureValidator;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.saml.context.SAMLMessageContext;
 
@@ -288,4 +291,21 @@ public class IdpWebSsoProfileImplTest {
         assertNotNull(assertion.getSignature());
     }
 
+    @Test
+    public void testAssertionsSignedWithTheSameCredentialValidate() throws Exception {
+        Authentication authentication = samlTestUtils.mockUaaAuthentication(UUID.randomUUID().toString());
+        SAMLMessageContext context = samlTestUtils.mockSamlMessageContext();
+        IdpWebSSOProfileOptions options = new IdpWebSSOProfileOptions();
+        options.setAssertionsSigned(true);
+
+        SignatureValidator validator = new SignatureValidator(context.getLocalSigningCredential());
+        for (int i = 0; i < 2; i++) {
+            profile.buildResponse(authentication, context, options);
+            Signature signature = ((Response) context.getOutboundSAMLMessage()).getAssertions().get(0).getSignature();
+
+            assertNotNull(signature.getKeyInfo());
+            new SAMLSignatureProfileValidator().validate(signature);
+            validator.validate(signature);
+        }
+    }
 }
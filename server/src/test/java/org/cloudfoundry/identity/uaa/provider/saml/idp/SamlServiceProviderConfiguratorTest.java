@@ -76,7 +76,11 @@ public class SamlServiceProviderConfiguratorTest {
         FixedHttpMetaDataProvider fixedHttpMetaDataProvider = new FixedHttpMetaDataProvider(
                 restTemplateConfig.trustingRestTemplate(),
                 restTemplateConfig.nonTrustingRestTemplate(),
-                new ExpiringUrlCache(Duration.ofMinutes(10), mockTimeService, 2)
+                new ExpiringUrlCache(Duration.ofMinutes(10), mockTimeService, 2),
+                mockTimeService,
+                600000,
+                1,
+                86400
         );
 
         conf.setFixedHttpMetaDataProvider(fixedHttpMetaDataProvider);
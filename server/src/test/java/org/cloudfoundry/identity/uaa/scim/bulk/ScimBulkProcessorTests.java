@@ -0,0 +1,216 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
+import org.cloudfoundry.identity.uaa.resources.jdbc.JdbcPagingListFactory;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.event.ScimEventPublisher;
+import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimGroupMembershipManager;
+import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimGroupProvisioning;
+import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.scim.validate.PasswordValidator;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@WithDatabaseContext
+class ScimBulkProcessorTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LimitSqlAdapter limitSqlAdapter;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private JdbcScimUserProvisioning userProvisioning;
+    private JdbcScimGroupProvisioning groupProvisioning;
+    private JdbcScimGroupMembershipManager membershipManager;
+    private ScimBulkProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        JdbcPagingListFactory pagingListFactory = new JdbcPagingListFactory(jdbcTemplate, limitSqlAdapter);
+        userProvisioning = new JdbcScimUserProvisioning(jdbcTemplate, pagingListFactory, passwordEncoder);
+        groupProvisioning = new JdbcScimGroupProvisioning(jdbcTemplate, pagingListFactory);
+        membershipManager = new JdbcScimGroupMembershipManager(jdbcTemplate, new TimeServiceImpl(), userProvisioning, null);
+        membershipManager.setScimGroupProvisioning(groupProvisioning);
+
+        IdentityZoneManager identityZoneManager = mock(IdentityZoneManager.class);
+        when(identityZoneManager.getCurrentIdentityZoneId()).thenReturn(IdentityZone.getUaaZoneId());
+        when(identityZoneManager.getCurrentIdentityZone()).thenReturn(IdentityZone.getUaa());
+        IdentityProviderProvisioning identityProviderProvisioning = mock(IdentityProviderProvisioning.class);
+        when(identityProviderProvisioning.retrieveActive(IdentityZone.getUaaZoneId())).thenReturn(Collections.emptyList());
+
+        processor = new ScimBulkProcessor(identityZoneManager, userProvisioning, groupProvisioning, membershipManager,
+                identityProviderProvisioning, mock(PasswordValidator.class), passwordEncoder,
+                mock(ScimEventPublisher.class), Collections.emptyMap(),
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()), 10, 1);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        processor.destroy();
+        RequestContextHolder.resetRequestAttributes();
+        jdbcTemplate.execute("delete from group_membership");
+        jdbcTemplate.execute("delete from groups");
+        jdbcTemplate.execute("delete from users");
+    }
+
+    @Test
+    void mixedUserAndGroupCreationsRunInOrder() {
+        ScimBulkResponse response = process(null,
+                createUser("u1", "alice"),
+                createGroup("g1", "readers"),
+                createUser("u2", "bob"),
+                createGroup("g2", "writers", "bulkId:u1", "bulkId:u2"));
+
+        assertThat(statuses(response), contains("201", "201", "201", "201"));
+        assertThat(bulkIds(response), contains("u1", "g1", "u2", "g2"));
+        ScimGroup writers = groupProvisioning.getByName("writers", IdentityZone.getUaaZoneId());
+        List<String> members = membershipManager.getMembers(writers.getId(), false, IdentityZone.getUaaZoneId())
+                .stream()
+                .map(ScimGroupMember::getMemberId)
+                .collect(Collectors.toList());
+        assertThat(members, hasSize(2));
+        assertThat(groupProvisioning.getByName("readers", IdentityZone.getUaaZoneId()).getDisplayName(), is("readers"));
+    }
+
+    @Test
+    void pathReferencesResolveToQueuedCreations() {
+        ScimBulkOperation patch = new ScimBulkOperation("PATCH", null, "/Users/bulkId:u1",
+                JsonUtils.readTree("{\"name\":{\"givenName\":\"Alicia\"}}"));
+
+        ScimBulkResponse response = process(null, createUser("u1", "alice"), patch);
+
+        assertThat(statuses(response), contains("201", "200"));
+        ScimUser alice = userProvisioning.retrieveByUsernameAndOriginAndZone("alice", "uaa", IdentityZone.getUaaZoneId()).get(0);
+        assertThat(alice.getName().getGivenName(), is("Alicia"));
+        assertThat(response.getOperations().get(1).getLocation(), containsString(alice.getId()));
+    }
+
+    @Test
+    void unresolvableReferencesAreConflicts() {
+        ScimBulkResponse response = process(null, createGroup("g1", "readers", "bulkId:missing"));
+
+        assertThat(statuses(response), contains("409"));
+    }
+
+    @Test
+    void queuedCreationsRunBeforeALaterErrorCounts() {
+        ScimBulkResponse response = process(1,
+                createUser("u1", "alice"),
+                invalidUser("u2"),
+                createUser("u3", "carol"));
+
+        assertThat(statuses(response), contains("201", "400", "412"));
+        assertThat(userProvisioning.retrieveByUsernameAndOriginAndZone("alice", "uaa", IdentityZone.getUaaZoneId()), hasSize(1));
+        assertThat(userProvisioning.retrieveByUsernameAndOriginAndZone("carol", "uaa", IdentityZone.getUaaZoneId()), hasSize(0));
+    }
+
+    @Test
+    void failOnErrorsCountsErrorsAcrossBatches() {
+        ScimBulkResponse response = process(2,
+                createUser("u1", "alice"),
+                createUser("u2", "alice"),
+                createGroup("g1", "readers"),
+                createUser("u3", "bob"),
+                invalidUser("u4"),
+                createGroup("g2", "writers"),
+                createUser("u5", "carol"));
+
+        assertThat(statuses(response), contains("201", "409", "201", "201", "400", "412", "412"));
+        assertThat(response.getOperations().get(6).getBulkId(), is("u5"));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from groups where displayname = ?", Integer.class, "writers"), is(0));
+    }
+
+    @Test
+    void queuedOperationsAfterTheLimitAreReportedAsSkipped() {
+        process(null, createUser("u0", "bob"));
+
+        ScimBulkResponse response = process(1,
+                createUser("u1", "alice"),
+                createUser("u2", "bob"),
+                createUser("u3", "carol"),
+                createUser("u4", "dave"));
+
+        assertThat(statuses(response), contains("201", "409", "412", "412"));
+        assertThat(response.getOperations().get(2).getResponse().get("detail").toString(), containsString("failOnErrors"));
+        assertThat(userProvisioning.retrieveByUsernameAndOriginAndZone("carol", "uaa", IdentityZone.getUaaZoneId()), hasSize(0));
+    }
+
+    @Test
+    void withoutFailOnErrorsEveryOperationRuns() {
+        ScimBulkResponse response = process(null,
+                invalidUser("u1"),
+                createUser("u2", "alice"),
+                createUser("u3", "alice"),
+                createUser("u4", "bob"));
+
+        assertThat(statuses(response), contains("400", "201", "409", "201"));
+    }
+
+    private ScimBulkResponse process(Integer failOnErrors, ScimBulkOperation... operations) {
+        ScimBulkRequest request = new ScimBulkRequest();
+        request.setFailOnErrors(failOnErrors);
+        request.setOperations(Arrays.asList(operations));
+        return processor.process(request, false);
+    }
+
+    private static ScimBulkOperation createUser(String bulkId, String userName) {
+        ScimUser user = new ScimUser(null, userName, "Bulk", "User");
+        user.addEmail(userName + "@bulk.com");
+        user.setPassword("secret");
+        return new ScimBulkOperation("POST", bulkId, "/Users", JsonUtils.readTree(JsonUtils.writeValueAsString(user)));
+    }
+
+    private static ScimBulkOperation invalidUser(String bulkId) {
+        return new ScimBulkOperation("POST", bulkId, "/Users", JsonUtils.readTree("{\"userName\":\"no-email\"}"));
+    }
+
+    private static ScimBulkOperation createGroup(String bulkId, String displayName, String... members) {
+        String memberJson = Arrays.stream(members)
+                .map(m -> "{\"value\":\"" + m + "\",\"type\":\"USER\",\"origin\":\"uaa\"}")
+                .collect(Collectors.joining(","));
+        return new ScimBulkOperation("POST", bulkId, "/Groups",
+                JsonUtils.readTree("{\"displayName\":\"" + displayName + "\",\"members\":[" + memberJson + "]}"));
+    }
+
+    private static List<String> statuses(ScimBulkResponse response) {
+        return response.getOperations().stream().map(ScimBulkOperationResult::getStatus).collect(Collectors.toList());
+    }
+
+    private static List<String> bulkIds(ScimBulkResponse response) {
+        return response.getOperations().stream().map(ScimBulkOperationResult::getBulkId).collect(Collectors.toList());
+    }
+}
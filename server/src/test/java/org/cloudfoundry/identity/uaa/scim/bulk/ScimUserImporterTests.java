@@ -0,0 +1,206 @@
+package org.cloudfoundry.identity.uaa.scim.bulk;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.resources.jdbc.JdbcPagingListFactory;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMembershipManager;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimGroupMembershipManager;
+import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimGroupProvisioning;
+import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.TimeServiceImpl;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.StringReader;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+@WithDatabaseContext
+class ScimUserImporterTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LimitSqlAdapter limitSqlAdapter;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private JdbcScimUserProvisioning userProvisioning;
+    private JdbcScimGroupProvisioning groupProvisioning;
+    private JdbcScimGroupMembershipManager membershipManager;
+    private ScimUserImporter importer;
+    private IdentityZone zone;
+    private String hash;
+
+    @BeforeEach
+    void setUp() {
+        JdbcPagingListFactory pagingListFactory = new JdbcPagingListFactory(jdbcTemplate, limitSqlAdapter);
+        userProvisioning = new JdbcScimUserProvisioning(jdbcTemplate, pagingListFactory, passwordEncoder);
+        groupProvisioning = new JdbcScimGroupProvisioning(jdbcTemplate, pagingListFactory);
+        membershipManager = new JdbcScimGroupMembershipManager(jdbcTemplate, new TimeServiceImpl(), userProvisioning, null);
+        membershipManager.setScimGroupProvisioning(groupProvisioning);
+        zone = IdentityZoneHolder.get();
+        zone.getConfig().getUserConfig().setDefaultGroups(Collections.singletonList("uaa.user"));
+        importer = newImporter(2);
+        hash = passwordEncoder.encode("secret");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("delete from group_membership");
+        jdbcTemplate.execute("delete from groups");
+        jdbcTemplate.execute("delete from users");
+        jdbcTemplate.execute("delete from user_import_checkpoint");
+        IdentityZoneHolder.clear();
+    }
+
+    private ScimUserImporter newImporter(int commitSize) {
+        return newImporter(commitSize, membershipManager);
+    }
+
+    private ScimUserImporter newImporter(int commitSize, ScimGroupMembershipManager membershipManager) {
+        return new ScimUserImporter(userProvisioning, groupProvisioning, membershipManager, passwordEncoder, jdbcTemplate,
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()), commitSize, 2);
+    }
+
+    private String record(String userName, String password, String... groups) {
+        ScimUser user = new ScimUser(null, userName, "Imported", "User");
+        user.addEmail(userName + "@import.com");
+        user.setPassword(password);
+        user.setGroups(IntStream.range(0, groups.length)
+                .mapToObj(i -> new ScimUser.Group(null, groups[i]))
+                .collect(Collectors.toList()));
+        return JsonUtils.writeValueAsString(user);
+    }
+
+    @Test
+    void importsUsersWithHashesAndMemberships() throws Exception {
+        String input = String.join("\n",
+                record("alice", hash, "importers", "uaa.user"),
+                record("bob", hash, "importers"),
+                record("carol", hash));
+
+        ScimUserImportResult result = importer.importUsers("first", new StringReader(input), zone, false);
+
+        assertEquals(3, result.getProcessed());
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getFailed());
+        assertEquals(3, result.getCheckpoint());
+        String aliceId = userProvisioning.retrieveByUsernameAndOriginAndZone("alice", "uaa", zone.getId()).get(0).getId();
+        assertTrue(userProvisioning.checkPasswordMatches(aliceId, "secret", zone.getId()));
+        ScimGroup importers = groupProvisioning.getByName("importers", zone.getId());
+        assertThat(membershipManager.getMembers(importers.getId(), false, zone.getId()), hasSize(2));
+    }
+
+    @Test
+    void reportsInvalidRecordsAndKeepsGoing() throws Exception {
+        String input = String.join("\n",
+                record("alice", "plaintext"),
+                "{not json",
+                record("bob", hash),
+                record("bob", hash));
+
+        ScimUserImportResult result = importer.importUsers("invalid", new StringReader(input), zone, false);
+
+        assertEquals(4, result.getProcessed());
+        assertEquals(1, result.getImported());
+        assertEquals(3, result.getFailed());
+        assertThat(result.getErrors(), hasSize(3));
+        assertThat(result.getErrors().get(0), containsString("Record 1"));
+        assertThat(result.getErrors().get(2), containsString("Username already in use"));
+    }
+
+    @Test
+    void resumesFromCheckpoint() throws Exception {
+        List<String> records = IntStream.range(0, 5)
+                .mapToObj(i -> record("user" + i, hash))
+                .collect(Collectors.toList());
+        jdbcTemplate.update(ScimUserImporter.INSERT_CHECKPOINT_SQL, "resume", zone.getId(), 4, new Timestamp(System.currentTimeMillis()));
+
+        ScimUserImportResult result = importer.importUsers("resume", new StringReader(String.join("\n", records)), zone, false);
+
+        assertEquals(4, result.getResumedFrom());
+        assertEquals(1, result.getImported());
+        assertEquals(5, result.getCheckpoint());
+        assertEquals(5L, importer.getCheckpoint("resume", zone.getId()));
+        assertThat(userProvisioning.retrieveByUsernameAndOriginAndZone("user4", "uaa", zone.getId()), hasSize(1));
+        assertThat(userProvisioning.retrieveByUsernameAndOriginAndZone("user0", "uaa", zone.getId()), hasSize(0));
+    }
+
+    @Test
+    void passwordsSurviveAFailedBatch() throws Exception {
+        ScimGroupMembershipManager failing = spy(membershipManager);
+        doThrow(new DataIntegrityViolationException("membership insert failed"))
+                .doCallRealMethod()
+                .when(failing).addMembers(anyString(), anyList(), anyString());
+        String input = String.join("\n",
+                record("alice", hash, "importers"),
+                record("bob", hash, "importers"));
+
+        ScimUserImportResult result = newImporter(2, failing).importUsers("retry", new StringReader(input), zone, false);
+
+        assertEquals(2, result.getImported());
+        assertEquals(0, result.getFailed());
+        for (String userName : new String[]{"alice", "bob"}) {
+            String id = userProvisioning.retrieveByUsernameAndOriginAndZone(userName, "uaa", zone.getId()).get(0).getId();
+            assertTrue(userProvisioning.checkPasswordMatches(id, "secret", zone.getId()));
+        }
+        ScimGroup importers = groupProvisioning.getByName("importers", zone.getId());
+        assertThat(membershipManager.getMembers(importers.getId(), false, zone.getId()), hasSize(2));
+    }
+
+    @Test
+    void groupsListedTwiceAreJoinedOnce() throws Exception {
+        String input = record("alice", hash, "importers", "importers");
+
+        ScimUserImportResult result = importer.importUsers("duplicate-groups", new StringReader(input), zone, false);
+
+        assertEquals(1, result.getImported());
+        ScimGroup importers = groupProvisioning.getByName("importers", zone.getId());
+        assertThat(membershipManager.getMembers(importers.getId(), false, zone.getId()), hasSize(1));
+    }
+
+    @Test
+    void uaaUsersAreRejectedWhileInternalUserManagementIsDisabled() throws Exception {
+        ScimUser external = new ScimUser(null, "external", "Imported", "User");
+        external.addEmail("external@import.com");
+        external.setOrigin("ldap");
+        String input = String.join("\n",
+                record("alice", hash),
+                JsonUtils.writeValueAsString(external));
+
+        ScimUserImportResult result = importer.importUsers("disabled", new StringReader(input), zone, true);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertThat(result.getErrors().get(0), containsString("Record 1"));
+        assertThat(userProvisioning.retrieveByUsernameAndOriginAndZone("alice", "uaa", zone.getId()), hasSize(0));
+        assertThat(userProvisioning.retrieveByUsernameAndOriginAndZone("external", "ldap", zone.getId()), hasSize(1));
+    }
+}
@@ -0,0 +1,90 @@
+package org.cloudfoundry.identity.uaa.scim.endpoints;
+
+import org.cloudfoundry.identity.uaa.scim.DisableInternalUserManagementFilter;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimBulkOperation;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimBulkProcessor;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimBulkRequest;
+import org.cloudfoundry.identity.uaa.scim.bulk.ScimBulkResponse;
+import org.cloudfoundry.identity.uaa.scim.exception.ScimException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScimBulkEndpointsTests {
+
+    private ScimBulkProcessor processor;
+    private ScimBulkEndpoints endpoints;
+    private MockHttpServletRequest httpRequest;
+
+    @BeforeEach
+    void setUp() {
+        processor = mock(ScimBulkProcessor.class);
+        endpoints = new ScimBulkEndpoints(processor, Collections.emptyMap(), 2);
+        httpRequest = new MockHttpServletRequest();
+    }
+
+    @Test
+    void delegatesToTheProcessor() {
+        ScimBulkRequest request = request(1);
+        ScimBulkResponse response = new ScimBulkResponse();
+        when(processor.process(same(request), anyBoolean())).thenReturn(response);
+
+        assertThat(endpoints.bulk(request, httpRequest), sameInstance(response));
+        verify(processor).process(request, false);
+    }
+
+    @Test
+    void passesDisabledInternalUserManagementOn() {
+        ScimBulkRequest request = request(1);
+        httpRequest.setAttribute(DisableInternalUserManagementFilter.DISABLE_INTERNAL_USER_MANAGEMENT, true);
+
+        endpoints.bulk(request, httpRequest);
+
+        verify(processor).process(request, true);
+    }
+
+    @Test
+    void rejectsEmptyRequests() {
+        ScimException e = assertThrows(ScimException.class, () -> endpoints.bulk(request(0), httpRequest));
+
+        assertThat(e.getStatus(), is(HttpStatus.BAD_REQUEST));
+        verify(processor, never()).process(any(), anyBoolean());
+    }
+
+    @Test
+    void rejectsTooManyOperations() {
+        ScimException e = assertThrows(ScimException.class, () -> endpoints.bulk(request(3), httpRequest));
+
+        assertThat(e.getStatus(), is(HttpStatus.PAYLOAD_TOO_LARGE));
+        verify(processor, never()).process(any(), anyBoolean());
+    }
+
+    @Test
+    void invalidMaxOperationsIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ScimBulkEndpoints(processor, Collections.emptyMap(), 0));
+    }
+
+    private static ScimBulkRequest request(int size) {
+        ScimBulkOperation[] operations = new ScimBulkOperation[size];
+        Arrays.fill(operations, new ScimBulkOperation("DELETE", null, "/Users/id", null));
+        ScimBulkRequest request = new ScimBulkRequest();
+        request.setOperations(Arrays.asList(operations));
+        return request;
+    }
+}
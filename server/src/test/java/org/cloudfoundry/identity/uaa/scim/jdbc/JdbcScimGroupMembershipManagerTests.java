@@ -49,6 +49,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
@@ -517,9 +518,8 @@ class JdbcScimGroupMembershipManagerTests {
         List<ScimGroupMember> members = spy.updateOrAddMembers("g1", Arrays.asList(g2, m3, m4), uaaIdentityZone.getId());
 
         validateCount(4, jdbcTemplate, uaaIdentityZone.getId());
-        verify(spy).addMember("g1", m3, uaaIdentityZone.getId());
-        verify(spy, times(0)).addMember("g1", m4, uaaIdentityZone.getId());
-        verify(spy).removeMemberById("g1", "m1", uaaIdentityZone.getId());
+        verify(spy, times(0)).addMember(eq("g1"), any(), eq(uaaIdentityZone.getId()));
+        verify(spy, times(0)).removeMemberById(eq("g1"), any(), eq(uaaIdentityZone.getId()));
         assertEquals(3, members.size());
         assertTrue(members.contains(new ScimGroupMember("g2", ScimGroupMember.Type.GROUP)));
         assertTrue(members.contains(new ScimGroupMember("m3", ScimGroupMember.Type.USER)));
@@ -529,6 +529,38 @@ class JdbcScimGroupMembershipManagerTests {
         validateUserGroups("m1", jdbcScimGroupMembershipManager, uaaIdentityZone.getId());
     }
 
+    @Test
+    void updateOrAddMembersLeavesGroupUntouchedWhenMemberDoesNotExist() {
+        jdbcScimGroupMembershipManager.addMember("g1", new ScimGroupMember("m1", ScimGroupMember.Type.USER), uaaIdentityZone.getId());
+
+        assertThrows(ScimResourceNotFoundException.class,
+                () -> jdbcScimGroupMembershipManager.updateOrAddMembers("g1",
+                        Arrays.asList(new ScimGroupMember("m2", ScimGroupMember.Type.USER), new ScimGroupMember("unknown", ScimGroupMember.Type.USER)),
+                        uaaIdentityZone.getId()));
+
+        validateCount(1, jdbcTemplate, uaaIdentityZone.getId());
+        validateUserGroups("m1", jdbcScimGroupMembershipManager, uaaIdentityZone.getId(), "test1");
+    }
+
+    @Test
+    void canReplaceLargeMemberList() {
+        jdbcScimGroupMembershipManager.setMaxSqlParameters(3);
+        jdbcScimGroupMembershipManager.addMember("g1", new ScimGroupMember("m1", ScimGroupMember.Type.USER), uaaIdentityZone.getId());
+
+        List<ScimGroupMember> members = jdbcScimGroupMembershipManager.updateOrAddMembers("g1",
+                Arrays.asList(
+                        new ScimGroupMember("m2", ScimGroupMember.Type.USER),
+                        new ScimGroupMember("m3", ScimGroupMember.Type.USER),
+                        new ScimGroupMember("m4", ScimGroupMember.Type.USER),
+                        new ScimGroupMember("m5", ScimGroupMember.Type.USER),
+                        new ScimGroupMember("g2", ScimGroupMember.Type.GROUP)),
+                uaaIdentityZone.getId());
+
+        assertEquals(5, members.size());
+        assertFalse(members.contains(new ScimGroupMember("m1", ScimGroupMember.Type.USER)));
+        validateCount(5, jdbcTemplate, uaaIdentityZone.getId());
+    }
+
     @Test
     void canRemoveMemberById() {
         addMember("g1", "m1", "USER", "READER", jdbcTemplate, uaaIdentityZone.getId());
@@ -21,6 +21,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
@@ -205,6 +206,56 @@ class JdbcScimGroupProvisioningTests {
         assertEquals(1, dao.query("id co \"2\"", "displayName", false, zoneId).size());
     }
 
+    @Test
+    void canStreamGroupsWithMembers() {
+        addUserToGroup(g1Id, "stream-user-1");
+        addUserToGroup(g1Id, "stream-user-2");
+        addGroupToGroup(g2Id, g3Id);
+
+        List<ScimGroup> streamed = new ArrayList<>();
+        dao.streamWithMembers("id pr", zoneId, streamed::add);
+
+        assertEquals(Arrays.asList(g1Id, g2Id, g3Id), streamed.stream().map(ScimGroup::getId).collect(Collectors.toList()));
+        assertThat(streamed.get(0).getMembers(), hasSize(2));
+        assertThat(streamed.get(1).getMembers(), hasSize(1));
+        assertEquals(g3Id, streamed.get(1).getMembers().get(0).getMemberId());
+        assertEquals(ScimGroupMember.Type.GROUP, streamed.get(1).getMembers().get(0).getType());
+        assertThat(streamed.get(2).getMembers(), hasSize(0));
+    }
+
+    @Test
+    void canStreamGroupsWithFilter() {
+        List<ScimGroup> streamed = new ArrayList<>();
+        dao.streamWithMembers("displayName eq \"" + group3Description + "\"", zoneId, streamed::add);
+        assertThat(streamed, hasSize(1));
+        assertEquals(g3Id, streamed.get(0).getId());
+
+        List<ScimGroup> plain = new ArrayList<>();
+        dao.stream("displayName pr", "displayName", false, zoneId, plain::add);
+        assertThat(plain, hasSize(3));
+    }
+
+    @Test
+    void canCreateGroupsInOneBatch() {
+        List<ScimGroup> created = dao.createGroups(Arrays.asList(new ScimGroup("batch.one"), new ScimGroup("batch.two")), zoneId);
+        assertThat(created, hasSize(2));
+        assertEquals("batch.one", dao.retrieve(created.get(0).getId(), zoneId).getDisplayName());
+        assertEquals("batch.two", dao.retrieve(created.get(1).getId(), zoneId).getDisplayName());
+        assertEquals(5, dao.retrieveAll(zoneId).size());
+    }
+
+    @Test
+    void cannotCreateGroupsInOneBatchWithDuplicateName() {
+        assertThrows(DuplicateKeyException.class,
+                () -> dao.createGroups(Arrays.asList(new ScimGroup("batch.one"), new ScimGroup("batch.one")), zoneId));
+    }
+
+    @Test
+    void cannotStreamGroupsWithInvalidFilter() {
+        assertThrows(IllegalArgumentException.class, () -> dao.streamWithMembers("displayName eq \"bar", zoneId, g -> {
+        }));
+    }
+
     @Test
     void cannotRetrieveGroupsWithIllegalQuotesFilter() {
         assertThrows(
@@ -32,6 +32,7 @@ import org.springframework.security.oauth2.common.util.RandomValueStringGenerato
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -955,6 +956,51 @@ class JdbcScimUserProvisioningTests {
         assertEquals(1, jdbcScimUserProvisioning.query("username eq \"foo\" or username eq \"joe\"", currentIdentityZoneId).size());
     }
 
+    @Test
+    void canStreamUsersWithFilter() {
+        jdbcScimUserProvisioning.setStreamFetchSize(1);
+        List<ScimUser> streamed = new ArrayList<>();
+        jdbcScimUserProvisioning.stream("username co \"e\"", "username", true, currentIdentityZoneId, streamed::add);
+        assertEquals(2, streamed.size());
+        assertEquals(JOE_NAME, streamed.get(0).getUserName());
+        assertEquals("mabel", streamed.get(1).getUserName());
+    }
+
+    @Test
+    void canCreateUsersInOneBatch() {
+        ScimUser first = new ScimUser(null, "batch-" + generator.generate(), "Batch", "One");
+        first.addEmail("one@batch.com");
+        first.setPassword(passwordEncoder.encode("j7hyqpassX"));
+        ScimUser second = new ScimUser(null, "batch-" + generator.generate(), "Batch", "Two");
+        second.addEmail("two@batch.com");
+        second.setOrigin(LOGIN_SERVER);
+
+        List<ScimUser> created = jdbcScimUserProvisioning.createUsers(Arrays.asList(first, second), currentIdentityZoneId);
+
+        assertEquals(2, created.size());
+        assertNull(created.get(0).getPassword());
+        assertEquals(OriginKeys.UAA, created.get(0).getOrigin());
+        ScimUser retrieved = jdbcScimUserProvisioning.retrieve(created.get(0).getId(), currentIdentityZoneId);
+        assertEquals(first.getUserName(), retrieved.getUserName());
+        assertTrue(jdbcScimUserProvisioning.checkPasswordMatches(retrieved.getId(), "j7hyqpassX", currentIdentityZoneId));
+        assertEquals(LOGIN_SERVER, jdbcScimUserProvisioning.retrieve(created.get(1).getId(), currentIdentityZoneId).getOrigin());
+    }
+
+    @Test
+    void canRetrieveUsersByUsernames() {
+        List<ScimUser> found = jdbcScimUserProvisioning.retrieveByUsernamesAndZone(Arrays.asList("JOE", "nobody"), currentIdentityZoneId);
+        assertEquals(1, found.size());
+        assertEquals(joeId, found.get(0).getId());
+        assertTrue(jdbcScimUserProvisioning.retrieveByUsernamesAndZone(Collections.singletonList("joe"), "other-zone-id").isEmpty());
+    }
+
+    @Test
+    void cannotStreamUsersWithIllegalFilterField() {
+        assertThrows(IllegalArgumentException.class,
+                () -> jdbcScimUserProvisioning.stream("emails.type eq \"bar\"", null, true, currentIdentityZoneId, u -> {
+                }));
+    }
+
     @Test
     void cannotRetrieveUsersWithIllegalFilterField() {
         assertThrows(IllegalArgumentException.class,
@@ -50,23 +50,23 @@ class ScimSearchQueryConverterTests {
     @Test
     void canConvertValidFilters() {
         validate(filterProcessor.convert("username pr", null, false, zoneId), "username IS NOT NULL", null, 0);
-        validate(filterProcessor.convert("username eq \"joe\"", null, false, zoneId), "LOWER(username) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("username eq \"'bar\"", null, false, zoneId), "LOWER(username) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("displayName eq \"openid\"", null, false, zoneId), "LOWER(displayName) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("USERNAME eq \"joe\"", null, false, zoneId), "LOWER(USERNAME) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("username EQ \"joe\"", null, false, zoneId), "LOWER(username) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("username eq \"Joe\"", null, false, zoneId), "LOWER(username) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("username eq \"Joe\"", null, false, zoneId), "LOWER(username) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("displayName co \"write\"", null, false, zoneId), "LOWER(displayName) LIKE LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("displayName sw \"scim.\"", null, false, zoneId), "LOWER(displayName) LIKE LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("username gt \"joe\"", null, false, zoneId), "LOWER(username) > LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("userName eq \"joe\" and meta.version eq 0", null, false, zoneId), "(LOWER(userName) = LOWER(:__value_0) AND version = :__value_1)", null, 2);
+        validate(filterProcessor.convert("username eq \"joe\"", null, false, zoneId), "LOWER(username) = :__value_0", null, 1);
+        validate(filterProcessor.convert("username eq \"'bar\"", null, false, zoneId), "LOWER(username) = :__value_0", null, 1);
+        validate(filterProcessor.convert("displayName eq \"openid\"", null, false, zoneId), "LOWER(displayName) = :__value_0", null, 1);
+        validate(filterProcessor.convert("USERNAME eq \"joe\"", null, false, zoneId), "LOWER(USERNAME) = :__value_0", null, 1);
+        validate(filterProcessor.convert("username EQ \"joe\"", null, false, zoneId), "LOWER(username) = :__value_0", null, 1);
+        validate(filterProcessor.convert("username eq \"Joe\"", null, false, zoneId), "LOWER(username) = :__value_0", null, 1);
+        validate(filterProcessor.convert("username eq \"Joe\"", null, false, zoneId), "LOWER(username) = :__value_0", null, 1);
+        validate(filterProcessor.convert("displayName co \"write\"", null, false, zoneId), "LOWER(displayName) LIKE :__value_0", null, 1);
+        validate(filterProcessor.convert("displayName sw \"scim.\"", null, false, zoneId), "LOWER(displayName) LIKE :__value_0", null, 1);
+        validate(filterProcessor.convert("username gt \"joe\"", null, false, zoneId), "LOWER(username) > :__value_0", null, 1);
+        validate(filterProcessor.convert("userName eq \"joe\" and meta.version eq 0", null, false, zoneId), "(LOWER(userName) = :__value_0 AND version = :__value_1)", null, 2);
         validate(filterProcessor.convert("meta.created gt \"1970-01-01T00:00:00.000Z\"", null, false, zoneId), "created > :__value_0", null, 1);
         validate(filterProcessor.convert("username pr and active eq true", null, false, zoneId), "(username IS NOT NULL AND active = :__value_0)", null, 1);
         validate(filterProcessor.convert("username pr", "username", true, zoneId), "username IS NOT NULL", "ORDER BY username ASC", 0);
         validate(filterProcessor.convert("displayName pr", "displayName", false, zoneId), "displayName IS NOT NULL", "ORDER BY displayName DESC", 0);
-        validate(filterProcessor.convert("username pr and emails.value co \".com\"", null, false, zoneId), "(username IS NOT NULL AND LOWER(email) LIKE LOWER(:__value_0))", null, 1);
-        validate(filterProcessor.convert("username eq \"joe\" or emails.value co \".com\"", null, false, zoneId), "(LOWER(username) = LOWER(:__value_0) OR LOWER(email) LIKE LOWER(:__value_1))", null, 2);
+        validate(filterProcessor.convert("username pr and emails.value co \".com\"", null, false, zoneId), "(username IS NOT NULL AND LOWER(email) LIKE :__value_0)", null, 1);
+        validate(filterProcessor.convert("username eq \"joe\" or emails.value co \".com\"", null, false, zoneId), "(LOWER(username) = :__value_0 OR LOWER(email) LIKE :__value_1)", null, 2);
         validate(filterProcessor.convert("active eq true", null, false, zoneId), "active = :__value_0", null, 1, Boolean.class);
         validate(filterProcessor.convert("Version eq 1000000.45", null, false, zoneId), "Version = :__value_0", null, 1, Double.class);
         validate(filterProcessor.convert("meta.VerSion eq 1000000", null, false, zoneId), "VerSion = :__value_0", null, 1, Double.class);
@@ -101,36 +101,62 @@ class ScimSearchQueryConverterTests {
 
     @Test
     void canConvertWithReplacePatterns() {
-        validate(filterProcessor.convert("emails.value sw \"joe\"", null, false, zoneId), "LOWER(email) LIKE LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("groups.display co \"org.foo\"", null, false, zoneId), "LOWER(authorities) LIKE LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("phoneNumbers.value sw \"+1-222\"", null, false, zoneId), "LOWER(phoneNumber) LIKE LOWER(:__value_0)", null, 1);
+        validate(filterProcessor.convert("emails.value sw \"joe\"", null, false, zoneId), "LOWER(email) LIKE :__value_0", null, 1);
+        validate(filterProcessor.convert("groups.display co \"org.foo\"", null, false, zoneId), "LOWER(authorities) LIKE :__value_0", null, 1);
+        validate(filterProcessor.convert("phoneNumbers.value sw \"+1-222\"", null, false, zoneId), "LOWER(phoneNumber) LIKE :__value_0", null, 1);
         validate(filterProcessor.convert("username pr", "emails.value", true, zoneId), "username IS NOT NULL", "ORDER BY email ASC", 0);
     }
 
+    @Test
+    void lowerCasesValuesInsteadOfParameters() {
+        ProcessedFilter filter = filterProcessor.convert("username sw \"Joe\" and emails.value co \".COM\"", null, false, "Fake-Zone-Id");
+        assertEquals("joe%", filter.getParams().get(filter.getParamPrefix() + "0"));
+        assertEquals("%.com%", filter.getParams().get(filter.getParamPrefix() + "1"));
+        assertEquals("Fake-Zone-Id", filter.getParams().get(filter.getParamPrefix() + "2"));
+    }
+
+    @Test
+    void reusesCompiledFilterWithFreshPrefixAndZone() {
+        RandomValueStringGenerator generator = mock(RandomValueStringGenerator.class);
+        Mockito.when(generator.generate()).thenReturn("firstprefix", "secondprefix");
+        SimpleSearchQueryConverter converter = new SimpleSearchQueryConverter(generator);
+        converter.setAttributeNameMapper(new SimpleAttributeNameMapper(new HashMap<>()));
+
+        ProcessedFilter first = converter.convert("username eq \"Joe\"", null, false, "zone-1");
+        ProcessedFilter second = converter.convert("username eq \"Joe\"", "username", true, "zone-2");
+        assertEquals("__firstprefix_", first.getParamPrefix());
+        assertEquals("__secondprefix_", second.getParamPrefix());
+        assertEquals(first.getSql().replace(first.getParamPrefix(), second.getParamPrefix()) + " ORDER BY username ASC", second.getSql());
+        assertEquals("joe", second.getParams().get(second.getParamPrefix() + "0"));
+        assertEquals("zone-1", first.getParams().get(first.getParamPrefix() + "1"));
+        assertEquals("zone-2", second.getParams().get(second.getParamPrefix() + "1"));
+        assertEquals(2, second.getParams().size());
+    }
+
     @Test
     void testFilterWithApostrophe() {
         validate(filterProcessor.convert("username eq \"marissa'@test.org\"", null, false, zoneId),
-                "LOWER(username) = LOWER(:__value_0)", null, 1);
+                "LOWER(username) = :__value_0", null, 1);
     }
 
     @Test
     void canConvertLegacyValidFilters() {
         validate(filterProcessor.convert("username pr", null, false, zoneId), "username IS NOT NULL", null, 0);
-        validate(filterProcessor.convert("username eq 'joe'", null, false, zoneId), "LOWER(username) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("displayName eq \"openid\"", null, false, zoneId), "LOWER(displayName) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("USERNAME eq 'joe'", null, false, zoneId), "LOWER(USERNAME) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("username EQ 'joe'", null, false, zoneId), "LOWER(username) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("username eq 'Joe'", null, false, zoneId), "LOWER(username) = LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("displayName co 'write'", null, false, zoneId), "LOWER(displayName) LIKE LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("displayName sw 'scim.'", null, false, zoneId), "LOWER(displayName) LIKE LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("username gt 'joe'", null, false, zoneId), "LOWER(username) > LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("userName eq 'joe' and meta.version eq 0", null, false, zoneId), "(LOWER(userName) = LOWER(:__value_0) AND version = :__value_1)", null, 2);
+        validate(filterProcessor.convert("username eq 'joe'", null, false, zoneId), "LOWER(username) = :__value_0", null, 1);
+        validate(filterProcessor.convert("displayName eq \"openid\"", null, false, zoneId), "LOWER(displayName) = :__value_0", null, 1);
+        validate(filterProcessor.convert("USERNAME eq 'joe'", null, false, zoneId), "LOWER(USERNAME) = :__value_0", null, 1);
+        validate(filterProcessor.convert("username EQ 'joe'", null, false, zoneId), "LOWER(username) = :__value_0", null, 1);
+        validate(filterProcessor.convert("username eq 'Joe'", null, false, zoneId), "LOWER(username) = :__value_0", null, 1);
+        validate(filterProcessor.convert("displayName co 'write'", null, false, zoneId), "LOWER(displayName) LIKE :__value_0", null, 1);
+        validate(filterProcessor.convert("displayName sw 'scim.'", null, false, zoneId), "LOWER(displayName) LIKE :__value_0", null, 1);
+        validate(filterProcessor.convert("username gt 'joe'", null, false, zoneId), "LOWER(username) > :__value_0", null, 1);
+        validate(filterProcessor.convert("userName eq 'joe' and meta.version eq 0", null, false, zoneId), "(LOWER(userName) = :__value_0 AND version = :__value_1)", null, 2);
         validate(filterProcessor.convert("meta.created gt '1970-01-01T00:00:00.000Z'", null, false, zoneId), "created > :__value_0", null, 1);
         validate(filterProcessor.convert("username pr and active eq true", null, false, zoneId), "(username IS NOT NULL AND active = :__value_0)", null, 1);
         validate(filterProcessor.convert("username pr", "username", true, zoneId), "username IS NOT NULL", "ORDER BY username ASC", 0);
         validate(filterProcessor.convert("displayName pr", "displayName", false, zoneId), "displayName IS NOT NULL", "ORDER BY displayName DESC", 0);
-        validate(filterProcessor.convert("username pr and emails.value co '.com'", null, false, zoneId), "(username IS NOT NULL AND LOWER(email) LIKE LOWER(:__value_0))", null, 1);
-        validate(filterProcessor.convert("username eq 'joe' or emails.value co '.com'", null, false, zoneId), "(LOWER(username) = LOWER(:__value_0) OR LOWER(email) LIKE LOWER(:__value_1))", null, 2);
+        validate(filterProcessor.convert("username pr and emails.value co '.com'", null, false, zoneId), "(username IS NOT NULL AND LOWER(email) LIKE :__value_0)", null, 1);
+        validate(filterProcessor.convert("username eq 'joe' or emails.value co '.com'", null, false, zoneId), "(LOWER(username) = :__value_0 OR LOWER(email) LIKE :__value_1)", null, 2);
     }
 
     @Test
@@ -146,9 +172,9 @@ class ScimSearchQueryConverterTests {
         replaceWith.put("phoneNumbers\\.value", "phoneNumber");
         filterProcessor.setAttributeNameMapper(new SimpleAttributeNameMapper(replaceWith));
 
-        validate(filterProcessor.convert("emails.value sw 'joe'", null, false, zoneId), "LOWER(email) LIKE LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("groups.display co 'org.foo'", null, false, zoneId), "LOWER(authorities) LIKE LOWER(:__value_0)", null, 1);
-        validate(filterProcessor.convert("phoneNumbers.value sw '+1-222'", null, false, zoneId), "LOWER(phoneNumber) LIKE LOWER(:__value_0)", null, 1);
+        validate(filterProcessor.convert("emails.value sw 'joe'", null, false, zoneId), "LOWER(email) LIKE :__value_0", null, 1);
+        validate(filterProcessor.convert("groups.display co 'org.foo'", null, false, zoneId), "LOWER(authorities) LIKE :__value_0", null, 1);
+        validate(filterProcessor.convert("phoneNumbers.value sw '+1-222'", null, false, zoneId), "LOWER(phoneNumber) LIKE :__value_0", null, 1);
         validate(filterProcessor.convert("username pr", "emails.value", true, zoneId), "username IS NOT NULL", "ORDER BY email ASC", 0);
     }
 
@@ -159,10 +185,7 @@ class ScimSearchQueryConverterTests {
         // There is always an implied "and also the identity zone must match the zone in which the
         // user performed the query" clause, which also causes an extra param on the filter, so
         // account for that in all of the expectations here
-        String expectedIdentityZoneWhereClause = expectCaseInsensitiveDbBehavior ?
-                " AND identity_zone_id = :__value_" + expectedParamCount
-                :
-                " AND LOWER(identity_zone_id) = LOWER(:__value_" + expectedParamCount + ")";
+        String expectedIdentityZoneWhereClause = " AND identity_zone_id = :__value_" + expectedParamCount;
         String expectedSql = "(" + expectedWhereClauseBeforeIdentityZoneCheck + expectedIdentityZoneWhereClause + ")";
         if (StringUtils.hasText(expectedOrderByClause)) {
             expectedSql += " " + expectedOrderByClause;
@@ -5,7 +5,9 @@ import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.impl.config.IdentityProviderBootstrap;
 import org.cloudfoundry.identity.uaa.impl.config.IdentityZoneConfigurationBootstrap;
 import org.cloudfoundry.identity.uaa.mfa.MfaProviderBootstrap;
+import org.cloudfoundry.identity.uaa.provider.CachingIdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.provider.saml.BootstrapSamlIdentityProviderData;
+import org.cloudfoundry.identity.uaa.provider.saml.idp.CachingSamlServiceProviderProvisioning;
 import org.cloudfoundry.identity.uaa.scim.bootstrap.ScimExternalGroupBootstrap;
 import org.cloudfoundry.identity.uaa.scim.bootstrap.ScimGroupBootstrap;
 import org.cloudfoundry.identity.uaa.scim.bootstrap.ScimUserBootstrap;
@@ -41,6 +43,7 @@ public class TestUtils {
     public static void restoreToDefaults(ApplicationContext applicationContext) {
         cleanAndSeedDb(applicationContext);
         resetIdentityZoneHolder(applicationContext);
+        resetIdentityProviderCache(applicationContext);
         SecurityContextHolder.clearContext();
     }
 
@@ -146,6 +149,20 @@ public class TestUtils {
         }
     }
 
+    private static void resetIdentityProviderCache(ApplicationContext applicationContext) {
+        if (applicationContext == null) {
+            return;
+        }
+        try {
+            applicationContext.getBean(CachingIdentityProviderProvisioning.class).evictAll();
+        } catch (NoSuchBeanDefinitionException ignored) {
+        }
+        try {
+            applicationContext.getBean(CachingSamlServiceProviderProvisioning.class).evictAll();
+        } catch (NoSuchBeanDefinitionException ignored) {
+        }
+    }
+
     public static void deleteFrom(JdbcTemplate jdbcTemplate, String table) {
         jdbcTemplate.update("delete from " + table);
     }
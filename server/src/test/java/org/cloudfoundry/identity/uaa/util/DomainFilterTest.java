@@ -15,7 +15,9 @@
 package org.cloudfoundry.identity.uaa.util;
 
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.provider.CachingIdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+import org.cloudfoundry.identity.uaa.provider.JdbcIdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.provider.LdapIdentityProviderDefinition;
 import org.cloudfoundry.identity.uaa.provider.SamlIdentityProviderDefinition;
 import org.cloudfoundry.identity.uaa.provider.UaaIdentityProviderDefinition;
@@ -35,8 +37,12 @@ import static org.cloudfoundry.identity.uaa.oauth.client.ClientConstants.ALLOWED
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class DomainFilterTest {
 
@@ -301,4 +307,19 @@ public class DomainFilterTest {
 
         assertEquals(0, idpsForEmailDomain.size());
     }
+
+    @Test
+    public void discoveryReusesTheIndexAcrossCachedReads() {
+        samlDef1.setEmailDomain(Arrays.asList("test1.org", "*.test2.org"));
+        JdbcIdentityProviderProvisioning jdbcProvisioning = mock(JdbcIdentityProviderProvisioning.class);
+        when(jdbcProvisioning.retrieveAll(false, "zone-id")).thenReturn(Collections.singletonList(samlProvider1));
+        CachingIdentityProviderProvisioning cachingProvisioning = new CachingIdentityProviderProvisioning(jdbcProvisioning, 10, 60);
+
+        IdentityProvider first = cachingProvisioning.retrieveActive("zone-id").get(0);
+        IdentityProvider second = cachingProvisioning.retrieveActive("zone-id").get(0);
+
+        assertNotSame(first.getConfig().getEmailDomain(), second.getConfig().getEmailDomain());
+        assertSame(DomainFilter.indexFor(first.getConfig().getEmailDomain()), DomainFilter.indexFor(second.getConfig().getEmailDomain()));
+        assertEquals(Collections.singletonList(second), DomainFilter.getIdpsForEmailDomain(Collections.singletonList(second), "test@test1.org"));
+    }
 }
@@ -0,0 +1,56 @@
+package org.cloudfoundry.identity.uaa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailDomainIndexTest {
+
+    @Test
+    void matchesExactDomains() {
+        EmailDomainIndex index = new EmailDomainIndex(Arrays.asList("example.com", "test.org"));
+
+        assertTrue(index.matches("example.com"));
+        assertTrue(index.matches("test.org"));
+        assertFalse(index.matches("sub.example.com"));
+        assertFalse(index.matches("Example.com"));
+        assertFalse(index.matches("com"));
+    }
+
+    @Test
+    void wildcardMatchesExactlyOneNonEmptyLabel() {
+        EmailDomainIndex index = new EmailDomainIndex(Collections.singletonList("*.example.com"));
+
+        assertTrue(index.matches("mail.example.com"));
+        assertFalse(index.matches("example.com"));
+        assertFalse(index.matches(".example.com"));
+        assertFalse(index.matches("a.b.example.com"));
+    }
+
+    @Test
+    void wildcardInsideALabelFallsBackToARegularExpression() {
+        EmailDomainIndex index = new EmailDomainIndex(Collections.singletonList("mail*.example.com"));
+
+        assertTrue(index.matches("mail1.example.com"));
+        assertFalse(index.matches("mail.example.com"));
+        assertFalse(index.matches("smtp.example.com"));
+    }
+
+    @Test
+    void agreesWithTheRegularExpressions() {
+        List<String> patterns = Arrays.asList("*.*", "*.*.*", "example.com", "*.test.org", "a+b.net", "x*y.io", "");
+        List<String> domains = Arrays.asList("example.com", "a.b", "a.b.c", "a.b.c.d", "sub.test.org", "test.org",
+                "a+b.net", "aab.net", "xzy.io", "xy.io", "", ".", "a..b", "localhost");
+
+        EmailDomainIndex index = new EmailDomainIndex(patterns);
+        for (String domain : domains) {
+            assertEquals(UaaStringUtils.matches(UaaStringUtils.constructWildcards(patterns), domain), index.matches(domain), domain);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.user.UaaAuthority;
+import org.cloudfoundry.identity.uaa.web.UaaSavedRequestCache.ClientRedirectSavedRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.PortResolverImpl;
+import org.springframework.security.web.savedrequest.DefaultSavedRequest;
+
+import javax.servlet.http.Cookie;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompactSessionAttributeCodecTests {
+
+    private final CompactSessionAttributeCodec codec = new CompactSessionAttributeCodec();
+
+    @Test
+    void securityContextWithUaaAuthenticationRoundTrips() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("client_id", "login");
+        request.setParameter("login_hint", "%7B%22origin%22%3A%22ldap%22%7D");
+        request.setParameter("form_redirect_uri", "http://localhost/oauth/authorize");
+        UaaAuthentication authentication = new UaaAuthentication(
+                new UaaPrincipal("user-id", "marissa", "marissa@test.org", "uaa", "external-id", "uaa"),
+                null,
+                Arrays.asList(UaaAuthority.UAA_USER, new SimpleGrantedAuthority("scim.read")),
+                new HashSet<>(Collections.singletonList("external-group")),
+                Collections.singletonMap("cost_center", Arrays.asList("1", "2")),
+                new UaaAuthenticationDetails(request),
+                true,
+                1000L,
+                System.currentTimeMillis() + 60000);
+        authentication.setAuthenticationMethods(new HashSet<>(Arrays.asList("pwd", "mfa")));
+        authentication.setLastLoginSuccessTime(500L);
+        SecurityContextImpl context = new SecurityContextImpl(authentication);
+
+        byte[] encoded = codec.encode(context);
+        assertThat(encoded.length, lessThan(new SerializingConverter().convert(context).length / 2));
+
+        UaaAuthentication decoded = (UaaAuthentication) ((SecurityContextImpl) codec.decode(encoded)).getAuthentication();
+        assertThat(decoded, is(authentication));
+        assertThat(decoded.getPrincipal().getEmail(), is("marissa@test.org"));
+        assertThat(decoded.getPrincipal().getExternalId(), is("external-id"));
+        assertThat(decoded.getAuthorities(), contains(UaaAuthority.UAA_USER, new SimpleGrantedAuthority("scim.read")));
+        assertThat(decoded.getExternalGroups(), is(authentication.getExternalGroups()));
+        assertThat(decoded.getUserAttributesAsMap(), is(authentication.getUserAttributesAsMap()));
+        assertThat(decoded.getAuthenticationMethods(), is(authentication.getAuthenticationMethods()));
+        assertThat(decoded.getAuthContextClassRef(), nullValue());
+        assertThat(decoded.getLastLoginSuccessTime(), is(500L));
+        assertThat(decoded.getAuthenticatedTime(), is(1000L));
+        assertThat(decoded.getExpiresAt(), is(authentication.getExpiresAt()));
+        assertThat(decoded.isAuthenticated(), is(true));
+
+        UaaAuthenticationDetails details = (UaaAuthenticationDetails) decoded.getDetails();
+        assertThat(details, is(authentication.getDetails()));
+        assertThat(details.getLoginHint().getOrigin(), is("ldap"));
+        assertThat(details.getParameterMap().keySet(), is(request.getParameterMap().keySet()));
+        assertThat(details.getParameterMap().get("form_redirect_uri"), is(new String[]{"http://localhost/oauth/authorize"}));
+    }
+
+    @Test
+    void emptySecurityContextRoundTrips() throws Exception {
+        SecurityContextImpl decoded = (SecurityContextImpl) codec.decode(codec.encode(new SecurityContextImpl()));
+
+        assertThat(decoded.getAuthentication(), nullValue());
+    }
+
+    @Test
+    void savedRequestRoundTrips() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/oauth/authorize");
+        request.setQueryString("client_id=app&response_type=code");
+        request.setParameter("client_id", "app");
+        request.setParameter("response_type", "code");
+        request.addHeader("Accept", "text/html");
+        request.addHeader("Accept", "application/xhtml+xml");
+        request.setCookies(new Cookie("JSESSIONID", "abc"));
+        request.addPreferredLocale(Locale.GERMANY);
+        DefaultSavedRequest savedRequest = new DefaultSavedRequest(request, new PortResolverImpl());
+
+        DefaultSavedRequest decoded = (DefaultSavedRequest) codec.decode(codec.encode(savedRequest));
+
+        assertThat(decoded.getRedirectUrl(), is(savedRequest.getRedirectUrl()));
+        assertThat(decoded.getHeaderValues("accept"), is(Arrays.asList("text/html", "application/xhtml+xml")));
+        assertThat(decoded.getCookies().get(0).getValue(), is("abc"));
+        assertThat(decoded.getLocales(), is(savedRequest.getLocales()));
+        assertThat(decoded.getParameterValues("client_id"), is(new String[]{"app"}));
+        assertThat(decoded.getMethod(), is("GET"));
+        assertThat(decoded.doesRequestMatch(request, new PortResolverImpl()), is(true));
+    }
+
+    @Test
+    void valuesThatCannotBeRestoredExactlyAreNotEncoded() throws Exception {
+        UaaAuthentication withCredentials = new UaaAuthentication(
+                new UaaPrincipal("user-id", "marissa", "marissa@test.org", "uaa", null, "uaa"),
+                "password",
+                Collections.singletonList(UaaAuthority.UAA_USER),
+                null,
+                true,
+                System.currentTimeMillis());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        assertThat(codec.encode(new SecurityContextImpl(withCredentials)), nullValue());
+        assertThat(codec.encode(new ClientRedirectSavedRequest(request, "http://localhost/app")), nullValue());
+        assertThat(codec.encode("a string"), nullValue());
+    }
+
+    @Test
+    void unknownVersionsAreRejected() throws Exception {
+        byte[] encoded = codec.encode(new SecurityContextImpl());
+        encoded[CompactSessionAttributeCodec.MAGIC.length]++;
+
+        assertThrows(java.io.IOException.class, () -> codec.decode(encoded));
+    }
+}
@@ -2,9 +2,15 @@ package org.cloudfoundry.identity.uaa.web.beans;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.session.MapSession;
 import org.springframework.session.Session;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -34,10 +40,91 @@ class PurgeableSessionMapTest {
         assertThat(sessions).hasSize(0);
     }
 
+    @Test
+    void onlyTheLatestCopyOfASessionIsPurged() {
+        sessions.put(SESSION_ID, createSession(SESSION_ID, true));
+        sessions.put(SESSION_ID, createSession(SESSION_ID, false));
+
+        sessions.purge();
+        assertThat(sessions).containsKey(SESSION_ID);
+        assertThat(sessions.getExpiredSessionCount()).isEqualTo(0);
+    }
+
+    @Test
+    void aReplacementExpiringAtTheSameTimeStaysIndexed() {
+        Instant lastAccessed = Instant.now().minus(Duration.ofHours(1));
+        Session first = createSession(SESSION_ID, false, lastAccessed);
+        Session second = createSession(SESSION_ID, true, lastAccessed);
+        sessions.put(SESSION_ID, first);
+        sessions.put(SESSION_ID, second);
+        sessions.put(SESSION_ID, first);
+        sessions.put(SESSION_ID, second);
+
+        sessions.purge();
+        assertThat(sessions).isEmpty();
+        assertThat(sessions.getPurgedSessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void everyWayOfAddingASessionIndexesIt() {
+        sessions.putIfAbsent("a", createSession("a", true));
+        sessions.putAll(Collections.singletonMap("b", createSession("b", true)));
+        sessions.merge("c", createSession("c", true), (current, session) -> session);
+        sessions.put("d", createSession("d", false));
+        sessions.replace("d", createSession("d", true));
+        sessions.computeIfAbsent("e", id -> createSession(id, true));
+
+        assertThat(sessions.getExpiredSessionCount()).isEqualTo(5);
+        sessions.purge();
+        assertThat(sessions).isEmpty();
+    }
+
+    @Test
+    void viewsCannotBypassTheIndex() {
+        sessions.put(SESSION_ID, createSession(SESSION_ID, true));
+
+        assertThatThrownBy(() -> sessions.keySet().remove(SESSION_ID)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> sessions.values().clear()).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(sessions.getExpiredSessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void removedSessionsAreNoLongerIndexed() {
+        sessions.put(SESSION_ID, createSession(SESSION_ID, true));
+        assertThat(sessions.getExpiredSessionCount()).isEqualTo(1);
+
+        sessions.remove(SESSION_ID);
+        assertThat(sessions.getExpiredSessionCount()).isEqualTo(0);
+        sessions.purge();
+        assertThat(sessions.getPurgedSessionCount()).isEqualTo(0);
+    }
+
+    @Test
+    void countsLiveAndExpiredSessions() {
+        MapSession neverExpires = new MapSession("forever");
+        neverExpires.setMaxInactiveInterval(Duration.ofSeconds(-1));
+        sessions.put("forever", neverExpires);
+        sessions.put("live", createSession("live", false));
+        sessions.put("expired", createSession("expired", true));
+
+        assertThat(sessions.getLiveSessionCount()).isEqualTo(2);
+        assertThat(sessions.getExpiredSessionCount()).isEqualTo(1);
+
+        sessions.purge();
+        assertThat(sessions).containsOnlyKeys("forever", "live");
+        assertThat(sessions.getPurgedSessionCount()).isEqualTo(1);
+    }
+
     private Session createSession(String id, boolean expired) {
+        return createSession(id, expired, expired ? Instant.now().minus(Duration.ofHours(1)) : Instant.now());
+    }
+
+    private Session createSession(String id, boolean expired, Instant lastAccessed) {
         Session session = mock(Session.class);
         when(session.getId()).thenReturn(id);
         when(session.isExpired()).thenReturn(expired);
+        when(session.getMaxInactiveInterval()).thenReturn(Duration.ofMinutes(30));
+        when(session.getLastAccessedTime()).thenReturn(lastAccessed);
 
         return session;
     }
@@ -0,0 +1,176 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.web.beans.UaaJdbcSessionRepository.UaaJdbcSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+@WithDatabaseContext
+class UaaJdbcSessionRepositoryTests {
+
+    private static final String LARGE_VALUE = new String(new char[4000]).replace('\0', 'x');
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private PlatformTransactionManager transactionManager;
+    private UaaJdbcSessionRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new DataSourceTransactionManager(jdbcTemplate.getDataSource());
+        repository = new UaaJdbcSessionRepository(jdbcTemplate, transactionManager, 1800, 60, 0, false, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM SPRING_SESSION");
+    }
+
+    @Test
+    void sessionsAreReadBackAsSaved() {
+        UaaJdbcSession session = repository.createSession();
+        session.setAttribute("a", "value-a");
+        session.setAttribute("b", 42);
+        repository.save(session);
+
+        UaaJdbcSession found = repository.findById(session.getId());
+
+        assertThat(found.getAttributeNames(), containsInAnyOrder("a", "b"));
+        assertThat(found.getAttribute("a"), is("value-a"));
+        assertThat(found.getAttribute("b"), is(42));
+        assertThat(found.getCreationTime().toEpochMilli(), is(session.getCreationTime().toEpochMilli()));
+        assertThat(found.getMaxInactiveInterval(), is(Duration.ofSeconds(1800)));
+    }
+
+    @Test
+    void onlyChangedAttributesAreWritten() {
+        UaaJdbcSession session = repository.createSession();
+        session.setAttribute("a", "value-a");
+        session.setAttribute("b", "value-b");
+        repository.save(session);
+        UaaJdbcSession other = repository.findById(session.getId());
+        other.setAttribute("b", "changed-elsewhere");
+        repository.save(other);
+
+        session.setAttribute("a", "changed");
+        session.removeAttribute("missing");
+        repository.save(session);
+
+        UaaJdbcSession found = repository.findById(session.getId());
+        assertThat(found.getAttribute("a"), is("changed"));
+        assertThat(found.getAttribute("b"), is("changed-elsewhere"));
+    }
+
+    @Test
+    void removedAttributesAreDeleted() {
+        UaaJdbcSession session = repository.createSession();
+        session.setAttribute("a", "value-a");
+        repository.save(session);
+
+        session.removeAttribute("a");
+        repository.save(session);
+
+        assertThat(repository.findById(session.getId()).getAttribute("a"), nullValue());
+        assertThat(attributeCount(), is(0));
+    }
+
+    @Test
+    void lastAccessTimeIsWrittenOncePerGranularity() {
+        UaaJdbcSession session = repository.createSession();
+        repository.save(session);
+        Instant created = session.getLastAccessedTime();
+
+        session.setLastAccessedTime(created.plusSeconds(30));
+        repository.save(session);
+        assertThat(storedLastAccessTime(session), is(created.toEpochMilli()));
+
+        session.setLastAccessedTime(created.plusSeconds(60));
+        repository.save(session);
+        assertThat(storedLastAccessTime(session), is(created.plusSeconds(60).toEpochMilli()));
+    }
+
+    @Test
+    void changedSessionIdIsWritten() {
+        UaaJdbcSession session = repository.createSession();
+        session.setAttribute("a", "value-a");
+        repository.save(session);
+        String originalId = session.getId();
+
+        session.changeSessionId();
+        repository.save(session);
+
+        assertThat(repository.findById(originalId), nullValue());
+        assertThat(repository.findById(session.getId()).getAttribute("a"), is("value-a"));
+    }
+
+    @Test
+    void expiredSessionsAreDeleted() {
+        UaaJdbcSession session = repository.createSession();
+        session.setMaxInactiveInterval(Duration.ofSeconds(1));
+        session.setLastAccessedTime(Instant.now().minusSeconds(10));
+        repository.save(session);
+
+        assertThat(repository.findById(session.getId()), nullValue());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION", Integer.class), is(0));
+    }
+
+    @Test
+    void nearCacheServesSessionsWithoutReading() {
+        repository = new UaaJdbcSessionRepository(jdbcTemplate, transactionManager, 1800, 60, 60, false, false);
+        UaaJdbcSession session = repository.createSession();
+        session.setAttribute("a", "value-a");
+        repository.save(session);
+
+        jdbcTemplate.update("DELETE FROM SPRING_SESSION_ATTRIBUTES");
+        UaaJdbcSession found = repository.findById(session.getId());
+        assertThat(found.getAttribute("a"), is("value-a"));
+
+        found.setAttribute("a", "changed");
+        assertThat(repository.findById(session.getId()).getAttribute("a"), is("value-a"));
+
+        repository.deleteById(session.getId());
+        assertThat(repository.findById(session.getId()), nullValue());
+    }
+
+    @Test
+    void largeAttributesAreCompressedAndReadableEitherWay() {
+        repository = new UaaJdbcSessionRepository(jdbcTemplate, transactionManager, 1800, 60, 0, false, true);
+        UaaJdbcSession session = repository.createSession();
+        session.setAttribute("large", LARGE_VALUE);
+        session.setAttribute("small", "value");
+        repository.save(session);
+
+        byte[] stored = jdbcTemplate.queryForObject("SELECT ATTRIBUTE_BYTES FROM SPRING_SESSION_ATTRIBUTES WHERE ATTRIBUTE_NAME = 'large'", byte[].class);
+        assertThat(stored, notNullValue());
+        assertThat(stored.length, lessThan(LARGE_VALUE.length() / 10));
+
+        UaaJdbcSessionRepository uncompressed = new UaaJdbcSessionRepository(jdbcTemplate, transactionManager, 1800, 60, 0, false, false);
+        UaaJdbcSession found = uncompressed.findById(session.getId());
+        assertThat(found.getAttribute("large"), is(LARGE_VALUE));
+        assertThat(found.getAttribute("small"), is("value"));
+    }
+
+    private long storedLastAccessTime(UaaJdbcSession session) {
+        return jdbcTemplate.queryForObject("SELECT LAST_ACCESS_TIME FROM SPRING_SESSION WHERE SESSION_ID = ?", Long.class, session.getId());
+    }
+
+    private int attributeCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION_ATTRIBUTES", Integer.class);
+    }
+}
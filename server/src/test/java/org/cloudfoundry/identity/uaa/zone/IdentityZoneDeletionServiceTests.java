@@ -0,0 +1,166 @@
+package org.cloudfoundry.identity.uaa.zone;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@WithDatabaseContext
+class IdentityZoneDeletionServiceTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LimitSqlAdapter limitSqlAdapter;
+
+    private JdbcIdentityZoneProvisioning zoneProvisioning;
+    private DataSourceTransactionManager transactionManager;
+    private ApplicationEventPublisher publisher;
+    private List<Runnable> tasks;
+    private IdentityZoneDeletionService service;
+    private IdentityZone zone;
+    private String otherZoneId;
+
+    @BeforeEach
+    void setUp() {
+        RandomValueStringGenerator generator = new RandomValueStringGenerator(8);
+        zoneProvisioning = new JdbcIdentityZoneProvisioning(jdbcTemplate);
+        zone = zoneProvisioning.create(MultitenancyFixture.identityZone(generator.generate(), generator.generate()));
+        otherZoneId = "other-" + generator.generate();
+        for (int i = 0; i < 5; i++) {
+            addUserWithMembership(zone.getId(), generator.generate());
+        }
+        addUserWithMembership(otherZoneId, generator.generate());
+
+        publisher = mock(ApplicationEventPublisher.class);
+        tasks = new ArrayList<>();
+        transactionManager = new DataSourceTransactionManager(jdbcTemplate.getDataSource());
+        service = new IdentityZoneDeletionService(zoneProvisioning, jdbcTemplate, limitSqlAdapter, transactionManager, tasks::add, 2, 0);
+        service.setApplicationEventPublisher(publisher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from group_membership where identity_zone_id in (?,?)", zone.getId(), otherZoneId);
+        jdbcTemplate.update("delete from users where identity_zone_id in (?,?)", zone.getId(), otherZoneId);
+        jdbcTemplate.update("delete from identity_zone where id = ?", zone.getId());
+    }
+
+    @Test
+    void zoneIsDeactivatedAndThenPurgedInChunks() {
+        IdentityZoneDeletionStatus status = service.delete(zone, null);
+
+        assertThat(status.getState(), is(IdentityZoneDeletionStatus.State.PENDING));
+        assertThat(zoneProvisioning.retrieveIgnoreActiveFlag(zone.getId()).isActive(), is(false));
+        assertThat(countUsers(zone.getId()), is(5));
+
+        tasks.forEach(Runnable::run);
+
+        assertThat(status.getState(), is(IdentityZoneDeletionStatus.State.COMPLETED));
+        assertThat(status.getDeletedRows(), hasEntry("users", 5L));
+        assertThat(status.getDeletedRows(), hasEntry("group_membership", 5L));
+        assertThat(countUsers(zone.getId()), is(0));
+        assertThat(countUsers(otherZoneId), is(1));
+        assertThat(service.getStatus(zone.getId()), sameInstance(status));
+
+        ArgumentCaptor<ApplicationEvent> event = ArgumentCaptor.forClass(ApplicationEvent.class);
+        verify(publisher).publishEvent(event.capture());
+        assertThat(event.getValue(), instanceOf(EntityDeletedEvent.class));
+        assertThat(((EntityDeletedEvent<?>) event.getValue()).getDeleted(), sameInstance(zone));
+    }
+
+    @Test
+    void keysWithSeveralRowsAreDeletedWhole() {
+        List<String> userIds = jdbcTemplate.queryForList("select id from users where identity_zone_id = ?", String.class, zone.getId());
+        userIds.forEach(userId -> jdbcTemplate.update("insert into group_membership (group_id, member_id, member_type, origin, identity_zone_id) values (?,?,?,?,?)",
+                "other-group-" + zone.getId(), userId, "USER", "uaa", zone.getId()));
+
+        IdentityZoneDeletionStatus status = service.delete(zone, null);
+        tasks.forEach(Runnable::run);
+
+        assertThat(status.getDeletedRows(), hasEntry("group_membership", 10L));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from group_membership where identity_zone_id = ?", Integer.class, zone.getId()), is(0));
+    }
+
+    @Test
+    void failedDeletionIsReportedAndResumedByTheNextDelete() {
+        doThrow(new IllegalStateException("boom")).doNothing().when(publisher).publishEvent(any(ApplicationEvent.class));
+
+        IdentityZoneDeletionStatus failed = service.delete(zone, null);
+        assertThrows(IllegalStateException.class, () -> tasks.get(0).run());
+
+        assertThat(failed.getState(), is(IdentityZoneDeletionStatus.State.FAILED));
+        assertThat(failed.getError(), is("boom"));
+        assertThat(countUsers(zone.getId()), is(0));
+        assertThat(zoneProvisioning.retrieveIgnoreActiveFlag(zone.getId()).isActive(), is(false));
+
+        IdentityZoneDeletionStatus resumed = service.delete(zoneProvisioning.retrieveIgnoreActiveFlag(zone.getId()), null);
+        tasks.get(1).run();
+
+        assertThat(resumed.getState(), is(IdentityZoneDeletionStatus.State.COMPLETED));
+        assertThat(service.getStatus(zone.getId()), sameInstance(resumed));
+        verify(publisher, times(2)).publishEvent(any(ApplicationEvent.class));
+    }
+
+    @Test
+    void deletingAZoneThatIsBeingDeletedReturnsTheRunningDeletion() {
+        IdentityZoneDeletionStatus first = service.delete(zone, null);
+        IdentityZoneDeletionStatus second = service.delete(zone, null);
+
+        assertThat(second, sameInstance(first));
+        assertThat(tasks.size(), is(1));
+    }
+
+    @Test
+    void destroyStopsTheBackgroundExecutor() {
+        ExecutorService executor = mock(ExecutorService.class);
+        service = new IdentityZoneDeletionService(zoneProvisioning, jdbcTemplate, limitSqlAdapter, transactionManager, executor, 2, 0);
+
+        service.destroy();
+
+        verify(executor).shutdownNow();
+    }
+
+    @Test
+    void invalidChunkSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new IdentityZoneDeletionService(zoneProvisioning, jdbcTemplate, limitSqlAdapter, transactionManager, Runnable::run, 0, 0));
+    }
+
+    private void addUserWithMembership(String zoneId, String userId) {
+        jdbcTemplate.update("insert into users (id, username, password, email, identity_zone_id, origin) values (?,?,?,?,?,?)",
+                userId, userId, "password", userId + "@test.org", zoneId, "uaa");
+        jdbcTemplate.update("insert into group_membership (group_id, member_id, member_type, origin, identity_zone_id) values (?,?,?,?,?)",
+                "group-" + zoneId, userId, "USER", "uaa", zoneId);
+    }
+
+    private int countUsers(String zoneId) {
+        return jdbcTemplate.queryForObject("select count(*) from users where identity_zone_id = ?", Integer.class, zoneId);
+    }
+}
@@ -12,8 +12,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 
+import java.util.Date;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -21,6 +25,7 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
@@ -50,6 +55,9 @@ class IdentityZoneEndpointsTests {
     @Mock
     private IdentityZoneEndpointClientRegistrationService mockIdentityZoneEndpointClientRegistrationService;
 
+    @Mock
+    private IdentityZoneDeletionService mockIdentityZoneDeletionService;
+
     @InjectMocks
     private IdentityZoneEndpoints endpoints;
 
@@ -133,6 +141,35 @@ class IdentityZoneEndpointsTests {
 
     }
 
+    @Test
+    void deletion_in_the_background_is_accepted() {
+        identityZone = createZone();
+        IdentityZoneDeletionStatus status = new IdentityZoneDeletionStatus(identityZone.getId(), new Date());
+        when(mockIdentityZoneProvisioning.retrieveIgnoreActiveFlag(identityZone.getId())).thenReturn(identityZone);
+        when(mockIdentityZoneDeletionService.delete(same(identityZone), any())).thenReturn(status);
+        endpoints.setApplicationEventPublisher(mock(ApplicationEventPublisher.class));
+
+        ResponseEntity<?> response = endpoints.deleteIdentityZone(identityZone.getId());
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertSame(status, response.getBody());
+    }
+
+    @Test
+    void completed_deletion_returns_the_zone() {
+        identityZone = createZone();
+        IdentityZoneDeletionStatus status = new IdentityZoneDeletionStatus(identityZone.getId(), new Date());
+        status.completed(new Date());
+        when(mockIdentityZoneProvisioning.retrieveIgnoreActiveFlag(identityZone.getId())).thenReturn(identityZone);
+        when(mockIdentityZoneDeletionService.delete(same(identityZone), any())).thenReturn(status);
+        endpoints.setApplicationEventPublisher(mock(ApplicationEventPublisher.class));
+
+        ResponseEntity<?> response = endpoints.deleteIdentityZone(identityZone.getId());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(identityZone, response.getBody());
+    }
+
     private static IdentityZone createZone() {
         IdentityZone zone = MultitenancyFixture.identityZone("id", "subdomain");
         IdentityZoneConfiguration config = zone.getConfig();
@@ -170,6 +170,18 @@ class IdentityZoneHolderTest {
             verify(mockIdentityZoneProvisioning).retrieve("uaa");
         }
 
+        @Test
+        void getUaaZoneIsServedFromSnapshotUntilInvalidated() {
+            assertThat(IdentityZoneHolder.getUaaZone(), is(mockIdentityZoneFromProvisioning));
+            IdentityZoneHolder.clear();
+            assertThat(IdentityZoneHolder.get(), is(mockIdentityZoneFromProvisioning));
+            verify(mockIdentityZoneProvisioning, times(1)).retrieve("uaa");
+
+            IdentityZoneHolder.invalidateUaaZone();
+            assertThat(IdentityZoneHolder.getUaaZone(), is(mockIdentityZoneFromProvisioning));
+            verify(mockIdentityZoneProvisioning, times(2)).retrieve("uaa");
+        }
+
         @Test
         void getSamlSPKeyManager_WhenSecondCallWorks() {
             IdentityZoneConfiguration mockIdentityZoneConfigurationFromProvisioning = mock(IdentityZoneConfiguration.class);
@@ -52,6 +52,11 @@ class IdentityZoneResolvingFilterTests {
         assertFindsCorrectSubdomain("foo.uaa.mycf.com", "foo.uaa.mycf.com.uaa.mycf.com", "uaa.mycf.com", "login.mycf.com");
     }
 
+    @Test
+    void holderIsSetWithMatchingIdentityZoneForMostSpecificInternalHostname() throws Exception {
+        assertFindsCorrectSubdomain("myzone", "myzone.uaa.mycf.com", "mycf.com", "uaa.mycf.com");
+    }
+
     @Test
     void holderIsSetWithUAAIdentityZone() throws Exception {
         assertFindsCorrectSubdomain("", "uaa.mycf.com", "uaa.mycf.com", "login.mycf.com");
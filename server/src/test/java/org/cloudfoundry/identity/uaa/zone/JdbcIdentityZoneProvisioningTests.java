@@ -16,6 +16,7 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -93,6 +94,42 @@ class JdbcIdentityZoneProvisioningTests {
                 () -> jdbcIdentityZoneProvisioning.retrieveBySubdomain(null));
     }
 
+    @Test
+    void resolveBySubdomainReusesZoneUntilItIsUpdated() {
+        IdentityZone identityZone = MultitenancyFixture.identityZone(randomValueStringGenerator.generate(), randomValueStringGenerator.generate());
+        identityZone.setConfig(new IdentityZoneConfiguration(new TokenPolicy(3600, 7200)));
+        jdbcIdentityZoneProvisioning.create(identityZone);
+
+        IdentityZone resolved = jdbcIdentityZoneProvisioning.resolveBySubdomain(identityZone.getSubdomain());
+        assertSame(resolved, jdbcIdentityZoneProvisioning.resolveBySubdomain(identityZone.getSubdomain().toUpperCase()));
+
+        resolved = jdbcIdentityZoneProvisioning.retrieve(identityZone.getId());
+        resolved.setConfig(new IdentityZoneConfiguration(new TokenPolicy(1800, 7200)));
+        jdbcIdentityZoneProvisioning.update(resolved);
+        assertEquals(1800, jdbcIdentityZoneProvisioning.resolveBySubdomain(identityZone.getSubdomain()).getConfig().getTokenPolicy().getAccessTokenValidity());
+
+        jdbcIdentityZoneProvisioning.deleteByIdentityZone(identityZone.getId());
+        assertThrows(EmptyResultDataAccessException.class,
+                () -> jdbcIdentityZoneProvisioning.resolveBySubdomain(identityZone.getSubdomain()));
+    }
+
+    @Test
+    void resolveBySubdomainRevalidatesChangesMadeElsewhere() {
+        JdbcIdentityZoneProvisioning revalidating = new JdbcIdentityZoneProvisioning(jdbcTemplate, 0);
+        IdentityZone identityZone = MultitenancyFixture.identityZone(randomValueStringGenerator.generate(), randomValueStringGenerator.generate());
+        jdbcIdentityZoneProvisioning.create(identityZone);
+
+        IdentityZone resolved = revalidating.resolveBySubdomain(identityZone.getSubdomain());
+        assertSame(resolved, revalidating.resolveBySubdomain(identityZone.getSubdomain()));
+
+        jdbcTemplate.update("update identity_zone set version = version + 1, name = ? where id = ?", "renamed", identityZone.getId());
+        assertEquals("renamed", revalidating.resolveBySubdomain(identityZone.getSubdomain()).getName());
+
+        jdbcTemplate.update("update identity_zone set active = ? where id = ?", false, identityZone.getId());
+        assertThrows(EmptyResultDataAccessException.class,
+                () -> revalidating.resolveBySubdomain(identityZone.getSubdomain()));
+    }
+
     @Test
     void testUpdateIdentityZone() {
         IdentityZone identityZone = MultitenancyFixture.identityZone(randomValueStringGenerator.generate(), randomValueStringGenerator.generate());
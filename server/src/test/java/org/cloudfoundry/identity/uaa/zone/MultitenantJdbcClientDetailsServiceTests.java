@@ -594,6 +594,37 @@ class MultitenantJdbcClientDetailsServiceTests {
                 () -> service.removeClientDetails(clientDetails.getClientId()));
     }
 
+    @Test
+    void cachedClientIsServedUntilItIsChanged() {
+        MultitenantJdbcClientDetailsService cachingService = new MultitenantJdbcClientDetailsService(jdbcTemplate, mockIdentityZoneManager, passwordEncoder, 100, 60);
+        baseClientDetails.setScope(Collections.singleton("foo.read"));
+        cachingService.addClientDetails(baseClientDetails);
+
+        ClientDetails first = cachingService.loadClientByClientId(baseClientDetails.getClientId());
+        ((BaseClientDetails) first).setScope(Collections.singleton("modified.by.caller"));
+        jdbcTemplate.update("update oauth_client_details set scope = ? where client_id = ?", "bar.read", baseClientDetails.getClientId());
+
+        assertThat(cachingService.loadClientByClientId(baseClientDetails.getClientId()).getScope(), containsInAnyOrder("foo.read"));
+
+        cachingService.updateClientSecret(baseClientDetails.getClientId(), "newsecret");
+        assertThat(cachingService.loadClientByClientId(baseClientDetails.getClientId()).getScope(), containsInAnyOrder("bar.read"));
+        assertThat(cachingService.getCacheStatistics().get(currentZoneId), containsString("\"hits\":1"));
+        assertEquals(1, cachingService.getCacheSize());
+    }
+
+    @Test
+    void deletingZoneClientsEvictsCachedClients() {
+        MultitenantJdbcClientDetailsService cachingService = new MultitenantJdbcClientDetailsService(jdbcTemplate, mockIdentityZoneManager, passwordEncoder, 100, 60);
+        cachingService.addClientDetails(baseClientDetails);
+        cachingService.loadClientByClientId(baseClientDetails.getClientId());
+
+        cachingService.deleteByIdentityZone(currentZoneId);
+
+        assertEquals(0, cachingService.getCacheSize());
+        assertThrows(NoSuchClientException.class,
+                () -> cachingService.loadClientByClientId(baseClientDetails.getClientId()));
+    }
+
     @Test
     void findClients() {
 